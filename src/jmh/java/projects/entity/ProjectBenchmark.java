@@ -0,0 +1,103 @@
+/**
+ *
+ */
+package projects.entity;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks the entity classes: rendering a project graph as text, building one, and walking its
+ * child collections. The children parameter is the number of materials, steps and categories each.
+ *
+ * @author Promineo
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProjectBenchmark {
+  @Param({"0", "10", "1000"})
+  private int children;
+
+  private Project project;
+
+  @Setup
+  public void setUp() {
+    project = buildGraph();
+  }
+
+  @Benchmark
+  public String projectToString() {
+    return project.toString();
+  }
+
+  @Benchmark
+  public Project buildGraph() {
+    Project graph = new Project();
+    graph.setProjectId(1);
+    graph.setProjectName("Hang a door");
+    graph.setEstimatedHours(new BigDecimal("4.30"));
+    graph.setActualHours(new BigDecimal("3.65"));
+    graph.setDifficulty(3);
+    graph.setNotes("Use the door hangers from Home Depot");
+
+    for(int i = 0; i < children; i++) {
+      Material material = new Material();
+      material.setMaterialId(i);
+      material.setProjectId(1);
+      material.setMaterialName("2-inch screws");
+      material.setNumRequired(20);
+      material.setCost(new BigDecimal("1.09"));
+      graph.getMaterials().add(material);
+
+      Step step = new Step();
+      step.setStepId(i);
+      step.setProjectId(1);
+      step.setStepText("Screw hangers into frame");
+      step.setStepOrder(i + 1);
+      graph.getSteps().add(step);
+
+      Category category = new Category();
+      category.setCategoryId(i);
+      category.setCategoryName("Repairs");
+      graph.getCategories().add(category);
+    }
+
+    return graph;
+  }
+
+  @Benchmark
+  public long walkChildren() {
+    long sum = 0;
+
+    for(Material material : project.getMaterials()) {
+      sum += material.getNumRequired();
+    }
+
+    for(Step step : project.getSteps()) {
+      sum += step.getStepOrder();
+    }
+
+    for(Category category : project.getCategories()) {
+      sum += category.getCategoryId();
+    }
+
+    return sum;
+  }
+}
@@ -0,0 +1,131 @@
+/**
+ *
+ */
+package projects.entity;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares ProjectCodec with Java serialization: encoding a project graph and decoding it again,
+ * and decoding alone. The children parameter is the number of materials, steps and categories
+ * each. The encoded sizes are printed when each trial is set up.
+ *
+ * @author Promineo
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProjectCodecBenchmark {
+  @Param({"0", "10", "1000"})
+  private int children;
+
+  private Project project;
+  private ByteBuffer buffer;
+  private byte[] encoded;
+  private byte[] serialized;
+
+  @Setup
+  public void setUp() throws IOException {
+    project = buildGraph();
+    encoded = ProjectCodec.encode(project);
+    serialized = serialize(project);
+    buffer = ByteBuffer.allocate(encoded.length);
+    System.out.println("\nchildren=" + children + ": ProjectCodec " + encoded.length
+        + " bytes, Java serialization " + serialized.length + " bytes");
+  }
+
+  @Benchmark
+  public Project codecRoundTrip() {
+    buffer.clear();
+    ProjectCodec.encode(project, buffer);
+    buffer.flip();
+    return ProjectCodec.decode(buffer);
+  }
+
+  @Benchmark
+  public Project codecDecode() {
+    return ProjectCodec.decode(ByteBuffer.wrap(encoded));
+  }
+
+  @Benchmark
+  public Project serializationRoundTrip() throws IOException, ClassNotFoundException {
+    return deserialize(serialize(project));
+  }
+
+  @Benchmark
+  public Project serializationDecode() throws IOException, ClassNotFoundException {
+    return deserialize(serialized);
+  }
+
+  private static byte[] serialize(Project project) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try(ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+      out.writeObject(project);
+    }
+    return bytes.toByteArray();
+  }
+
+  private static Project deserialize(byte[] bytes) throws IOException, ClassNotFoundException {
+    try(ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+      return (Project)in.readObject();
+    }
+  }
+
+  private Project buildGraph() {
+    Project graph = new Project();
+    graph.setProjectId(1);
+    graph.setVersion(0);
+    graph.setProjectName("Hang a door");
+    graph.setEstimatedHours(new BigDecimal("4.30"));
+    graph.setActualHours(new BigDecimal("3.65"));
+    graph.setDifficulty(3);
+    graph.setNotes("Use the door hangers from Home Depot");
+
+    for(int i = 0; i < children; i++) {
+      Material material = new Material();
+      material.setMaterialId(i);
+      material.setProjectId(1);
+      material.setMaterialName("2-inch screws");
+      material.setNumRequired(20);
+      material.setCost(new BigDecimal("1.09"));
+      graph.getMaterials().add(material);
+
+      Step step = new Step();
+      step.setStepId(i);
+      step.setProjectId(1);
+      step.setStepText("Screw hangers into frame");
+      step.setStepOrder(i + 1);
+      graph.getSteps().add(step);
+
+      Category category = new Category();
+      category.setCategoryId(i);
+      category.setCategoryName("Repairs");
+      graph.getCategories().add(category);
+    }
+
+    return graph;
+  }
+}
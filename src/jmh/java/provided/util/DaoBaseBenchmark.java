@@ -0,0 +1,158 @@
+/**
+ *
+ */
+package provided.util;
+
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import projects.entity.Material;
+import projects.entity.Project;
+
+/**
+ * Benchmarks the row mapping and parameter binding hot paths of {@link DaoBase}. Each invocation
+ * maps or binds one project plus the given number of material rows, which is what loading or
+ * inserting one project graph costs.
+ *
+ * @author Promineo
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DaoBaseBenchmark {
+  private static final String[] PROJECT_COLUMNS = {"project_id", "project_name",
+      "estimated_hours", "actual_hours", "difficulty", "notes"};
+  private static final String[] MATERIAL_COLUMNS =
+      {"material_id", "project_id", "material_name", "num_required", "cost"};
+  private static final String[] FIELD_NAMES = {"projectId", "projectName", "estimatedHours",
+      "actualHours", "difficulty", "notes", "materialName", "numRequired"};
+
+  @Param({"0", "10", "1000"})
+  private int children;
+
+  private final DaoBase dao = new DaoBase() {};
+  private ResultSet projectRows;
+  private ResultSet materialRows;
+  private PreparedStatement projectStatement;
+  private PreparedStatement materialStatement;
+  private Project project;
+
+  @Setup
+  public void setUp() {
+    projectRows = JdbcStandIns.resultSet(PROJECT_COLUMNS, new Object[][] {
+        {1, "Hang a door", new BigDecimal("4.30"), new BigDecimal("3.65"), 3, "Use hangers"}});
+
+    Object[][] materials = new Object[children][];
+
+    for(int i = 0; i < children; i++) {
+      materials[i] = new Object[] {i + 1, 1, "Material " + i, i % 20, new BigDecimal("1.09")};
+    }
+
+    materialRows = JdbcStandIns.resultSet(MATERIAL_COLUMNS, materials);
+    projectStatement = JdbcStandIns.preparedStatement(PROJECT_COLUMNS.length);
+    materialStatement = JdbcStandIns.preparedStatement(MATERIAL_COLUMNS.length);
+
+    project = new Project();
+    project.setProjectId(1);
+    project.setProjectName("Hang a door");
+    project.setEstimatedHours(new BigDecimal("4.30"));
+    project.setActualHours(new BigDecimal("3.65"));
+    project.setDifficulty(3);
+    project.setNotes("Use hangers");
+
+    for(int i = 0; i < children; i++) {
+      Material material = new Material();
+      material.setProjectId(1);
+      material.setMaterialName("Material " + i);
+      material.setNumRequired(i % 20);
+      material.setCost(new BigDecimal("1.09"));
+      project.getMaterials().add(material);
+    }
+  }
+
+  /**
+   * Maps a project graph the way the DAO does: one mapper lookup per result set.
+   */
+  @Benchmark
+  public Project extractGraph() throws SQLException {
+    projectRows.beforeFirst();
+    projectRows.next();
+    Project result = dao.extract(projectRows, Project.class);
+
+    materialRows.beforeFirst();
+    RowMapper<Material> mapper = dao.rowMapper(materialRows, Material.class);
+
+    while(materialRows.next()) {
+      result.getMaterials().add(mapper.map(materialRows));
+    }
+
+    return result;
+  }
+
+  /**
+   * Maps the same graph calling extract() for every row.
+   */
+  @Benchmark
+  public Project extractPerRow() throws SQLException {
+    projectRows.beforeFirst();
+    projectRows.next();
+    Project result = dao.extract(projectRows, Project.class);
+
+    materialRows.beforeFirst();
+
+    while(materialRows.next()) {
+      result.getMaterials().add(dao.extract(materialRows, Material.class));
+    }
+
+    return result;
+  }
+
+  /**
+   * Binds the parameters needed to insert the project and its materials.
+   */
+  @Benchmark
+  public void setParameters() throws SQLException {
+    dao.setParameter(projectStatement, 1, project.getProjectName(), String.class);
+    dao.setParameter(projectStatement, 2, project.getEstimatedHours(), BigDecimal.class);
+    dao.setParameter(projectStatement, 3, project.getActualHours(), BigDecimal.class);
+    dao.setParameter(projectStatement, 4, project.getDifficulty(), Integer.class);
+    dao.setParameter(projectStatement, 5, project.getNotes(), String.class);
+
+    for(Material material : project.getMaterials()) {
+      dao.setParameter(materialStatement, 1, material.getProjectId(), Integer.class);
+      dao.setParameter(materialStatement, 2, material.getMaterialName(), String.class);
+      dao.setParameter(materialStatement, 3, material.getNumRequired(), Integer.class);
+      dao.setParameter(materialStatement, 4, material.getCost(), BigDecimal.class);
+    }
+  }
+
+  /**
+   * Converts a set of typical field names to column names.
+   */
+  @Benchmark
+  public void camelCaseToSnakeCase(Blackhole blackhole) {
+    for(String name : FIELD_NAMES) {
+      blackhole.consume(DaoBase.camelCaseToSnakeCase(name));
+    }
+  }
+}
@@ -0,0 +1,112 @@
+/**
+ *
+ */
+package provided.util;
+
+import java.lang.reflect.Proxy;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+
+/**
+ * In-memory stand-ins for the JDBC objects used by {@link DaoBase}, so that the mapping and binding
+ * code can be benchmarked without a database. They are dynamic proxies that implement only the
+ * methods the DAO code calls, which means the absolute numbers include a small proxy dispatch cost
+ * that is the same for every version of the code being compared.
+ *
+ * @author Promineo
+ *
+ */
+final class JdbcStandIns {
+  private JdbcStandIns() {}
+
+  /**
+   * A forward-only result set over the given rows. Call beforeFirst() to read it again.
+   *
+   * @param labels The column labels
+   * @param rows The row values, in column order
+   * @return The result set
+   */
+  static ResultSet resultSet(String[] labels, Object[][] rows) {
+    ResultSetMetaData meta = (ResultSetMetaData)Proxy.newProxyInstance(
+        JdbcStandIns.class.getClassLoader(), new Class<?>[] {ResultSetMetaData.class},
+        (proxy, method, args) -> {
+          switch(method.getName()) {
+            case "getColumnCount":
+              return labels.length;
+            case "getColumnLabel":
+            case "getColumnName":
+              return labels[(Integer)args[0] - 1];
+            default:
+              throw new UnsupportedOperationException(method.getName());
+          }
+        });
+
+    int[] cursor = {-1};
+
+    return (ResultSet)Proxy.newProxyInstance(JdbcStandIns.class.getClassLoader(),
+        new Class<?>[] {ResultSet.class}, (proxy, method, args) -> {
+          switch(method.getName()) {
+            case "next":
+              return ++cursor[0] < rows.length;
+            case "beforeFirst":
+              cursor[0] = -1;
+              return null;
+            case "getMetaData":
+              return meta;
+            case "findColumn":
+              return indexOf(labels, (String)args[0]);
+            case "getObject":
+              return rows[cursor[0]][columnIndex(labels, args[0]) - 1];
+            case "getInt":
+              Object value = rows[cursor[0]][columnIndex(labels, args[0]) - 1];
+              return value == null ? 0 : ((Number)value).intValue();
+            case "close":
+              return null;
+            default:
+              throw new UnsupportedOperationException(method.getName());
+          }
+        });
+  }
+
+  /**
+   * A prepared statement that keeps the last value bound to each parameter.
+   *
+   * @param parameterCount The number of parameters
+   * @return The prepared statement
+   */
+  static PreparedStatement preparedStatement(int parameterCount) {
+    Object[] parameters = new Object[parameterCount + 1];
+
+    return (PreparedStatement)Proxy.newProxyInstance(JdbcStandIns.class.getClassLoader(),
+        new Class<?>[] {PreparedStatement.class}, (proxy, method, args) -> {
+          String name = method.getName();
+
+          if(name.startsWith("set") && args != null && args.length == 2) {
+            parameters[(Integer)args[0]] = args[1];
+            return null;
+          }
+
+          if("clearParameters".equals(name) || "close".equals(name)) {
+            return null;
+          }
+
+          throw new UnsupportedOperationException(name);
+        });
+  }
+
+  private static int columnIndex(String[] labels, Object column) throws SQLException {
+    return column instanceof Integer ? (Integer)column : indexOf(labels, (String)column);
+  }
+
+  private static int indexOf(String[] labels, String label) throws SQLException {
+    for(int i = 0; i < labels.length; i++) {
+      if(labels[i].equalsIgnoreCase(label)) {
+        return i + 1;
+      }
+    }
+
+    throw new SQLException("Column not found: " + label);
+  }
+}
@@ -1,11 +1,30 @@
 package projects;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.Reader;
+import java.io.Writer;
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Scanner;
 
-//import projects.dao.DbConnection;
+import projects.analytics.ProjectAnalytics;
+import projects.analytics.ProjectAnalytics.DifficultyAccuracy;
+import projects.bulk.ProjectBulkLoader;
+import projects.bulk.ProjectBulkLoader.BulkResult;
+import projects.cli.LoadGenerator;
+import projects.cli.ScriptRunner;
+import projects.dao.DbConnection;
 import projects.exception.DbException;
+import projects.exception.StaleProjectException;
+import projects.search.ProjectSearchIndex.SearchHit;
 import projects.service.ProjectService;
 import projects.entity.*;
 
@@ -16,19 +35,89 @@ public class ProjectsApp {
 			, "2) List projects"
 			, "3) Select a project"
 			, "4) Update project details"
-			, "5) Delete a project");
+			, "5) Delete a project"
+			, "6) Import projects from a JSON-lines file"
+			, "7) Export projects to a JSON-lines file"
+			, "8) Show project analytics"
+			, "9) Search projects");
 	// @formatter:on
+	// Number of projects read from the database at a time when listing them:
+	private static final int LIST_PAGE_SIZE = 100;
+	// Maximum number of projects shown for a search:
+	private static final int SEARCH_RESULT_LIMIT = 20;
+	// The project list is saved here on exit and served from here on the next start. An empty name turns it off:
+	private static final String CATALOG_FILE = System.getProperty("projects.catalog.file", "projects-catalog.bin");
 	private Scanner scanner = new Scanner(System.in);
+	// Buffered console output for rendering projects. It is flushed after each project or list:
+	private PrintWriter console = new PrintWriter(new BufferedWriter(new OutputStreamWriter(System.out)));
 	private ProjectService projectService = new ProjectService();
 	// Instance variable for currently selected project:
 	private Project currProject;
 	
 	public static void main(String[] args) {
+		if(args.length > 0) {
+			System.exit(runHeadless(args));
+		}
 		// Create a new instance of the user menu:
-		new ProjectsApp().processUserSelections();
+		ProjectsApp app = new ProjectsApp();
+		if(!CATALOG_FILE.isEmpty() && app.projectService.openCatalog(Path.of(CATALOG_FILE))) {
+			// The list can be shown from the saved catalog, so connect to the database in the background:
+			Thread.ofPlatform().name("query-plan-check").daemon(true).start(app::checkQueryPlans);
+		}else {
+			app.checkQueryPlans();
+		}
+		app.processUserSelections();
 		
 	}
 	
+	// Run without the menu and return the exit status:
+	//   --script [file]       run the commands in the file, or on standard input if there is no file or it is -
+	//   --load [name=value]   run the load generator; see LoadGenerator.Settings.parse() for the settings
+	private static int runHeadless(String[] args) {
+		List<String> arguments = List.of(args).subList(1, args.length);
+		PrintWriter out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(System.out)));
+		try(ProjectService projectService = new ProjectService()){
+			switch(args[0]) {
+				case "--script":
+					if(arguments.size() > 1) {
+						break;
+					}
+					ScriptRunner runner = new ScriptRunner(projectService, out, new PrintWriter(System.err, true));
+					String fileName = arguments.isEmpty() ? "-" : arguments.get(0);
+					if(fileName.equals("-")) {
+						return runner.run(new InputStreamReader(System.in, StandardCharsets.UTF_8)) == 0 ? 0 : 1;
+					}
+					try(Reader reader = Files.newBufferedReader(Path.of(fileName), StandardCharsets.UTF_8)){
+						return runner.run(reader) == 0 ? 0 : 1;
+					}
+				case "--load":
+					new LoadGenerator(projectService, LoadGenerator.Settings.parse(arguments)).run().print(out);
+					return 0;
+				default:
+					break;
+			}
+			System.err.println("Usage: ProjectsApp [--script [file|-] | --load [name=value ...]]");
+			return 2;
+		}catch(IOException | RuntimeException e) {
+			System.err.println("Error: " + e);
+			return 1;
+		}finally {
+			out.flush();
+			DbConnection.closePool();
+		}
+	}
+	
+	// Connecting applies any pending schema migrations. Then warn if the hot queries do not use their indexes:
+	private void checkQueryPlans() {
+		try {
+			for(String problem : projectService.checkQueryPlans()) {
+				System.out.println("Query plan warning: " + problem);
+			}
+		}catch(DbException e) {
+			System.out.println("\nError: " + e + " Unable to check query plans.");
+		}
+	}
+	
 	private void processUserSelections() {
 		boolean done = false;
 		while(!done) {
@@ -53,6 +142,18 @@ public class ProjectsApp {
 					case 5:
 						deleteProject();
 						break;
+					case 6:
+						importProjects();
+						break;
+					case 7:
+						exportProjects();
+						break;
+					case 8:
+						showAnalytics();
+						break;
+					case 9:
+						searchProjects();
+						break;
 					default:
 						System.out.println("\n" + selection + " is not a valid selection. Try again.");
 						break;
@@ -105,18 +206,30 @@ public class ProjectsApp {
 		project.setNotes(notes);
 		
 		Project dbProject = projectService.addProject(project);
-		System.out.println("You have successfully created project: "+dbProject);
+		printProject("You have successfully created project: ", dbProject);
 		
 	}
 	
 	private void listProjects() {
-		// Retrieve all projects in the database as a list of Project items:
-		List<Project> projects = projectService.fetchAllProjects();
-		// Print contents of projects to console:
 		System.out.println("\nProjects");
-		projects.forEach(project -> System.out.println(
-				"	" + project.getProjectId()
-				+ ": "+ project.getProjectName()));
+		// Walk the projects one page at a time so memory use does not grow with the number of projects. Only the
+		// ID and name are fetched, since that is all the list shows:
+		List<ProjectSummary> projects = projectService.fetchProjectSummariesPage(null, null, LIST_PAGE_SIZE);
+		while(!projects.isEmpty()) {
+			// Print contents of the page to console:
+			for(ProjectSummary project : projects) {
+				ProjectRenderer.renderListEntry(project.getProjectId(), project.getProjectName(), console);
+				console.println();
+			}
+			console.flush();
+			if(projects.size() < LIST_PAGE_SIZE) {
+				break;
+			}
+			// Continue after the last project printed:
+			ProjectSummary last = projects.get(projects.size() - 1);
+			projects = projectService.fetchProjectSummariesPage(last.getProjectName(), last.getProjectId(),
+					LIST_PAGE_SIZE);
+		}
 	}
 	
 	// Allow a user to "select" a project in the database where they can add materials, categories, or steps:
@@ -133,7 +246,7 @@ public class ProjectsApp {
 		if(Objects.isNull(currProject)) {
 			System.out.println("\nYou are not working on a project.");
 		}else {
-			System.out.println("\nYou are working with project: " + currProject);
+			printProject("\nYou are working with project: ", currProject);
 		}
 	}
 	
@@ -159,25 +272,35 @@ public class ProjectsApp {
 			// Get new notes:
 			String notes = getStringInput("Enter the project notes ["
 					+ currProject.getNotes() + "]");
-			// Create new Project to store results:
-			Project project = new Project();
-			// Set new projectId to currProject's project id value:
-			project.setProjectId(currProject.getProjectId());
-			// Set new project name value to updated form if projectName is not null, otherwise, leave as is:
-			project.setProjectName(Objects.isNull(projectName) ? currProject.getProjectName() : projectName);
-			// Set new estimated hours to updated form if estimatedHours is not null, otherwise, leave as is:
-			project.setEstimatedHours(Objects.isNull(estimatedHours) ? currProject.getEstimatedHours() : estimatedHours);
-			// Set new actual hours to updated form if actualHours is not null, otherwise, leave as is:
-			project.setActualHours(Objects.isNull(actualHours) ? currProject.getActualHours() : actualHours);
-			// Set new difficulty value to updated form if difficulty is not null, otherwise, leave as is:
-			project.setDifficulty(Objects.isNull(difficulty) ? currProject.getDifficulty() : difficulty);
-			// Set new notes value to updated form if notes is not null, otherwise, leave as is:
-			project.setNotes(Objects.isNull(notes) ? currProject.getNotes() : notes);
+			// Work on a copy, since the current project may be shared with the service's cache. Only the values the
+			// user changed are recorded as changes, so only their columns are written:
+			Project project = currProject.copy();
+			if(Objects.nonNull(projectName)) {
+				project.setProjectName(projectName);
+			}
+			if(Objects.nonNull(estimatedHours)) {
+				project.setEstimatedHours(estimatedHours);
+			}
+			if(Objects.nonNull(actualHours)) {
+				project.setActualHours(actualHours);
+			}
+			if(Objects.nonNull(difficulty)) {
+				project.setDifficulty(difficulty);
+			}
+			if(Objects.nonNull(notes)) {
+				project.setNotes(notes);
+			}
 			
-			// Call projectService's modifyProjectDetails function to update database with the new information:
-			projectService.modifyProjectDetails(project);
-			// Reread the current project to reflect changes made:
-			currProject= projectService.fetchProjectById(currProject.getProjectId());
+			// Call projectService's modifyProjectDetails function to update database with the new information. It
+			// returns the saved project, so there is no need to read it again:
+			try {
+				currProject = projectService.modifyProjectDetails(project);
+			}catch(StaleProjectException e) {
+				// Someone else saved the project first. Show their version so the user can make the changes again:
+				currProject = projectService.fetchProjectById(currProject.getProjectId());
+				System.out.println("\n" + e.getMessage() + " Your changes were not saved.");
+				printProject("The project is now: ", currProject);
+			}
 		
 	}
 	
@@ -196,8 +319,84 @@ public class ProjectsApp {
 		}
 	}
 	
+	// Load project graphs in bulk from a file with one JSON object per line:
+	private void importProjects() {
+		String fileName = getStringInput("Enter the file to import");
+		if(Objects.isNull(fileName)) {
+			return;
+		}
+		try(Reader reader = Files.newBufferedReader(Path.of(fileName), StandardCharsets.UTF_8)){
+			BulkResult result = new ProjectBulkLoader(projectService).importJsonLines(reader);
+			System.out.println("Imported " + result);
+		}catch(IOException e) {
+			throw new DbException("Unable to read " + fileName, e);
+		}
+	}
+	
+	// Write every project graph to a file with one JSON object per line:
+	private void exportProjects() {
+		String fileName = getStringInput("Enter the file to export to");
+		if(Objects.isNull(fileName)) {
+			return;
+		}
+		try(Writer writer = Files.newBufferedWriter(Path.of(fileName), StandardCharsets.UTF_8)){
+			BulkResult result = new ProjectBulkLoader(projectService).exportJsonLines(writer);
+			System.out.println("Exported " + result);
+		}catch(IOException e) {
+			throw new DbException("Unable to write " + fileName, e);
+		}
+	}
+	
+	// Find projects by the start of words in their name, notes, steps or materials:
+	private void searchProjects() {
+		String query = getStringInput("Enter words to search for");
+		if(Objects.isNull(query)) {
+			return;
+		}
+		List<SearchHit> hits = projectService.searchProjectsByPrefix(query, SEARCH_RESULT_LIMIT);
+		console.println("\nMatching projects:");
+		for(SearchHit hit : hits) {
+			ProjectRenderer.renderListEntry(hit.projectId(), hit.projectName(), console);
+			console.println();
+		}
+		if(hits.isEmpty()) {
+			console.println("\tNo projects match " + query);
+		}
+		console.flush();
+	}
+	
+	// Reload the analytics snapshot and print the portfolio reports:
+	private void showAnalytics() {
+		ProjectAnalytics analytics = projectService.refreshAnalytics();
+		console.println("\nEstimate accuracy by difficulty:");
+		for(DifficultyAccuracy accuracy : analytics.accuracyByDifficulty()) {
+			console.printf("\tdifficulty=%d, projects=%d, estimatedHours=%s, actualHours=%s, "
+					+ "meanAbsoluteError=%s, actual/estimated=%.2f%n", accuracy.difficulty(), accuracy.projects(),
+					accuracy.estimatedHours(), accuracy.actualHours(), accuracy.meanAbsoluteErrorHours(),
+					accuracy.actualToEstimatedRatio());
+		}
+		console.println("Material cost by category:");
+		analytics.materialCostByCategory().forEach((category, cost) -> console.println("\t" + category + ": " + cost));
+		console.println("Material cost and steps by project:");
+		Map<Integer, Integer> stepCounts = analytics.stepCountByProject();
+		analytics.materialCostByProject().forEach((projectId, cost) -> console.println(
+				"\t" + projectId + ": cost=" + cost + ", steps=" + stepCounts.get(projectId)));
+		console.flush();
+	}
+	
+	// Render the project straight to the console without building it into a String first:
+	private void printProject(String heading, Project project) {
+		console.append(heading);
+		ProjectRenderer.TEXT.render(project, console);
+		console.println();
+		console.flush();
+	}
+	
 	private boolean exitMenu() {
 		System.out.println("Exiting menu.");
+		// Apply any queued writes, then release the pooled database connections:
+		projectService.close();
+		DbConnection.closePool();
 		return true;
 	}
 	
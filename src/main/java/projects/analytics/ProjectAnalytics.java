@@ -0,0 +1,233 @@
+package projects.analytics;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+
+// Aggregations over a ProjectSnapshot. Each one splits the rows into ranges that are summed in parallel on a
+// fork/join pool with plain long arithmetic, and only the final totals are turned into BigDecimal values. The
+// snapshot never changes, so the results can be computed from any number of threads without locking.
+public class ProjectAnalytics {
+	// Ranges smaller than this are summed by one thread:
+	private static final int SPLIT_THRESHOLD = 4096;
+
+	private final ProjectSnapshot snapshot;
+	private final ForkJoinPool pool;
+
+	public ProjectAnalytics(ProjectSnapshot snapshot) {
+		this(snapshot, ForkJoinPool.commonPool());
+	}
+
+	public ProjectAnalytics(ProjectSnapshot snapshot, ForkJoinPool pool) {
+		this.snapshot = snapshot;
+		this.pool = pool;
+	}
+
+	public ProjectSnapshot getSnapshot() {
+		return snapshot;
+	}
+
+	// Estimated versus actual hours for each difficulty, lowest difficulty first. Projects missing the difficulty
+	// or either hours value are left out:
+	public List<DifficultyAccuracy> accuracyByDifficulty() {
+		// Difficulties can be any int, so totals are kept per distinct difficulty rather than indexed by it:
+		int[] difficulties = Arrays.stream(snapshot.difficulty, 0, snapshot.projectCount)
+				.filter(difficulty -> difficulty != ProjectSnapshot.NULL_INT).distinct().sorted().toArray();
+		List<DifficultyAccuracy> accuracy = new ArrayList<>();
+		if(difficulties.length == 0) {
+			return accuracy;
+		}
+		long[] totals = pool.invoke(new AccuracyTask(0, snapshot.projectCount, difficulties));
+		for(int d = 0; d < difficulties.length; d++) {
+			long projects = totals[d * AccuracyTask.WIDTH];
+			if(projects > 0) {
+				accuracy.add(new DifficultyAccuracy(difficulties[d], projects,
+						scaled(totals[d * AccuracyTask.WIDTH + 1]), scaled(totals[d * AccuracyTask.WIDTH + 2]),
+						scaled(totals[d * AccuracyTask.WIDTH + 3])));
+			}
+		}
+		return accuracy;
+	}
+
+	// Total material cost (cost times number required) of every project, keyed by project ID in ID order.
+	// Materials without a cost count as free, and without a quantity as one:
+	public Map<Integer, BigDecimal> materialCostByProject() {
+		long[] costs = projectMaterialCosts();
+		Map<Integer, BigDecimal> byProject = new LinkedHashMap<>();
+		for(int p = 0; p < snapshot.projectCount; p++) {
+			byProject.put(snapshot.projectId[p], scaled(costs[p]));
+		}
+		return byProject;
+	}
+
+	// Total material cost of the projects in each category, keyed by category name in category ID order. A project
+	// in several categories counts towards each of them:
+	public Map<String, BigDecimal> materialCostByCategory() {
+		long[] costs = projectMaterialCosts();
+		long[] totals = pool.invoke(new CategoryCostTask(costs, 0, snapshot.linkCount));
+		Map<String, BigDecimal> byCategory = new LinkedHashMap<>();
+		for(int c = 0; c < snapshot.categoryCount; c++) {
+			byCategory.put(snapshot.categoryName[c], scaled(totals[c]));
+		}
+		return byCategory;
+	}
+
+	// The number of steps of every project, keyed by project ID in ID order:
+	public Map<Integer, Integer> stepCountByProject() {
+		Map<Integer, Integer> byProject = new LinkedHashMap<>();
+		for(int p = 0; p < snapshot.projectCount; p++) {
+			byProject.put(snapshot.projectId[p], snapshot.stepStart[p + 1] - snapshot.stepStart[p]);
+		}
+		return byProject;
+	}
+
+	// Material cost per project index in hundredths. Each project's materials are a contiguous range, so every
+	// slot of the result is written by exactly one task:
+	private long[] projectMaterialCosts() {
+		long[] costs = new long[snapshot.projectCount];
+		pool.invoke(new ProjectCostTask(costs, 0, snapshot.projectCount));
+		return costs;
+	}
+
+	private static BigDecimal scaled(long hundredths) {
+		return BigDecimal.valueOf(hundredths, 2);
+	}
+
+	public record DifficultyAccuracy(int difficulty, long projects, BigDecimal estimatedHours, BigDecimal actualHours,
+			BigDecimal absoluteErrorHours) {
+		// Actual hours per estimated hour; above 1 means this difficulty is underestimated:
+		public double actualToEstimatedRatio() {
+			return estimatedHours.signum() == 0 ? 0 : actualHours.doubleValue() / estimatedHours.doubleValue();
+		}
+
+		public BigDecimal meanAbsoluteErrorHours() {
+			return absoluteErrorHours.divide(BigDecimal.valueOf(projects), 2, RoundingMode.HALF_UP);
+		}
+	}
+
+	// Sums count, estimated, actual and absolute error per difficulty into a flat array, WIDTH slots per
+	// difficulty in the order of the sorted distinct difficulties:
+	private class AccuracyTask extends RecursiveTask<long[]> {
+		private static final long serialVersionUID = 1L;
+
+		private static final int WIDTH = 4;
+
+		private final int from;
+		private final int to;
+		private final int[] difficulties;
+
+		private AccuracyTask(int from, int to, int[] difficulties) {
+			this.from = from;
+			this.to = to;
+			this.difficulties = difficulties;
+		}
+
+		@Override
+		protected long[] compute() {
+			if(to - from > SPLIT_THRESHOLD) {
+				int middle = (from + to) >>> 1;
+				AccuracyTask left = new AccuracyTask(from, middle, difficulties);
+				left.fork();
+				long[] totals = new AccuracyTask(middle, to, difficulties).compute();
+				long[] leftTotals = left.join();
+				for(int i = 0; i < totals.length; i++) {
+					totals[i] += leftTotals[i];
+				}
+				return totals;
+			}
+			long[] totals = new long[difficulties.length * WIDTH];
+			for(int p = from; p < to; p++) {
+				int difficulty = snapshot.difficulty[p];
+				long estimated = snapshot.estimatedHours[p];
+				long actual = snapshot.actualHours[p];
+				if(difficulty == ProjectSnapshot.NULL_INT || estimated == ProjectSnapshot.NULL_LONG
+						|| actual == ProjectSnapshot.NULL_LONG) {
+					continue;
+				}
+				int slot = Arrays.binarySearch(difficulties, difficulty) * WIDTH;
+				totals[slot]++;
+				totals[slot + 1] += estimated;
+				totals[slot + 2] += actual;
+				totals[slot + 3] += Math.abs(actual - estimated);
+			}
+			return totals;
+		}
+	}
+
+	private class ProjectCostTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final long[] costs;
+		private final int from;
+		private final int to;
+
+		private ProjectCostTask(long[] costs, int from, int to) {
+			this.costs = costs;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			// Split on material rows rather than projects, so one project with many materials does not leave the
+			// other threads idle:
+			if(to - from > 1 && snapshot.materialStart[to] - snapshot.materialStart[from] > SPLIT_THRESHOLD) {
+				int middle = (from + to) >>> 1;
+				invokeAll(new ProjectCostTask(costs, from, middle), new ProjectCostTask(costs, middle, to));
+				return;
+			}
+			for(int p = from; p < to; p++) {
+				long total = 0;
+				for(int m = snapshot.materialStart[p]; m < snapshot.materialStart[p + 1]; m++) {
+					long cost = snapshot.cost[m];
+					if(cost != ProjectSnapshot.NULL_LONG) {
+						int required = snapshot.numRequired[m];
+						total += required == ProjectSnapshot.NULL_INT ? cost : cost * required;
+					}
+				}
+				costs[p] = total;
+			}
+		}
+	}
+
+	private class CategoryCostTask extends RecursiveTask<long[]> {
+		private static final long serialVersionUID = 1L;
+
+		private final long[] projectCosts;
+		private final int from;
+		private final int to;
+
+		private CategoryCostTask(long[] projectCosts, int from, int to) {
+			this.projectCosts = projectCosts;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected long[] compute() {
+			if(to - from > SPLIT_THRESHOLD) {
+				int middle = (from + to) >>> 1;
+				CategoryCostTask left = new CategoryCostTask(projectCosts, from, middle);
+				left.fork();
+				long[] totals = new CategoryCostTask(projectCosts, middle, to).compute();
+				long[] leftTotals = left.join();
+				for(int i = 0; i < totals.length; i++) {
+					totals[i] += leftTotals[i];
+				}
+				return totals;
+			}
+			long[] totals = new long[snapshot.categoryCount];
+			for(int link = from; link < to; link++) {
+				totals[snapshot.linkCategory[link]] += projectCosts[snapshot.linkProject[link]];
+			}
+			return totals;
+		}
+	}
+}
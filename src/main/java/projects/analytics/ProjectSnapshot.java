@@ -0,0 +1,246 @@
+package projects.analytics;
+
+import java.util.Arrays;
+
+// A read-only, column-oriented copy of the project, material, step, category and project_category tables.
+// Every column is a primitive array. Hours and costs are fixed-point longs in hundredths (DECIMAL(7,2) scaled by
+// 100), so no BigDecimal objects are created. Projects are sorted by ID and the materials and steps of project i
+// are the rows from materialStart[i] to materialStart[i + 1] (and likewise for steps), so per-project work needs
+// no lookups at all.
+public class ProjectSnapshot {
+	// Stored in place of SQL NULL:
+	public static final int NULL_INT = Integer.MIN_VALUE;
+	public static final long NULL_LONG = Long.MIN_VALUE;
+	// Hours and costs are stored multiplied by this:
+	public static final int SCALE = 100;
+
+	final int projectCount;
+	final int[] projectId;
+	final int[] difficulty;
+	final long[] estimatedHours;
+	final long[] actualHours;
+
+	final int[] materialStart;
+	final int[] numRequired;
+	final long[] cost;
+
+	final int[] stepStart;
+
+	final int categoryCount;
+	final int[] categoryId;
+	final String[] categoryName;
+
+	// project_category links as (project index, category index) pairs:
+	final int linkCount;
+	final int[] linkProject;
+	final int[] linkCategory;
+
+	final long loadedAtMillis = System.currentTimeMillis();
+
+	private ProjectSnapshot(Builder builder) {
+		projectCount = builder.projectId.size;
+		projectId = builder.projectId.toArray();
+		difficulty = builder.difficulty.toArray();
+		estimatedHours = builder.estimatedHours.toArray();
+		actualHours = builder.actualHours.toArray();
+
+		// Materials and steps arrive ordered by project ID, so a merge with the sorted project IDs finds where each
+		// project's rows start. Rows of projects that are not in the snapshot are dropped:
+		int[] materialProject = builder.materialProject.toArray();
+		int[] materialRows = keptRows(materialProject);
+		numRequired = select(builder.numRequired.toArray(), materialRows);
+		cost = select(builder.cost.toArray(), materialRows);
+		materialStart = starts(select(materialProject, materialRows));
+
+		int[] stepProject = builder.stepProject.toArray();
+		stepStart = starts(select(stepProject, keptRows(stepProject)));
+
+		categoryCount = builder.categoryId.size;
+		categoryId = builder.categoryId.toArray();
+		categoryName = Arrays.copyOf(builder.categoryName, categoryCount);
+
+		// Translate link IDs into array indexes, dropping links to rows that are not in the snapshot:
+		int[] linkProjectIds = builder.linkProject.toArray();
+		int[] linkCategoryIds = builder.linkCategory.toArray();
+		int[] projectIndexes = new int[linkProjectIds.length];
+		int[] categoryIndexes = new int[linkProjectIds.length];
+		int kept = 0;
+		for(int i = 0; i < linkProjectIds.length; i++) {
+			int projectIndex = Arrays.binarySearch(projectId, linkProjectIds[i]);
+			int categoryIndex = Arrays.binarySearch(categoryId, linkCategoryIds[i]);
+			if(projectIndex >= 0 && categoryIndex >= 0) {
+				projectIndexes[kept] = projectIndex;
+				categoryIndexes[kept] = categoryIndex;
+				kept++;
+			}
+		}
+		linkCount = kept;
+		linkProject = Arrays.copyOf(projectIndexes, kept);
+		linkCategory = Arrays.copyOf(categoryIndexes, kept);
+	}
+
+	public int getProjectCount() {
+		return projectCount;
+	}
+
+	public int getMaterialCount() {
+		return numRequired.length;
+	}
+
+	public int getStepCount() {
+		return stepStart[projectCount];
+	}
+
+	public int getCategoryCount() {
+		return categoryCount;
+	}
+
+	public long getLoadedAtMillis() {
+		return loadedAtMillis;
+	}
+
+	// Indexes of the rows whose project ID is in the snapshot:
+	private int[] keptRows(int[] rowProject) {
+		int[] rows = new int[rowProject.length];
+		int kept = 0;
+		for(int i = 0; i < rowProject.length; i++) {
+			if(Arrays.binarySearch(projectId, rowProject[i]) >= 0) {
+				rows[kept++] = i;
+			}
+		}
+		return Arrays.copyOf(rows, kept);
+	}
+
+	private static int[] select(int[] values, int[] rows) {
+		int[] selected = new int[rows.length];
+		for(int i = 0; i < rows.length; i++) {
+			selected[i] = values[rows[i]];
+		}
+		return selected;
+	}
+
+	private static long[] select(long[] values, int[] rows) {
+		long[] selected = new long[rows.length];
+		for(int i = 0; i < rows.length; i++) {
+			selected[i] = values[rows[i]];
+		}
+		return selected;
+	}
+
+	// Offsets of the first row of each project in rows sorted by project ID, plus the total row count at the end:
+	private int[] starts(int[] rowProject) {
+		int[] starts = new int[projectCount + 1];
+		int row = 0;
+		for(int p = 0; p < projectCount; p++) {
+			starts[p] = row;
+			while(row < rowProject.length && rowProject[row] == projectId[p]) {
+				row++;
+			}
+		}
+		starts[projectCount] = row;
+		return starts;
+	}
+
+	// Collects rows as they are read from the database. Projects must be added in ascending ID order, and
+	// materials and steps in ascending project ID order; categories and links may come in any order.
+	public static class Builder {
+		private final IntColumn projectId = new IntColumn();
+		private final IntColumn difficulty = new IntColumn();
+		private final LongColumn estimatedHours = new LongColumn();
+		private final LongColumn actualHours = new LongColumn();
+		private final IntColumn materialProject = new IntColumn();
+		private final IntColumn numRequired = new IntColumn();
+		private final LongColumn cost = new LongColumn();
+		private final IntColumn stepProject = new IntColumn();
+		private final IntColumn categoryId = new IntColumn();
+		private String[] categoryName = new String[16];
+		private final IntColumn linkProject = new IntColumn();
+		private final IntColumn linkCategory = new IntColumn();
+
+		public void addProject(int id, int projectDifficulty, long scaledEstimatedHours, long scaledActualHours) {
+			projectId.add(id);
+			difficulty.add(projectDifficulty);
+			estimatedHours.add(scaledEstimatedHours);
+			actualHours.add(scaledActualHours);
+		}
+
+		public void addMaterial(int projectIdValue, int required, long scaledCost) {
+			materialProject.add(projectIdValue);
+			numRequired.add(required);
+			cost.add(scaledCost);
+		}
+
+		public void addStep(int projectIdValue) {
+			stepProject.add(projectIdValue);
+		}
+
+		public void addCategory(int id, String name) {
+			if(categoryId.size == categoryName.length) {
+				categoryName = Arrays.copyOf(categoryName, categoryName.length * 2);
+			}
+			categoryName[categoryId.size] = name;
+			categoryId.add(id);
+		}
+
+		public void addProjectCategory(int projectIdValue, int categoryIdValue) {
+			linkProject.add(projectIdValue);
+			linkCategory.add(categoryIdValue);
+		}
+
+		public ProjectSnapshot build() {
+			sortCategories();
+			return new ProjectSnapshot(this);
+		}
+
+		// Categories are searched by ID, so put them in ID order along with their names:
+		private void sortCategories() {
+			int count = categoryId.size;
+			Integer[] order = new Integer[count];
+			for(int i = 0; i < count; i++) {
+				order[i] = i;
+			}
+			Arrays.sort(order, (a, b) -> Integer.compare(categoryId.values[a], categoryId.values[b]));
+			int[] ids = new int[count];
+			String[] names = new String[Math.max(16, count)];
+			for(int i = 0; i < count; i++) {
+				ids[i] = categoryId.values[order[i]];
+				names[i] = categoryName[order[i]];
+			}
+			System.arraycopy(ids, 0, categoryId.values, 0, count);
+			categoryName = names;
+		}
+	}
+
+	// Growable primitive arrays used while loading:
+	private static class IntColumn {
+		private int[] values = new int[1024];
+		private int size;
+
+		private void add(int value) {
+			if(size == values.length) {
+				values = Arrays.copyOf(values, size * 2);
+			}
+			values[size++] = value;
+		}
+
+		private int[] toArray() {
+			return Arrays.copyOf(values, size);
+		}
+	}
+
+	private static class LongColumn {
+		private long[] values = new long[1024];
+		private int size;
+
+		private void add(long value) {
+			if(size == values.length) {
+				values = Arrays.copyOf(values, size * 2);
+			}
+			values[size++] = value;
+		}
+
+		private long[] toArray() {
+			return Arrays.copyOf(values, size);
+		}
+	}
+}
@@ -0,0 +1,167 @@
+package projects.bulk;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Stream;
+
+import projects.entity.Project;
+import projects.exception.DbException;
+import projects.service.ProjectService;
+
+// Moves project graphs between JSON-lines files and the database. Import parses chunks of lines in parallel
+// while earlier chunks are being inserted, and commits each chunk as one batched transaction. Export reads
+// projects through a cursor and loads their children a chunk at a time. Both keep only a few chunks in memory.
+public class ProjectBulkLoader {
+	private final ProjectService projectService;
+	private final int chunkSize;
+	private final int parserThreads;
+
+	public ProjectBulkLoader(ProjectService projectService) {
+		this(projectService, 1000, Runtime.getRuntime().availableProcessors());
+	}
+
+	public ProjectBulkLoader(ProjectService projectService, int chunkSize, int parserThreads) {
+		if(chunkSize < 1 || parserThreads < 1) {
+			throw new IllegalArgumentException("Invalid bulk settings: chunkSize=" + chunkSize
+					+ ", parserThreads=" + parserThreads);
+		}
+		this.projectService = projectService;
+		this.chunkSize = chunkSize;
+		this.parserThreads = parserThreads;
+	}
+
+	// Insert every project in the reader. Blank lines are skipped. Chunks that were committed before an error
+	// stay in the database:
+	public BulkResult importJsonLines(Reader reader) {
+		long start = System.nanoTime();
+		long projects = 0;
+		long rows = 0;
+		ExecutorService parsers = Executors.newFixedThreadPool(parserThreads);
+		// Parsed chunks waiting to be inserted, oldest first. Its size bounds how far parsing runs ahead:
+		Deque<CompletableFuture<List<Project>>> pending = new ArrayDeque<>();
+		try(BufferedReader lines = new BufferedReader(reader)) {
+			List<String> chunk = new ArrayList<>(chunkSize);
+			long lineNumber = 0;
+			long chunkStart = 1;
+			String line;
+			while((line = lines.readLine()) != null) {
+				lineNumber++;
+				if(!line.isBlank()) {
+					chunk.add(line);
+				}
+				if(chunk.size() == chunkSize) {
+					pending.add(parse(chunk, chunkStart, parsers));
+					chunk = new ArrayList<>(chunkSize);
+					chunkStart = lineNumber + 1;
+				}
+				if(pending.size() > parserThreads) {
+					List<Project> inserted = insert(pending.removeFirst());
+					projects += inserted.size();
+					rows += countRows(inserted);
+				}
+			}
+			if(!chunk.isEmpty()) {
+				pending.add(parse(chunk, chunkStart, parsers));
+			}
+			while(!pending.isEmpty()) {
+				List<Project> inserted = insert(pending.removeFirst());
+				projects += inserted.size();
+				rows += countRows(inserted);
+			}
+		}catch(IOException e) {
+			throw new UncheckedIOException(e);
+		}finally {
+			pending.forEach(future -> future.cancel(false));
+			parsers.shutdownNow();
+		}
+		return new BulkResult(projects, rows, System.nanoTime() - start);
+	}
+
+	// Write every project graph, one JSON object per line, in project name order:
+	public BulkResult exportJsonLines(Writer writer) {
+		long start = System.nanoTime();
+		long projects = 0;
+		long rows = 0;
+		BufferedWriter out = writer instanceof BufferedWriter buffered ? buffered : new BufferedWriter(writer);
+		try(Stream<Project> cursor = projectService.streamAllProjects(chunkSize)) {
+			Iterator<Project> iterator = cursor.iterator();
+			List<Integer> ids = new ArrayList<>(chunkSize);
+			while(iterator.hasNext()) {
+				ids.add(iterator.next().getProjectId());
+				if(ids.size() == chunkSize || !iterator.hasNext()) {
+					// Load the children of the whole chunk with a constant number of queries. Each graph is written
+					// once, so the chunk is read past the project cache:
+					List<Project> graphs = projectService.scanProjectsByIds(ids);
+					for(Project project : graphs) {
+						ProjectJson.write(project, out);
+						out.newLine();
+					}
+					projects += graphs.size();
+					rows += countRows(graphs);
+					ids.clear();
+				}
+			}
+			out.flush();
+		}catch(IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return new BulkResult(projects, rows, System.nanoTime() - start);
+	}
+
+	private CompletableFuture<List<Project>> parse(List<String> lines, long firstLine, ExecutorService parsers) {
+		return CompletableFuture.supplyAsync(() -> {
+			List<Project> projects = new ArrayList<>(lines.size());
+			for(int i = 0; i < lines.size(); i++) {
+				try {
+					projects.add(ProjectJson.parse(lines.get(i)));
+				}catch(DbException e) {
+					throw new DbException("Unable to parse project in chunk starting at line " + firstLine
+							+ " (entry " + (i + 1) + "): " + e.getMessage(), e);
+				}
+			}
+			return projects;
+		}, parsers);
+	}
+
+	private List<Project> insert(CompletableFuture<List<Project>> parsed) {
+		try {
+			return projectService.addProjects(parsed.join());
+		}catch(CompletionException e) {
+			throw e.getCause() instanceof RuntimeException cause ? cause : e;
+		}
+	}
+
+	private long countRows(List<Project> projects) {
+		long rows = 0;
+		for(Project project : projects) {
+			rows += 1 + project.getMaterials().size() + project.getSteps().size() + project.getCategories().size();
+		}
+		return rows;
+	}
+
+	// Counts of what was moved and how long it took. rows includes the child rows of each project:
+	public record BulkResult(long projects, long rows, long elapsedNanos) {
+		public double rowsPerSecond() {
+			return elapsedNanos == 0 ? 0 : rows * 1_000_000_000.0 / elapsedNanos;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%d projects (%d rows) in %.1f s, %.0f rows/sec", projects, rows,
+					elapsedNanos / 1_000_000_000.0, rowsPerSecond());
+		}
+	}
+}
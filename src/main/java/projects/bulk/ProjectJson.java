@@ -0,0 +1,303 @@
+package projects.bulk;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import projects.entity.Category;
+import projects.entity.Material;
+import projects.entity.Project;
+import projects.entity.ProjectRenderer;
+import projects.entity.Step;
+import projects.exception.DbException;
+
+// Converts project graphs to and from single-line JSON objects, one project per line:
+//
+//	{"projectId":1,"projectName":"Hang a door","estimatedHours":4.30,"actualHours":3.65,"difficulty":3,
+//	 "notes":"...","materials":[{"materialId":1,"materialName":"Door in frame","numRequired":1,"cost":75.99}],
+//	 "steps":[{"stepId":1,"stepText":"Align hangers","stepOrder":1}],"categories":[{"categoryId":1,"categoryName":"Repairs"}]}
+//
+// Fields may appear in any order and unknown fields are ignored. IDs are written on export but ignored on import,
+// except for category IDs, which link the project to existing categories.
+public class ProjectJson {
+	private ProjectJson() {
+	}
+
+	// The JSON layout is defined by the renderer, so export and the JSON view always agree:
+	public static void write(Project project, Appendable out) {
+		ProjectRenderer.JSON.render(project, out);
+	}
+
+	public static Project parse(String line) {
+		Map<String, Object> fields = new Parser(line).parseObjectOnly();
+		Project project = new Project();
+		project.setProjectName(text(fields, "projectName"));
+		project.setEstimatedHours(decimal(fields, "estimatedHours"));
+		project.setActualHours(decimal(fields, "actualHours"));
+		project.setDifficulty(integer(fields, "difficulty"));
+		project.setNotes(text(fields, "notes"));
+
+		for(Map<String, Object> item : objects(fields, "materials")) {
+			Material material = new Material();
+			material.setMaterialName(text(item, "materialName"));
+			material.setNumRequired(integer(item, "numRequired"));
+			material.setCost(decimal(item, "cost"));
+			project.getMaterials().add(material);
+		}
+		for(Map<String, Object> item : objects(fields, "steps")) {
+			Step step = new Step();
+			step.setStepText(text(item, "stepText"));
+			step.setStepOrder(integer(item, "stepOrder"));
+			project.getSteps().add(step);
+		}
+		for(Map<String, Object> item : objects(fields, "categories")) {
+			Category category = new Category();
+			category.setCategoryId(integer(item, "categoryId"));
+			category.setCategoryName(text(item, "categoryName"));
+			project.getCategories().add(category);
+		}
+		return project;
+	}
+
+	private static String text(Map<String, Object> fields, String name) {
+		Object value = fields.get(name);
+		if(Objects.isNull(value) || value instanceof String) {
+			return (String)value;
+		}
+		throw new DbException("Field " + name + " must be a string");
+	}
+
+	private static BigDecimal decimal(Map<String, Object> fields, String name) {
+		Object value = fields.get(name);
+		if(Objects.isNull(value) || value instanceof BigDecimal) {
+			return (BigDecimal)value;
+		}
+		throw new DbException("Field " + name + " must be a number");
+	}
+
+	private static Integer integer(Map<String, Object> fields, String name) {
+		BigDecimal value = decimal(fields, name);
+		try {
+			return Objects.isNull(value) ? null : value.intValueExact();
+		}catch(ArithmeticException e) {
+			throw new DbException("Field " + name + " must be a whole number", e);
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private static List<Map<String, Object>> objects(Map<String, Object> fields, String name) {
+		Object value = fields.get(name);
+		if(Objects.isNull(value)) {
+			return List.of();
+		}
+		if(value instanceof List<?> list && list.stream().allMatch(Map.class::isInstance)) {
+			return (List<Map<String, Object>>)value;
+		}
+		throw new DbException("Field " + name + " must be an array of objects");
+	}
+
+	// A small recursive-descent JSON parser. Objects become maps, arrays lists and numbers BigDecimals:
+	private static class Parser {
+		private final String text;
+		private int pos;
+
+		private Parser(String text) {
+			this.text = text;
+		}
+
+		@SuppressWarnings("unchecked")
+		private Map<String, Object> parseObjectOnly() {
+			skipWhitespace();
+			if(peek() != '{') {
+				throw error("Expected a JSON object");
+			}
+			Map<String, Object> object = (Map<String, Object>)value();
+			skipWhitespace();
+			if(pos != text.length()) {
+				throw error("Unexpected text after the JSON object");
+			}
+			return object;
+		}
+
+		private Object value() {
+			skipWhitespace();
+			char ch = peek();
+			switch(ch) {
+				case '{':
+					return object();
+				case '[':
+					return array();
+				case '"':
+					return string();
+				case 'n':
+					expect("null");
+					return null;
+				case 't':
+					expect("true");
+					return Boolean.TRUE;
+				case 'f':
+					expect("false");
+					return Boolean.FALSE;
+				default:
+					return number();
+			}
+		}
+
+		private Map<String, Object> object() {
+			Map<String, Object> object = new LinkedHashMap<>();
+			pos++;
+			skipWhitespace();
+			if(peek() == '}') {
+				pos++;
+				return object;
+			}
+			while(true) {
+				skipWhitespace();
+				String name = string();
+				skipWhitespace();
+				expect(":");
+				object.put(name, value());
+				skipWhitespace();
+				char ch = next();
+				if(ch == '}') {
+					return object;
+				}
+				if(ch != ',') {
+					throw error("Expected , or }");
+				}
+			}
+		}
+
+		private List<Object> array() {
+			List<Object> array = new ArrayList<>();
+			pos++;
+			skipWhitespace();
+			if(peek() == ']') {
+				pos++;
+				return array;
+			}
+			while(true) {
+				array.add(value());
+				skipWhitespace();
+				char ch = next();
+				if(ch == ']') {
+					return array;
+				}
+				if(ch != ',') {
+					throw error("Expected , or ]");
+				}
+			}
+		}
+
+		private String string() {
+			if(next() != '"') {
+				throw error("Expected a string");
+			}
+			StringBuilder builder = null;
+			int start = pos;
+			while(true) {
+				char ch = next();
+				if(ch == '"') {
+					return Objects.isNull(builder) ? text.substring(start, pos - 1)
+							: builder.append(text, start, pos - 1).toString();
+				}
+				if(ch == '\\') {
+					if(Objects.isNull(builder)) {
+						builder = new StringBuilder();
+					}
+					builder.append(text, start, pos - 1);
+					char escaped = next();
+					switch(escaped) {
+						case 'n':
+							builder.append('\n');
+							break;
+						case 'r':
+							builder.append('\r');
+							break;
+						case 't':
+							builder.append('\t');
+							break;
+						case 'b':
+							builder.append('\b');
+							break;
+						case 'f':
+							builder.append('\f');
+							break;
+						case 'u':
+							builder.append(unicodeEscape());
+							break;
+						default:
+							builder.append(escaped);
+							break;
+					}
+					start = pos;
+				}
+			}
+		}
+
+		// The four hex digits of a unicode escape, as the character they encode:
+		private char unicodeEscape() {
+			if(pos + 4 > text.length()) {
+				throw error("Bad unicode escape");
+			}
+			int code = 0;
+			for(int i = 0; i < 4; i++) {
+				int digit = Character.digit(text.charAt(pos), 16);
+				if(digit < 0) {
+					throw error("Bad unicode escape");
+				}
+				code = code * 16 + digit;
+				pos++;
+			}
+			return (char)code;
+		}
+
+		private BigDecimal number() {
+			int start = pos;
+			while(pos < text.length() && "+-0123456789.eE".indexOf(text.charAt(pos)) >= 0) {
+				pos++;
+			}
+			if(start == pos) {
+				throw error("Unexpected character");
+			}
+			try {
+				return new BigDecimal(text.substring(start, pos));
+			}catch(NumberFormatException e) {
+				throw error("Bad number");
+			}
+		}
+
+		private void expect(String literal) {
+			if(!text.startsWith(literal, pos)) {
+				throw error("Expected " + literal);
+			}
+			pos += literal.length();
+		}
+
+		private void skipWhitespace() {
+			while(pos < text.length() && Character.isWhitespace(text.charAt(pos))) {
+				pos++;
+			}
+		}
+
+		private char peek() {
+			if(pos >= text.length()) {
+				throw error("Unexpected end of line");
+			}
+			return text.charAt(pos);
+		}
+
+		private char next() {
+			char ch = peek();
+			pos++;
+			return ch;
+		}
+
+		private DbException error(String message) {
+			return new DbException(message + " at column " + (pos + 1));
+		}
+	}
+}
@@ -0,0 +1,356 @@
+package projects.cli;
+
+import java.io.PrintWriter;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import projects.entity.Material;
+import projects.entity.Project;
+import projects.entity.Step;
+import projects.exception.DbException;
+import projects.exception.StaleProjectException;
+import projects.metrics.LatencyHistogram;
+import projects.service.ProjectService;
+
+// Measures how much work ProjectService can take. A synthetic dataset is inserted first, then each of a number of
+// virtual threads runs a weighted random mix of add, list, select, update and delete calls back to back until the
+// run is over. Calls made during the warmup are not counted. Throughput and latency percentiles are reported per
+// operation. Every project the run inserted and did not delete is deleted at the end unless cleanup=false.
+public class LoadGenerator {
+	// Number of projects fetched by a list call:
+	private static final int LIST_PAGE_SIZE = 100;
+	// Percentiles shown in the report:
+	private static final double[] PERCENTILES = {0.5, 0.9, 0.99, 0.999};
+
+	public enum Operation {
+		ADD, LIST, SELECT, UPDATE, DELETE
+	}
+
+	private final ProjectService projectService;
+	private final Settings settings;
+	// IDs available to select, update and delete:
+	private final IdPool ids;
+	// Every project inserted by this run and not yet deleted, for the cleanup:
+	private final Set<Integer> created = ConcurrentHashMap.newKeySet();
+	private final AtomicInteger projectNumber = new AtomicInteger();
+	private final Map<Operation, OperationResults> results = new EnumMap<>(Operation.class);
+
+	public LoadGenerator(ProjectService projectService, Settings settings) {
+		this.projectService = projectService;
+		this.settings = settings;
+		this.ids = new IdPool(Math.max(1024, settings.datasetSize() * 2));
+		for(Operation operation : Operation.values()) {
+			results.put(operation, new OperationResults());
+		}
+	}
+
+	public Report run() {
+		loadDataset();
+		long start = System.nanoTime();
+		long measureFrom = start + settings.warmup().toNanos();
+		long end = measureFrom + settings.duration().toNanos();
+		try(ExecutorService workers = Executors.newVirtualThreadPerTaskExecutor()){
+			for(int i = 0; i < settings.threads(); i++) {
+				workers.submit(() -> work(measureFrom, end));
+			}
+		}
+		long measuredNanos = Math.max(1, Math.min(System.nanoTime(), end) - measureFrom);
+		Report report = new Report(settings, measuredNanos, results);
+		if(settings.cleanup()) {
+			cleanUp();
+		}
+		return report;
+	}
+
+	private void loadDataset() {
+		List<Project> projects = new ArrayList<>(settings.datasetSize());
+		for(int i = 0; i < settings.datasetSize(); i++) {
+			projects.add(newProject());
+			// Insert in chunks, so that a large dataset does not become one huge transaction:
+			if(projects.size() == 1000 || i == settings.datasetSize() - 1) {
+				for(Project project : projectService.addProjects(projects)) {
+					created.add(project.getProjectId());
+					ids.add(project.getProjectId());
+				}
+				projects.clear();
+			}
+		}
+	}
+
+	private void work(long measureFrom, long end) {
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		long now;
+		while((now = System.nanoTime()) < end) {
+			Operation operation = settings.pick(random.nextInt(settings.totalWeight()));
+			OperationResults counts = results.get(operation);
+			try {
+				call(operation, random);
+				if(now >= measureFrom) {
+					counts.latency.record(System.nanoTime() - now);
+				}
+			}catch(NoSuchElementException | StaleProjectException e) {
+				// Another thread deleted or changed the project first. Expected with a write-heavy mix:
+				if(now >= measureFrom) {
+					counts.conflicts.increment();
+				}
+			}catch(RuntimeException e) {
+				if(now >= measureFrom) {
+					counts.errors.increment();
+				}
+			}
+		}
+	}
+
+	private void call(Operation operation, ThreadLocalRandom random) {
+		switch(operation) {
+			case ADD -> {
+				Integer projectId = projectService.addProject(newProject()).getProjectId();
+				created.add(projectId);
+				ids.add(projectId);
+			}
+			case LIST -> projectService.fetchProjectSummariesPage(null, null, LIST_PAGE_SIZE);
+			case SELECT -> projectService.fetchProjectById(ids.pick(random));
+			case UPDATE -> {
+				Project project = projectService.fetchProjectById(ids.pick(random)).copy();
+				project.setActualHours(hours(random));
+				project.setNotes("Updated by the load generator at " + System.nanoTime());
+				projectService.modifyProjectDetails(project);
+			}
+			case DELETE -> {
+				Integer projectId = ids.take(random);
+				projectService.deleteProject(projectId);
+				created.remove(projectId);
+			}
+		}
+	}
+
+	private void cleanUp() {
+		try(ExecutorService workers = Executors.newVirtualThreadPerTaskExecutor()){
+			for(Integer projectId : created) {
+				workers.submit(() -> {
+					try {
+						projectService.deleteProject(projectId);
+					}catch(RuntimeException e) {
+						// Already gone, for example after a delete that timed out but did commit:
+					}
+				});
+			}
+		}
+		created.clear();
+	}
+
+	// A project with a few materials and steps, like one entered by hand:
+	private Project newProject() {
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		int number = projectNumber.incrementAndGet();
+		Project project = new Project();
+		project.setProjectName("Load test project " + number);
+		project.setEstimatedHours(hours(random));
+		project.setActualHours(hours(random));
+		project.setDifficulty(random.nextInt(1, 6));
+		project.setNotes("Synthetic project " + number + " created by the load generator");
+		for(int i = 1; i <= 3; i++) {
+			Material material = new Material();
+			material.setMaterialName("Material " + i + " of project " + number);
+			material.setNumRequired(random.nextInt(1, 20));
+			material.setCost(BigDecimal.valueOf(random.nextInt(100, 10_000), 2));
+			project.getMaterials().add(material);
+		}
+		for(int i = 1; i <= 4; i++) {
+			Step step = new Step();
+			step.setStepText("Step " + i + " of project " + number);
+			project.getSteps().add(step);
+		}
+		return project;
+	}
+
+	private static BigDecimal hours(ThreadLocalRandom random) {
+		return BigDecimal.valueOf(random.nextInt(25, 10_000), 2);
+	}
+
+	// How the run is shaped. mix holds the relative weight of each operation:
+	public record Settings(int threads, Duration warmup, Duration duration, int datasetSize,
+			Map<Operation, Integer> mix, boolean cleanup) {
+		public Settings {
+			if(threads < 1 || datasetSize < 1 || warmup.isNegative() || duration.isNegative() || duration.isZero()) {
+				throw new DbException("Invalid load settings: threads=" + threads + ", warmup=" + warmup
+						+ ", duration=" + duration + ", dataset=" + datasetSize);
+			}
+			if(mix.values().stream().anyMatch(weight -> weight < 0)
+					|| mix.values().stream().mapToInt(Integer::intValue).sum() < 1) {
+				throw new DbException("The operation mix needs at least one positive weight: " + mix);
+			}
+			mix = Collections.unmodifiableMap(new EnumMap<>(mix));
+		}
+
+		// Read settings from name=value arguments. Missing ones take their defaults:
+		//   threads=16 warmupSeconds=5 seconds=30 dataset=1000 cleanup=true
+		//   mix=add:10,list:10,select:60,update:15,delete:5
+		public static Settings parse(List<String> arguments) {
+			int threads = 16;
+			long warmupSeconds = 5;
+			long seconds = 30;
+			int datasetSize = 1000;
+			boolean cleanup = true;
+			Map<Operation, Integer> mix = Map.of(Operation.ADD, 10, Operation.LIST, 10, Operation.SELECT, 60,
+					Operation.UPDATE, 15, Operation.DELETE, 5);
+			for(String argument : arguments) {
+				int equals = argument.indexOf('=');
+				if(equals < 1) {
+					throw new DbException("Expected name=value but found " + argument);
+				}
+				String value = argument.substring(equals + 1);
+				try {
+					switch(argument.substring(0, equals)) {
+						case "threads" -> threads = Integer.parseInt(value);
+						case "warmupSeconds" -> warmupSeconds = Long.parseLong(value);
+						case "seconds" -> seconds = Long.parseLong(value);
+						case "dataset" -> datasetSize = Integer.parseInt(value);
+						case "cleanup" -> cleanup = Boolean.parseBoolean(value);
+						case "mix" -> mix = parseMix(value);
+						default -> throw new DbException("Unknown load setting " + argument);
+					}
+				}catch(IllegalArgumentException e) {
+					throw new DbException("Invalid load setting " + argument);
+				}
+			}
+			return new Settings(threads, Duration.ofSeconds(warmupSeconds), Duration.ofSeconds(seconds), datasetSize,
+					mix, cleanup);
+		}
+
+		// add:10,select:90 gives the listed weights and 0 to the operations not listed:
+		private static Map<Operation, Integer> parseMix(String value) {
+			Map<Operation, Integer> mix = new EnumMap<>(Operation.class);
+			for(String entry : value.split(",")) {
+				String[] parts = entry.split(":");
+				if(parts.length != 2) {
+					throw new DbException("Expected operation:weight but found " + entry);
+				}
+				mix.put(Operation.valueOf(parts[0].trim().toUpperCase()), Integer.parseInt(parts[1].trim()));
+			}
+			return mix;
+		}
+
+		private int totalWeight() {
+			return mix.values().stream().mapToInt(Integer::intValue).sum();
+		}
+
+		// The operation at the given point of the total weight:
+		private Operation pick(int point) {
+			int remaining = point;
+			for(Operation operation : Operation.values()) {
+				remaining -= mix.getOrDefault(operation, 0);
+				if(remaining < 0) {
+					return operation;
+				}
+			}
+			throw new IllegalStateException("No operation at " + point + " of " + totalWeight());
+		}
+	}
+
+	private static class OperationResults {
+		private final LatencyHistogram latency = new LatencyHistogram();
+		private final LongAdder errors = new LongAdder();
+		private final LongAdder conflicts = new LongAdder();
+	}
+
+	// Outcome of a run. Only calls made after the warmup are counted:
+	public static class Report {
+		private final Settings settings;
+		private final long measuredNanos;
+		private final Map<Operation, OperationResults> results;
+
+		private Report(Settings settings, long measuredNanos, Map<Operation, OperationResults> results) {
+			this.settings = settings;
+			this.measuredNanos = measuredNanos;
+			this.results = results;
+		}
+
+		// Successful calls per second over the measured part of the run:
+		public double getThroughput() {
+			long calls = 0;
+			for(OperationResults counts : results.values()) {
+				calls += counts.latency.getCount();
+			}
+			return calls * 1_000_000_000.0 / measuredNanos;
+		}
+
+		public void print(PrintWriter out) {
+			out.printf("%d threads for %.1f s after %d s warmup, %d projects in the dataset, mix %s%n",
+					settings.threads(), measuredNanos / 1_000_000_000.0, settings.warmup().toSeconds(),
+					settings.datasetSize(), settings.mix());
+			out.printf("Throughput: %.1f calls/s%n", getThroughput());
+			out.printf("%-8s %10s %8s %9s %10s %10s %10s %10s %10s%n", "op", "calls", "errors", "conflicts",
+					"p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms");
+			results.forEach((operation, counts) -> {
+				if(counts.latency.getCount() + counts.errors.sum() + counts.conflicts.sum() == 0) {
+					return;
+				}
+				out.printf("%-8s %10d %8d %9d", operation.name().toLowerCase(), counts.latency.getCount(),
+						counts.errors.sum(), counts.conflicts.sum());
+				for(double percentile : PERCENTILES) {
+					out.printf(" %10.2f", counts.latency.percentileNanos(percentile) / 1_000_000.0);
+				}
+				out.printf(" %10.2f%n", counts.latency.getMaxNanos() / 1_000_000.0);
+			});
+			out.flush();
+		}
+	}
+
+	// A fixed number of slots holding project IDs, for picking one at random without a lock. When the slots are
+	// full a new ID replaces an old one, which is then no longer picked. Empty slots hold 0, which is never a
+	// generated ID:
+	private static class IdPool {
+		private final AtomicIntegerArray slots;
+		private final AtomicInteger nextSlot = new AtomicInteger();
+
+		private IdPool(int size) {
+			slots = new AtomicIntegerArray(size);
+		}
+
+		private void add(int projectId) {
+			slots.set(Math.floorMod(nextSlot.getAndIncrement(), slots.length()), projectId);
+		}
+
+		// A random ID, which may be one that another thread is deleting:
+		private Integer pick(ThreadLocalRandom random) {
+			for(int attempt = 0; attempt < 16; attempt++) {
+				int projectId = slots.get(random.nextInt(used()));
+				if(projectId != 0) {
+					return projectId;
+				}
+			}
+			throw new NoSuchElementException("No project to pick");
+		}
+
+		// A random ID that no other thread will be given:
+		private Integer take(ThreadLocalRandom random) {
+			for(int attempt = 0; attempt < 16; attempt++) {
+				int slot = random.nextInt(used());
+				int projectId = slots.get(slot);
+				if(projectId != 0 && slots.compareAndSet(slot, projectId, 0)) {
+					return projectId;
+				}
+			}
+			throw new NoSuchElementException("No project to take");
+		}
+
+		private int used() {
+			return Math.max(1, Math.min(nextSlot.get(), slots.length()));
+		}
+	}
+}
@@ -0,0 +1,264 @@
+package projects.cli;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+import projects.bulk.ProjectBulkLoader;
+import projects.entity.Project;
+import projects.entity.ProjectRenderer;
+import projects.entity.ProjectSummary;
+import projects.exception.DbException;
+import projects.search.ProjectSearchIndex.SearchHit;
+import projects.service.ProjectService;
+
+// Runs project commands read from a file or a pipe, one per line, without prompting. Results go to out and
+// failures to err, each failure naming its line, and a failed command does not stop the ones after it. Blank
+// lines and lines starting with # are skipped. Values containing spaces are written in double quotes, with \"
+// for a quote inside them. The commands are:
+//
+//   add projectName=<name> [estimatedHours=<n>] [actualHours=<n>] [difficulty=<1-5>] [notes=<text>]
+//   list
+//   show <projectId>
+//   update <projectId> [projectName=<name>] [estimatedHours=<n>] [actualHours=<n>] [difficulty=<1-5>] [notes=<text>]
+//   delete <projectId>
+//   search <words>
+//   import <file>
+//   export <file>
+public class ScriptRunner {
+	// Number of projects read from the database at a time by list:
+	private static final int LIST_PAGE_SIZE = 100;
+	// Maximum number of projects printed by search:
+	private static final int SEARCH_RESULT_LIMIT = 20;
+
+	private final ProjectService projectService;
+	private final PrintWriter out;
+	private final PrintWriter err;
+
+	public ScriptRunner(ProjectService projectService, PrintWriter out, PrintWriter err) {
+		this.projectService = projectService;
+		this.out = out;
+		this.err = err;
+	}
+
+	// Run every command from the reader and return the number that failed:
+	public int run(Reader script) {
+		BufferedReader lines = new BufferedReader(script);
+		int lineNumber = 0;
+		int failures = 0;
+		try {
+			String line;
+			while(Objects.nonNull(line = lines.readLine())) {
+				lineNumber++;
+				String trimmed = line.trim();
+				if(trimmed.isEmpty() || trimmed.startsWith("#")) {
+					continue;
+				}
+				try {
+					execute(tokenize(trimmed));
+				}catch(RuntimeException e) {
+					failures++;
+					err.println("line " + lineNumber + ": " + trimmed + ": " + e.getMessage());
+				}
+				// Flush per command, so that a pipe reading the output sees each result as it is produced:
+				out.flush();
+				err.flush();
+			}
+		}catch(IOException e) {
+			throw new UncheckedIOException("Unable to read the script at line " + (lineNumber + 1), e);
+		}
+		return failures;
+	}
+
+	private void execute(List<String> tokens) {
+		String command = tokens.get(0);
+		List<String> arguments = tokens.subList(1, tokens.size());
+		switch(command) {
+			case "add" -> add(arguments);
+			case "list" -> list();
+			case "show" -> show(projectId(arguments));
+			case "update" -> update(projectId(arguments), arguments.subList(1, arguments.size()));
+			case "delete" -> delete(projectId(arguments));
+			case "search" -> search(String.join(" ", arguments));
+			case "import" -> importProjects(fileName(arguments));
+			case "export" -> exportProjects(fileName(arguments));
+			default -> throw new DbException("Unknown command " + command);
+		}
+	}
+
+	private void add(List<String> arguments) {
+		Project project = new Project();
+		setDetails(project, arguments);
+		if(Objects.isNull(project.getProjectName())) {
+			throw new DbException("add needs a projectName");
+		}
+		Project added = projectService.addProject(project);
+		out.println("added " + added.getProjectId());
+	}
+
+	private void list() {
+		List<ProjectSummary> projects = projectService.fetchProjectSummariesPage(null, null, LIST_PAGE_SIZE);
+		while(!projects.isEmpty()) {
+			for(ProjectSummary project : projects) {
+				ProjectRenderer.renderListEntry(project.getProjectId(), project.getProjectName(), out);
+				out.println();
+			}
+			if(projects.size() < LIST_PAGE_SIZE) {
+				break;
+			}
+			ProjectSummary last = projects.get(projects.size() - 1);
+			projects = projectService.fetchProjectSummariesPage(last.getProjectName(), last.getProjectId(),
+					LIST_PAGE_SIZE);
+		}
+	}
+
+	private void show(Integer projectId) {
+		ProjectRenderer.TEXT.render(projectService.fetchProjectById(projectId), out);
+		out.println();
+	}
+
+	private void update(Integer projectId, List<String> arguments) {
+		// Change a copy, as the fetched project may be shared with the service's cache:
+		Project project = projectService.fetchProjectById(projectId).copy();
+		setDetails(project, arguments);
+		Project saved = projectService.modifyProjectDetails(project);
+		out.println("updated " + projectId + " version " + saved.getVersion());
+	}
+
+	private void delete(Integer projectId) {
+		projectService.deleteProject(projectId);
+		out.println("deleted " + projectId);
+	}
+
+	private void search(String query) {
+		for(SearchHit hit : projectService.searchProjectsByPrefix(query, SEARCH_RESULT_LIMIT)) {
+			ProjectRenderer.renderListEntry(hit.projectId(), hit.projectName(), out);
+			out.println();
+		}
+	}
+
+	private void importProjects(String fileName) {
+		try(Reader reader = Files.newBufferedReader(Path.of(fileName), StandardCharsets.UTF_8)){
+			out.println("imported " + new ProjectBulkLoader(projectService).importJsonLines(reader));
+		}catch(IOException e) {
+			throw new DbException("Unable to read " + fileName, e);
+		}
+	}
+
+	private void exportProjects(String fileName) {
+		try(Writer writer = Files.newBufferedWriter(Path.of(fileName), StandardCharsets.UTF_8)){
+			out.println("exported " + new ProjectBulkLoader(projectService).exportJsonLines(writer));
+		}catch(IOException e) {
+			throw new DbException("Unable to write " + fileName, e);
+		}
+	}
+
+	// Set the details named by name=value arguments:
+	private static void setDetails(Project project, List<String> arguments) {
+		for(String argument : arguments) {
+			int equals = argument.indexOf('=');
+			if(equals < 1) {
+				throw new DbException("Expected name=value but found " + argument);
+			}
+			String name = argument.substring(0, equals);
+			String value = argument.substring(equals + 1);
+			switch(name) {
+				case "projectName" -> project.setProjectName(value);
+				case "estimatedHours" -> project.setEstimatedHours(decimal(value));
+				case "actualHours" -> project.setActualHours(decimal(value));
+				case "difficulty" -> project.setDifficulty(difficulty(value));
+				case "notes" -> project.setNotes(value);
+				default -> throw new DbException("Unknown project detail " + name);
+			}
+		}
+	}
+
+	private static Integer projectId(List<String> arguments) {
+		if(arguments.isEmpty()) {
+			throw new DbException("A project ID is required");
+		}
+		try {
+			return Integer.valueOf(arguments.get(0));
+		}catch(NumberFormatException e) {
+			throw new DbException(arguments.get(0) + " is not a valid project ID");
+		}
+	}
+
+	private static String fileName(List<String> arguments) {
+		if(arguments.size() != 1) {
+			throw new DbException("A single file name is required");
+		}
+		return arguments.get(0);
+	}
+
+	private static BigDecimal decimal(String value) {
+		try {
+			return new BigDecimal(value).setScale(2);
+		}catch(NumberFormatException | ArithmeticException e) {
+			throw new DbException(value + " is not a valid number of hours");
+		}
+	}
+
+	private static Integer difficulty(String value) {
+		try {
+			int difficulty = Integer.parseInt(value);
+			if(difficulty >= 1 && difficulty <= 5) {
+				return difficulty;
+			}
+		}catch(NumberFormatException e) {
+			// Reported below along with out-of-range values:
+		}
+		throw new DbException(value + " is not a difficulty between 1 and 5");
+	}
+
+	// Split a line at spaces, keeping double-quoted text together. Quotes may start part way through a token, so
+	// notes="a b" is one token:
+	static List<String> tokenize(String line) {
+		List<String> tokens = new ArrayList<>();
+		StringBuilder token = new StringBuilder();
+		boolean quoted = false;
+		boolean inToken = false;
+		for(int i = 0; i < line.length(); i++) {
+			char c = line.charAt(i);
+			if(quoted) {
+				if(c == '\\' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+					token.append('"');
+					i++;
+				}else if(c == '"') {
+					quoted = false;
+				}else {
+					token.append(c);
+				}
+			}else if(c == '"') {
+				quoted = true;
+				inToken = true;
+			}else if(Character.isWhitespace(c)) {
+				if(inToken) {
+					tokens.add(token.toString());
+					token.setLength(0);
+					inToken = false;
+				}
+			}else {
+				token.append(c);
+				inToken = true;
+			}
+		}
+		if(quoted) {
+			throw new DbException("Unterminated quote");
+		}
+		if(inToken) {
+			tokens.add(token.toString());
+		}
+		return tokens;
+	}
+}
@@ -0,0 +1,6 @@
+package projects.dao;
+
+// A cheap fingerprint of the project table, for telling whether a saved copy of the project list is still current.
+// An insert changes the maximum ID, a delete the count, and every modify raises the sum of the versions:
+public record CatalogMarker(long projectCount, int maxProjectId, long versionSum) {
+}
@@ -0,0 +1,378 @@
+package projects.dao;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import projects.exception.DbException;
+import provided.util.StatementCache;
+
+// A bounded pool of physical MySQL connections. Connections handed out by getConnection() are proxies: calling
+// close() on them (for example at the end of a try-with-resources block) returns the physical connection to the
+// pool instead of closing the socket. Each pooled connection keeps its own cache of prepared statements.
+public class ConnectionPool implements AutoCloseable {
+	// Connections used more recently than this are handed out again without a validation round trip:
+	private static final long VALIDATION_BYPASS_MILLIS = 500;
+	private static final int VALIDATION_TIMEOUT_SECONDS = 5;
+	private static final System.Logger LOG = System.getLogger(ConnectionPool.class.getName());
+
+	private final String uri;
+	private final int minSize;
+	private final int maxSize;
+	private final long acquireTimeoutMillis;
+	private final long idleTimeoutMillis;
+	private final long leakDetectionMillis;
+	// Whether each borrow records where it came from, for the leak report. Costs a stack capture per borrow:
+	private final boolean leakStackTraces;
+	private final int statementCacheSize;
+
+	// Idle connections are reused last-in first-out so that the hottest connections stay in use:
+	private final LinkedBlockingDeque<PooledConnection> idle = new LinkedBlockingDeque<>();
+	private final Set<PooledConnection> borrowed = ConcurrentHashMap.newKeySet();
+	// One permit per connection that may be borrowed at the same time:
+	private final Semaphore permits;
+	private final AtomicInteger totalConnections = new AtomicInteger();
+	private final ScheduledExecutorService housekeeper;
+	private volatile boolean closed;
+
+	// Pool statistics:
+	private final LongAdder acquisitions = new LongAdder();
+	private final LongAdder totalWaitNanos = new LongAdder();
+	private final AtomicLong maxWaitNanos = new AtomicLong();
+	private final LongAdder timeouts = new LongAdder();
+	private final LongAdder leaksDetected = new LongAdder();
+	private final LongAdder connectionsCreated = new LongAdder();
+	private final LongAdder connectionsDestroyed = new LongAdder();
+
+	public ConnectionPool(String uri, int minSize, int maxSize, long acquireTimeoutMillis,
+			long idleTimeoutMillis, long leakDetectionMillis, boolean leakStackTraces, int statementCacheSize) {
+		if(minSize < 0 || maxSize < 1 || minSize > maxSize) {
+			throw new IllegalArgumentException("Invalid pool size: min=" + minSize + ", max=" + maxSize);
+		}
+		this.uri = uri;
+		this.minSize = minSize;
+		this.maxSize = maxSize;
+		this.acquireTimeoutMillis = acquireTimeoutMillis;
+		this.idleTimeoutMillis = idleTimeoutMillis;
+		this.leakDetectionMillis = leakDetectionMillis;
+		this.leakStackTraces = leakStackTraces;
+		this.statementCacheSize = statementCacheSize;
+		this.permits = new Semaphore(maxSize, true);
+
+		housekeeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "connection-pool-housekeeper");
+			thread.setDaemon(true);
+			return thread;
+		});
+		long period = Math.max(1000, Math.min(idleTimeoutMillis, leakDetectionMillis > 0 ? leakDetectionMillis : Long.MAX_VALUE) / 2);
+		housekeeper.scheduleWithFixedDelay(this::scheduledHouseKeep, 0, period, TimeUnit.MILLISECONDS);
+	}
+
+	public Connection getConnection() {
+		if(closed) {
+			throw new DbException("Connection pool is closed");
+		}
+		long start = System.nanoTime();
+		try {
+			// Wait for a free slot, giving up after the acquisition timeout:
+			if(!permits.tryAcquire(acquireTimeoutMillis, TimeUnit.MILLISECONDS)) {
+				timeouts.increment();
+				throw new DbException("Timed out after " + acquireTimeoutMillis
+						+ " ms waiting for a database connection (" + getStats() + ")");
+			}
+		}catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new DbException("Interrupted while waiting for a database connection", e);
+		}
+
+		try {
+			PooledConnection pooled = takeValidConnection(start);
+			recordWait(System.nanoTime() - start);
+			return pooled.lease(leakDetectionMillis > 0 && leakStackTraces);
+		}catch(RuntimeException | SQLException e) {
+			// Give the slot back if a connection could not be handed out:
+			permits.release();
+			throw e instanceof DbException dbe ? dbe : new DbException("Unable to get a pooled connection", e);
+		}
+	}
+
+	public PoolStats getStats() {
+		int active = borrowed.size();
+		long count = acquisitions.sum();
+		return new PoolStats(active, idle.size(), totalConnections.get(), permits.getQueueLength(), count,
+				count == 0 ? 0 : totalWaitNanos.sum() / count / 1_000_000.0, maxWaitNanos.get() / 1_000_000.0,
+				timeouts.sum(), leaksDetected.sum(), connectionsCreated.sum(), connectionsDestroyed.sum());
+	}
+
+	// Number of connections borrowed right now. Cheaper than getStats(), so it can be read on every routing
+	// decision:
+	public int getActiveCount() {
+		return maxSize - permits.availablePermits();
+	}
+
+	@Override
+	public void close() {
+		closed = true;
+		housekeeper.shutdownNow();
+		PooledConnection pooled;
+		while((pooled = idle.pollFirst()) != null) {
+			destroy(pooled);
+		}
+		// Borrowed connections are closed when their holders give them back.
+	}
+
+	private PooledConnection takeValidConnection(long start) throws SQLException {
+		while(true) {
+			PooledConnection pooled = idle.pollFirst();
+
+			if(pooled == null) {
+				if(reserveSlot(maxSize)) {
+					return create();
+				}
+				// Every connection exists already; one is about to be returned to the idle deque:
+				long remaining = acquireTimeoutMillis - TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+				try {
+					pooled = idle.pollFirst(Math.max(0, remaining), TimeUnit.MILLISECONDS);
+				}catch(InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new DbException("Interrupted while waiting for a database connection", e);
+				}
+				if(pooled == null) {
+					timeouts.increment();
+					throw new DbException("Timed out waiting for an idle database connection");
+				}
+			}
+
+			// Validate on borrow unless the connection was used a moment ago:
+			if(System.currentTimeMillis() - pooled.lastUsedMillis < VALIDATION_BYPASS_MILLIS
+					|| isValid(pooled)) {
+				return pooled;
+			}
+			destroy(pooled);
+		}
+	}
+
+	private boolean reserveSlot(int limit) {
+		int current;
+		do {
+			current = totalConnections.get();
+			if(current >= limit) {
+				return false;
+			}
+		}while(!totalConnections.compareAndSet(current, current + 1));
+		return true;
+	}
+
+	private PooledConnection create() throws SQLException {
+		try {
+			PooledConnection pooled = new PooledConnection(DriverManager.getConnection(uri));
+			connectionsCreated.increment();
+			return pooled;
+		}catch(SQLException | RuntimeException e) {
+			totalConnections.decrementAndGet();
+			throw e;
+		}
+	}
+
+	private boolean isValid(PooledConnection pooled) {
+		try {
+			return pooled.connection.isValid(VALIDATION_TIMEOUT_SECONDS);
+		}catch(SQLException e) {
+			return false;
+		}
+	}
+
+	private void destroy(PooledConnection pooled) {
+		totalConnections.decrementAndGet();
+		connectionsDestroyed.increment();
+		if(pooled.statementCache != null) {
+			pooled.statementCache.close();
+		}
+		try {
+			pooled.connection.close();
+		}catch(SQLException e) {
+			// The connection is being discarded anyway:
+		}
+	}
+
+	// Called when the holder of a leased connection closes it:
+	private void release(PooledConnection pooled) {
+		borrowed.remove(pooled);
+		try {
+			// Discard anything a caller left uncommitted and restore the driver defaults:
+			if(!pooled.connection.getAutoCommit()) {
+				pooled.connection.rollback();
+				pooled.connection.setAutoCommit(true);
+			}
+			if(closed || pooled.connection.isClosed()) {
+				destroy(pooled);
+			}else {
+				pooled.lastUsedMillis = System.currentTimeMillis();
+				idle.offerFirst(pooled);
+			}
+		}catch(SQLException e) {
+			destroy(pooled);
+		}finally {
+			permits.release();
+		}
+	}
+
+	private void recordWait(long waitNanos) {
+		acquisitions.increment();
+		totalWaitNanos.add(waitNanos);
+		maxWaitNanos.accumulateAndGet(waitNanos, Math::max);
+	}
+
+	// A scheduled task that throws is never run again, so a failure is logged and housekeeping carries on at the
+	// next period:
+	private void scheduledHouseKeep() {
+		try {
+			houseKeep();
+		}catch(RuntimeException e) {
+			LOG.log(System.Logger.Level.WARNING, "Connection pool housekeeping failed.", e);
+		}
+	}
+
+	// Runs periodically: evicts idle connections, tops the pool up to its minimum size and reports leaks.
+	private void houseKeep() {
+		long now = System.currentTimeMillis();
+
+		// Evict connections that have been idle too long, oldest first, without dropping below the minimum. Returned
+		// connections go on the head of the deque, so the oldest are at its tail:
+		Iterator<PooledConnection> oldestFirst = idle.descendingIterator();
+		while(oldestFirst.hasNext()) {
+			PooledConnection pooled = oldestFirst.next();
+			if(totalConnections.get() <= minSize) {
+				break;
+			}
+			if(now - pooled.lastUsedMillis > idleTimeoutMillis && idle.removeFirstOccurrence(pooled)) {
+				destroy(pooled);
+			}
+		}
+
+		// Create connections until the minimum size is reached:
+		while(!closed && reserveSlot(minSize)) {
+			try {
+				PooledConnection pooled = create();
+				pooled.lastUsedMillis = now;
+				idle.offerLast(pooled);
+			}catch(SQLException | RuntimeException e) {
+				LOG.log(System.Logger.Level.WARNING, "Unable to create a pooled connection.", e);
+				break;
+			}
+		}
+
+		// Count connections that have been borrowed for longer than the leak detection threshold. Long streams and
+		// exports hold a connection legitimately, so these are only logged at debug level, with where the
+		// connection was borrowed when that is recorded:
+		if(leakDetectionMillis > 0) {
+			for(PooledConnection pooled : borrowed) {
+				if(!pooled.leakReported && now - pooled.borrowedAtMillis > leakDetectionMillis) {
+					pooled.leakReported = true;
+					leaksDetected.increment();
+					if(LOG.isLoggable(System.Logger.Level.DEBUG)) {
+						LOG.log(System.Logger.Level.DEBUG, "Possible connection leak: connection borrowed "
+								+ (now - pooled.borrowedAtMillis) + " ms ago has not been closed.", pooled.borrowedBy);
+					}
+				}
+			}
+		}
+	}
+
+	// Snapshot of pool activity. Wait times are in milliseconds.
+	public record PoolStats(int active, int idle, int total, int waiting, long acquisitions,
+			double averageWaitMillis, double maxWaitMillis, long timeouts, long leaksDetected,
+			long connectionsCreated, long connectionsDestroyed) {
+	}
+
+	// A physical connection along with the bookkeeping the pool needs for it:
+	private class PooledConnection {
+		private final Connection connection;
+		// Prepared statements kept open on this connection, or null when statement caching is off:
+		private final StatementCache statementCache;
+		private volatile long lastUsedMillis = System.currentTimeMillis();
+		private volatile long borrowedAtMillis;
+		private volatile Throwable borrowedBy;
+		private volatile boolean leakReported;
+
+		private PooledConnection(Connection connection) {
+			this.connection = connection;
+			this.statementCache = statementCacheSize > 0 ? new StatementCache(connection, statementCacheSize) : null;
+		}
+
+		private Connection lease(boolean trackCaller) {
+			borrowedAtMillis = System.currentTimeMillis();
+			borrowedBy = trackCaller ? new Throwable("Connection borrowed here") : null;
+			leakReported = false;
+			borrowed.add(this);
+			return (Connection)Proxy.newProxyInstance(Connection.class.getClassLoader(),
+					new Class<?>[] {Connection.class}, new Lease(this));
+		}
+	}
+
+	// Each borrow gets its own proxy so that closing a stale reference twice cannot return the connection twice:
+	private class Lease implements InvocationHandler {
+		private final PooledConnection pooled;
+		private boolean returned;
+
+		private Lease(PooledConnection pooled) {
+			this.pooled = pooled;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			switch(method.getName()) {
+				case "close":
+					if(!returned) {
+						returned = true;
+						release(pooled);
+					}
+					return null;
+				case "isClosed":
+					return returned || pooled.connection.isClosed();
+				case "equals":
+					return proxy == args[0];
+				case "hashCode":
+					return System.identityHashCode(proxy);
+				case "toString":
+					return "Pooled" + pooled.connection;
+				case "isWrapperFor":
+					if(args[0] == StatementCache.class) {
+						return pooled.statementCache != null;
+					}
+					break;
+				case "unwrap":
+					// DaoBase finds the statement cache of the connection this way:
+					if(args[0] == StatementCache.class && pooled.statementCache != null) {
+						return pooled.statementCache;
+					}
+					break;
+				default:
+					break;
+			}
+			if(returned) {
+				throw new SQLException("Connection has already been returned to the pool");
+			}
+			try {
+				return method.invoke(pooled.connection, args);
+			}catch(InvocationTargetException e) {
+				throw e.getCause();
+			}
+		}
+	}
+}
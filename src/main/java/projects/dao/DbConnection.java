@@ -1,28 +1,178 @@
 package projects.dao;
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+
 import projects.exception.DbException;
+import provided.util.StatementCache;
 
 
 public class DbConnection {
-	private static String HOST = "localhost";
+	// The primary, which takes every write. Can be overridden with -Dprojects.db.host and -Dprojects.db.port:
+	private static String HOST = System.getProperty("projects.db.host", "localhost");
 	private static String PASSWORD = "am=(2?~;95[Zbk`'";
-	private static int PORT = 3306;
+	private static int PORT = Integer.getInteger("projects.db.port", 3306);
 	private static String SCHEMA = "projects";
 	private static String USER = "projects";
-	
-	
+
+	// Pool settings. Each can be overridden with a system property, e.g. -Dprojects.pool.maxSize=20:
+	private static int POOL_MIN_SIZE = Integer.getInteger("projects.pool.minSize", 2);
+	private static int POOL_MAX_SIZE = Integer.getInteger("projects.pool.maxSize", 10);
+	private static long POOL_ACQUIRE_TIMEOUT_MILLIS = Long.getLong("projects.pool.acquireTimeoutMillis", 30_000);
+	private static long POOL_IDLE_TIMEOUT_MILLIS = Long.getLong("projects.pool.idleTimeoutMillis", 600_000);
+	// Connections held longer than this are counted in the pool statistics as possible leaks. 0 turns the check off:
+	private static long POOL_LEAK_DETECTION_MILLIS = Long.getLong("projects.pool.leakDetectionMillis", 0);
+	// Record where each connection is borrowed, so a possible leak can be traced. Only for debugging:
+	private static boolean POOL_LEAK_STACK_TRACES = Boolean.getBoolean("projects.pool.leakStackTraces");
+	private static int STATEMENT_CACHE_SIZE = Integer.getInteger("projects.pool.statementCacheSize", 64);
+	// Pending schema migrations are applied when the pool is created, unless -Dprojects.schema.migrate=false:
+	private static boolean MIGRATE_SCHEMA = Boolean.parseBoolean(System.getProperty("projects.schema.migrate", "true"));
+	// Read replicas as host:port[,host:port...], e.g. -Dprojects.replicas=localhost:3307. Without any, reads go to
+	// the primary. Replicas share the primary's schema, user and pool settings:
+	private static String REPLICAS = System.getProperty("projects.replicas", "");
+	// ROUND_ROBIN or LEAST_LOADED:
+	private static ReplicaRouter.Policy REPLICA_ROUTING =
+			ReplicaRouter.Policy.valueOf(System.getProperty("projects.replicas.routing", "ROUND_ROBIN").toUpperCase());
+	// How long after a write the reads that would see it keep going to the primary:
+	private static long READ_YOUR_WRITES_MILLIS = Long.getLong("projects.replicas.readYourWritesMillis", 2_000);
+	// A busy replica is given up on sooner than the primary, since the read can go to the primary instead:
+	private static long REPLICA_ACQUIRE_TIMEOUT_MILLIS = Long.getLong("projects.replicas.acquireTimeoutMillis", 1_000);
+
+	private static volatile ConnectionPool pool;
+	// Routes reads to the replicas, or null when there are none:
+	private static volatile ReplicaRouter replicaRouter;
+
+	// Borrow a connection from the pool. Closing the returned connection gives it back to the pool:
 	public static Connection getConnection() {
-		String uri = String.format("jdbc:mysql://%s:%d/%s?user=%s&password=%s",HOST,PORT,SCHEMA,USER,
-				PASSWORD);
+		return getPool().getConnection();
+	}
+
+	// Borrow a connection for a read. It comes from a replica when replicas are configured and the read would not
+	// see a write made within the read-your-writes window, as the caller tells with recentlyWritten, and from the
+	// primary otherwise. Only use it for statements that do not write, and expect data that may be slightly behind
+	// the primary:
+	public static Connection getReadConnection(boolean recentlyWritten) {
+		ConnectionPool primary = getPool();
+		ReplicaRouter router = replicaRouter;
+		Connection conn = Objects.isNull(router) ? null : router.getConnection(recentlyWritten);
+		return Objects.nonNull(conn) ? conn : primary.getConnection();
+	}
+
+	// Called after a write of the projects commits, so that the reads that would see it go to the primary for the
+	// read-your-writes window, on whichever thread they run:
+	public static void stickToPrimary(ReadYourWrites readYourWrites, Collection<Integer> projectIds,
+			boolean listChanged) {
+		ReplicaRouter router = replicaRouter;
+		if(Objects.nonNull(router)) {
+			readYourWrites.wrote(projectIds, listChanged, router.getReadYourWritesNanos());
+		}
+	}
+
+	// Where reads have gone, or null when there are no replicas:
+	public static ReplicaRouter.RoutingStats getRoutingStats() {
+		ReplicaRouter router = replicaRouter;
+		return Objects.isNull(router) ? null : router.getStats();
+	}
+
+	public static ConnectionPool.PoolStats getPoolStats() {
+		return getPool().getStats();
+	}
+
+	// Close all idle connections and stop handing out new ones:
+	public static synchronized void closePool() {
+		if(pool != null) {
+			pool.close();
+			pool = null;
+		}
+		if(replicaRouter != null) {
+			replicaRouter.close();
+			replicaRouter = null;
+		}
+	}
+
+	public static StatementCache.Stats getStatementCacheStats() {
+		return StatementCache.getStats();
+	}
+
+	public static int getMaxPoolSize() {
+		return POOL_MAX_SIZE;
+	}
+
+	private static ConnectionPool getPool() {
+		ConnectionPool current = pool;
+		if(current != null) {
+			return current;
+		}
+		return createPool();
+	}
+
+	private static synchronized ConnectionPool createPool() {
+		if(pool == null) {
+			String uri = uri(HOST, PORT);
+			ConnectionPool created;
+			try {
+				created = new ConnectionPool(uri, POOL_MIN_SIZE, POOL_MAX_SIZE, POOL_ACQUIRE_TIMEOUT_MILLIS,
+						POOL_IDLE_TIMEOUT_MILLIS, POOL_LEAK_DETECTION_MILLIS, POOL_LEAK_STACK_TRACES,
+						STATEMENT_CACHE_SIZE);
+			}catch(RuntimeException e) {
+				System.out.println("Unable to create connection pool at " + uri);
+				throw new DbException("Unable to create connection pool at "+uri, e);
+			}
+			// The pool is only published once the schema is current, so no DAO call sees an old schema:
+			if(MIGRATE_SCHEMA) {
+				try(Connection conn = created.getConnection()){
+					new SchemaMigrator().migrate(conn);
+				}catch(SQLException | RuntimeException e) {
+					created.close();
+					throw e instanceof DbException dbe ? dbe : new DbException("Unable to migrate schema " + SCHEMA, e);
+				}
+			}
+			// Replicas are published first, so a read never finds the primary without them:
+			try {
+				replicaRouter = createReplicaRouter();
+			}catch(RuntimeException e) {
+				created.close();
+				throw new DbException("Unable to set up the replicas " + REPLICAS, e);
+			}
+			pool = created;
+			System.out.println("Connection pool for schema "+ SCHEMA +" is ready.");
+		}
+		return pool;
+	}
+
+	private static ReplicaRouter createReplicaRouter() {
+		if(REPLICAS.isBlank()) {
+			return null;
+		}
+		List<ConnectionPool> replicas = new ArrayList<>();
 		try {
-			Connection conn = DriverManager.getConnection(uri);
-			System.out.println("Connection to schema "+ SCHEMA +" is successful.");
-			return conn;
-		}catch(SQLException e) {
-			System.out.println("Unable to get connection at " + uri);
-			throw new DbException("Unable to get connection at "+uri);
+			for(String replica : REPLICAS.split(",")) {
+				String[] hostAndPort = replica.trim().split(":");
+				String uri = uri(hostAndPort[0], hostAndPort.length > 1 ? Integer.parseInt(hostAndPort[1]) : 3306);
+				// The replicas get their schema changes from the primary, so no migrations are run on them:
+				replicas.add(new ConnectionPool(uri, POOL_MIN_SIZE, POOL_MAX_SIZE, REPLICA_ACQUIRE_TIMEOUT_MILLIS,
+						POOL_IDLE_TIMEOUT_MILLIS, POOL_LEAK_DETECTION_MILLIS, POOL_LEAK_STACK_TRACES,
+						STATEMENT_CACHE_SIZE));
+			}
+			ReplicaRouter router = new ReplicaRouter(replicas, REPLICA_ROUTING, READ_YOUR_WRITES_MILLIS);
+			System.out.println("Reads are routed " + REPLICA_ROUTING + " across replicas " + REPLICAS + ".");
+			return router;
+		}catch(RuntimeException e) {
+			// Close the pools of the replicas that were set up before the failure, along with their connections:
+			replicas.forEach(ConnectionPool::close);
+			throw e;
 		}
 	}
+
+	// rewriteBatchedStatements turns JDBC batches into multi-row INSERTs. useCursorFetch makes statements with a
+	// fetch size read through a server-side cursor instead of buffering the whole result. useServerPrepStmts has
+	// the server parse each cached statement once:
+	private static String uri(String host, int port) {
+		return String.format("jdbc:mysql://%s:%d/%s?user=%s&password=%s"
+				+ "&rewriteBatchedStatements=true&useCursorFetch=true&useServerPrepStmts=true",
+				host,port,SCHEMA,USER,PASSWORD);
+	}
 }
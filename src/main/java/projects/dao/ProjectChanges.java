@@ -0,0 +1,14 @@
+package projects.dao;
+
+import java.util.List;
+
+import projects.entity.Project;
+
+// What changed after a cursor: the current graphs of projects that were inserted or changed, and the IDs of those
+// that were deleted, each project once. Pass cursor to the next fetch. hasMore is set when there were more changes
+// than were asked for, or when later changes may still be committing, so the caller should fetch again soon:
+public record ProjectChanges(List<Project> changed, List<Integer> deleted, long cursor, boolean hasMore) {
+	public boolean isEmpty() {
+		return changed.isEmpty() && deleted.isEmpty();
+	}
+}
@@ -5,20 +5,42 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
+import projects.analytics.ProjectSnapshot;
 import projects.entity.Material;
 import projects.entity.Project;
+import projects.entity.ProjectSummary;
 import projects.entity.Step;
 import projects.entity.Category;
 import projects.exception.DbException;
+import projects.exception.StaleProjectException;
+import projects.metrics.DaoMetrics;
+import projects.metrics.DaoOperation;
+import projects.metrics.HistogramDaoMetrics;
+import projects.metrics.OperationTimer;
 import provided.util.DaoBase;
+import provided.util.RowMapper;
 
-public class ProjectDAO extends DaoBase{
+public class ProjectDAO extends DaoBase implements ProjectStore {
 	// Create and define table name constants:
 	private static final String CATEGORY_TABLE = "category";
 	private static final String MATERIAL_TABLE = "material";
@@ -26,30 +48,465 @@ public class ProjectDAO extends DaoBase{
 	private static final String PROJECT_CATEGORY_TABLE = "project_category";
 	private static final String STEP_TABLE = "step";
 	
+	// Rows are sent to the server in batches of this size. With rewriteBatchedStatements each batch is a single
+	// multi-row INSERT:
+	private static final int INSERT_BATCH_SIZE = 1000;
+	// Maximum number of IDs in one IN (...) list. Can be overridden with -Dprojects.dao.fetchChunkSize:
+	private static final int DEFAULT_FETCH_CHUNK_SIZE = Integer.getInteger("projects.dao.fetchChunkSize", 500);
+	// Step order numbers reserved per project at a time. Can be overridden with -Dprojects.dao.stepOrderBlockSize:
+	private static final int STEP_ORDER_BLOCK_SIZE = Integer.getInteger("projects.dao.stepOrderBlockSize", 50);
+	// Page size used when checking the plans of the list queries:
+	private static final int LIST_CHECK_LIMIT = 100;
+	// A missing change number is taken to be a rolled-back transaction, rather than one still committing, once the
+	// change after it is this old. Every rollback of a write leaves such a gap, and fetchChangesSince() makes no
+	// progress past it until then, so keep it just above the longest a write transaction takes to commit. Can be
+	// overridden with -Dprojects.dao.changeGapMillis:
+	private static final long CHANGE_GAP_MILLIS = Long.getLong("projects.dao.changeGapMillis", 2_000);
+	
+	// SQL is built once, so that cached prepared statements can be found by their text:
+	// @formatter:off
+	private static final String INSERT_PROJECT_SQL = ""
+	+ "INSERT INTO " + PROJECT_TABLE + " "
+	+ "(project_name, estimated_hours, actual_hours, difficulty, notes) "
+	+ "VALUES "
+	+ "(?, ?, ?, ?, ?)";
+	private static final String INSERT_MATERIAL_SQL = ""
+	+ "INSERT INTO " + MATERIAL_TABLE + " "
+	+ "(project_id, material_name, num_required, cost) "
+	+ "VALUES "
+	+ "(?, ?, ?, ?)";
+	private static final String INSERT_STEP_SQL = ""
+	+ "INSERT INTO " + STEP_TABLE + " "
+	+ "(project_id, step_text, step_order) "
+	+ "VALUES "
+	+ "(?, ?, ?)";
+	private static final String INSERT_CATEGORY_SQL = ""
+	+ "INSERT INTO " + CATEGORY_TABLE + " "
+	+ "(category_name) "
+	+ "VALUES "
+	+ "(?)";
+	private static final String INSERT_PROJECT_CATEGORY_SQL = ""
+	+ "INSERT INTO " + PROJECT_CATEGORY_TABLE + " "
+	+ "(project_id, category_id) "
+	+ "VALUES "
+	+ "(?, ?)";
+	private static final String FETCH_ALL_PROJECTS_SQL = ""
+	+ "SELECT * "
+	+ "FROM " + PROJECT_TABLE + " "
+	+ "ORDER BY project_name";
+	private static final String STREAM_ALL_PROJECTS_SQL = ""
+	+ "SELECT * "
+	+ "FROM " + PROJECT_TABLE + " "
+	+ "ORDER BY project_name, project_id";
+	private static final String FETCH_FIRST_PROJECTS_PAGE_SQL = ""
+	+ "SELECT * "
+	+ "FROM " + PROJECT_TABLE + " "
+	+ "ORDER BY project_name, project_id "
+	+ "LIMIT ?";
+	private static final String FETCH_PROJECTS_PAGE_SQL = ""
+	+ "SELECT * "
+	+ "FROM " + PROJECT_TABLE + " "
+	+ "WHERE project_name > ? OR (project_name = ? AND project_id > ?) "
+	+ "ORDER BY project_name, project_id "
+	+ "LIMIT ?";
+	// The summary queries select only the columns of ProjectSummary, so the notes column is never transferred:
+	private static final String FETCH_FIRST_SUMMARIES_PAGE_SQL = ""
+	+ "SELECT " + columnList(ProjectSummary.class) + " "
+	+ "FROM " + PROJECT_TABLE + " "
+	+ "ORDER BY project_name, project_id "
+	+ "LIMIT ?";
+	private static final String FETCH_SUMMARIES_PAGE_SQL = ""
+	+ "SELECT " + columnList(ProjectSummary.class) + " "
+	+ "FROM " + PROJECT_TABLE + " "
+	+ "WHERE project_name > ? OR (project_name = ? AND project_id > ?) "
+	+ "ORDER BY project_name, project_id "
+	+ "LIMIT ?";
+	// In the IN-list queries, %s is replaced by the placeholders for the IDs:
+	private static final String FETCH_PROJECTS_BY_IDS_SQL = ""
+	+ "SELECT * "
+	+ "FROM " + PROJECT_TABLE + " "
+	+ "WHERE project_id IN (%s)";
+	private static final String FETCH_MATERIALS_BY_PROJECT_IDS_SQL = ""
+	+ "SELECT * "
+	+ "FROM " + MATERIAL_TABLE + " "
+	+ "WHERE project_id IN (%s) "
+	+ "ORDER BY project_id, material_id";
+	private static final String FETCH_STEPS_BY_PROJECT_IDS_SQL = ""
+	+ "SELECT * "
+	+ "FROM " + STEP_TABLE + " "
+	+ "WHERE project_id IN (%s) "
+	+ "ORDER BY project_id, step_order";
+	private static final String FETCH_CATEGORIES_BY_PROJECT_IDS_SQL = ""
+	+ "SELECT c.*, pc.project_id "
+	+ "FROM " + CATEGORY_TABLE + " c "
+	+ "JOIN " + PROJECT_CATEGORY_TABLE + " pc USING (category_id) "
+	+ "WHERE pc.project_id IN (%s) "
+	+ "ORDER BY pc.project_id, c.category_id";
+	// The UPDATE sets only the changed columns, so its SQL is built per set of changes. The version check is left out
+	// when the caller does not know the version:
+	private static final String MODIFY_PROJECT_SQL = ""
+	+ "UPDATE " + PROJECT_TABLE + " SET "
+	+ "%s"
+	+ "version = version + 1 "
+	+ "WHERE project_id = ?";
+	private static final String VERSION_CONDITION_SQL = " AND version = ?";
+	private static final String FETCH_PROJECT_VERSION_SQL = ""
+	+ "SELECT version "
+	+ "FROM " + PROJECT_TABLE + " "
+	+ "WHERE project_id = ?";
+	private static final String DELETE_PROJECT_SQL = "DELETE FROM " + PROJECT_TABLE +" WHERE project_id = ?";
+	// The analytics snapshot reads hours and costs as hundredths, so no BigDecimal is created per row:
+	private static final String SNAPSHOT_PROJECTS_SQL = ""
+	+ "SELECT project_id, difficulty, "
+	+ "CAST(ROUND(estimated_hours * 100) AS SIGNED) AS estimated_hours, "
+	+ "CAST(ROUND(actual_hours * 100) AS SIGNED) AS actual_hours "
+	+ "FROM " + PROJECT_TABLE + " "
+	+ "ORDER BY project_id";
+	private static final String SNAPSHOT_MATERIALS_SQL = ""
+	+ "SELECT project_id, num_required, CAST(ROUND(cost * 100) AS SIGNED) AS cost "
+	+ "FROM " + MATERIAL_TABLE + " "
+	+ "ORDER BY project_id";
+	private static final String SNAPSHOT_STEPS_SQL = ""
+	+ "SELECT project_id "
+	+ "FROM " + STEP_TABLE + " "
+	+ "ORDER BY project_id";
+	private static final String SNAPSHOT_CATEGORIES_SQL = ""
+	+ "SELECT category_id, category_name "
+	+ "FROM " + CATEGORY_TABLE;
+	private static final String SNAPSHOT_PROJECT_CATEGORIES_SQL = ""
+	+ "SELECT project_id, category_id "
+	+ "FROM " + PROJECT_CATEGORY_TABLE;
+	// The age is measured by the server, so it does not depend on the client's clock:
+	private static final String INSERT_CHANGE_SQL = ""
+	+ "INSERT INTO project_change "
+	+ "(project_id, deleted) "
+	+ "VALUES "
+	+ "(?, ?)";
+	private static final String FETCH_CHANGES_SQL = ""
+	+ "SELECT change_seq, project_id, deleted, "
+	+ "TIMESTAMPDIFF(MICROSECOND, changed_at, NOW(3)) DIV 1000 AS age_millis "
+	+ "FROM project_change "
+	+ "WHERE change_seq > ? "
+	+ "ORDER BY change_seq "
+	+ "LIMIT ?";
+	private static final String FETCH_CHANGE_CURSOR_SQL = "SELECT COALESCE(MAX(change_seq), 0) FROM project_change";
+	private static final String CATALOG_MARKER_SQL = ""
+	+ "SELECT COUNT(*), COALESCE(MAX(project_id), 0), COALESCE(SUM(version), 0) "
+	+ "FROM " + PROJECT_TABLE;
+	// @formatter:on
+	
+	private volatile int fetchChunkSize = DEFAULT_FETCH_CHUNK_SIZE;
+	// Receives the timing of every operation:
+	private final DaoMetrics metrics;
+	// IN-list SQL by template and number of placeholders:
+	private final Map<String, Map<Integer, String>> inListSql = new ConcurrentHashMap<>();
+	// UPDATE SQL by changed details and whether the version is checked:
+	private final Map<Set<Project.Detail>, String[]> modifySql = new ConcurrentHashMap<>();
+	// Numbers for steps added to existing projects:
+	private final StepOrderAllocator stepOrders;
+	// Recent writes by this DAO, so that a write committed by a write-behind flusher or an async task is seen by
+	// the reads of its projects that follow it on other threads, while reads of other projects use the replicas:
+	private final ReadYourWrites readYourWrites = new ReadYourWrites();
+	
+	public ProjectDAO() {
+		this(HistogramDaoMetrics.getDefault());
+	}
+
+	public ProjectDAO(DaoMetrics metrics) {
+		this.metrics = metrics;
+		this.stepOrders = new StepOrderAllocator(metrics, STEP_ORDER_BLOCK_SIZE);
+	}
+
+	@Override
 	public Project insertProject(Project project) {
-		// @formatter:off
-		String sql = ""
-		+"INSERT INTO " + PROJECT_TABLE + " " 
-		+"(project_name, estimated_hours, actual_hours, difficulty, notes) "
-		+ "VALUES "
-		+ "(?, ?, ?, ?, ?)";
-		// @formatter:on
-		try(Connection conn = DbConnection.getConnection()){
+		return insertProjects(List.of(project)).get(0);
+	}
+
+	// Insert the projects along with their materials, steps and category links in a single transaction. Each
+	// table is written with batched multi-row INSERTs and the generated keys are read back from the same
+	// statements, so the number of round trips does not grow with the number of rows:
+	@Override
+	public List<Project> insertProjects(List<Project> projects) {
+		if(projects.isEmpty()) {
+			return projects;
+		}
+		try(OperationTimer timer = metrics.start(DaoOperation.INSERT);
+				Connection conn = timer.connected(DbConnection.getConnection())){
 			startTransaction(conn);
-			try(PreparedStatement stmt = conn.prepareStatement(sql)){
+			try{
+				timer.addRows(insertProjectRows(conn, projects));
+				timer.addRows(insertMaterialRows(conn, projects));
+				timer.addRows(insertStepRows(conn, projects));
+				timer.addRows(insertProjectCategoryRows(conn, projects));
+				logChanges(conn, projectIds(projects), false);
+				commitWrite(conn, projectIds(projects), true);
+				// The new rows start at the column default version, and hold everything that was set:
+				for(Project project : projects) {
+					new SavedVersion(project, 0).apply();
+				}
+				timer.succeeded();
+				return projects;
+			}
+			catch(Exception e) {
+				rollbackTransaction(conn);
+				throw new DbException(e);
+			}
+		}
+		catch(SQLException e) {
+			throw new DbException(e);
+		}
+	}
+
+	private int insertProjectRows(Connection conn, List<Project> projects) throws SQLException {
+		try(PreparedStatement stmt = prepareStatement(conn, INSERT_PROJECT_SQL, Statement.RETURN_GENERATED_KEYS)){
+			int start = 0;
+			for(int i = 0; i < projects.size(); i++) {
+				Project project = projects.get(i);
 				setParameter(stmt, 1, project.getProjectName(), String.class);
 				setParameter(stmt, 2, project.getEstimatedHours(), BigDecimal.class);
 				setParameter(stmt, 3, project.getActualHours(), BigDecimal.class);
 				setParameter(stmt, 4, project.getDifficulty(), Integer.class);
 				setParameter(stmt, 5, project.getNotes(), String.class);
+				stmt.addBatch();
 				
-				stmt.executeUpdate();
+				// Send a full batch, or the remainder once the last project has been added:
+				if(i - start + 1 == INSERT_BATCH_SIZE || i == projects.size() - 1) {
+					stmt.executeBatch();
+					int[] ids = getGeneratedIds(stmt, i - start + 1);
+					for(int j = 0; j < ids.length; j++) {
+						projects.get(start + j).setProjectId(ids[j]);
+					}
+					start = i + 1;
+				}
+			}
+		}
+		return projects.size();
+	}
+
+	private int insertMaterialRows(Connection conn, List<Project> projects) throws SQLException {
+		List<Material> materials = new ArrayList<>();
+		for(Project project : projects) {
+			for(Material material : project.getMaterials()) {
+				material.setProjectId(project.getProjectId());
+				materials.add(material);
+			}
+		}
+		return insertMaterials(conn, materials);
+	}
+
+	private int insertMaterials(Connection conn, List<Material> materials) throws SQLException {
+		if(materials.isEmpty()) {
+			return 0;
+		}
+		try(PreparedStatement stmt = prepareStatement(conn, INSERT_MATERIAL_SQL, Statement.RETURN_GENERATED_KEYS)){
+			int start = 0;
+			for(int i = 0; i < materials.size(); i++) {
+				Material material = materials.get(i);
+				setParameter(stmt, 1, material.getProjectId(), Integer.class);
+				setParameter(stmt, 2, material.getMaterialName(), String.class);
+				setParameter(stmt, 3, material.getNumRequired(), Integer.class);
+				setParameter(stmt, 4, material.getCost(), BigDecimal.class);
+				stmt.addBatch();
 				
-				Integer projectId = getLastInsertId(conn, PROJECT_TABLE);
-				commitTransaction(conn);
+				if(i - start + 1 == INSERT_BATCH_SIZE || i == materials.size() - 1) {
+					stmt.executeBatch();
+					int[] ids = getGeneratedIds(stmt, i - start + 1);
+					for(int j = 0; j < ids.length; j++) {
+						materials.get(start + j).setMaterialId(ids[j]);
+					}
+					start = i + 1;
+				}
+			}
+		}
+		return materials.size();
+	}
+
+	private int insertStepRows(Connection conn, List<Project> projects) throws SQLException {
+		List<Step> steps = new ArrayList<>();
+		for(Project project : projects) {
+			int stepOrder = 0;
+			for(Step step : project.getSteps()) {
+				step.setProjectId(project.getProjectId());
+				// New projects have no existing steps, so number them in list order unless told otherwise:
+				stepOrder = Objects.isNull(step.getStepOrder()) ? stepOrder + 1 : step.getStepOrder();
+				step.setStepOrder(stepOrder);
+				steps.add(step);
+			}
+		}
+		return insertSteps(conn, steps);
+	}
+
+	private int insertSteps(Connection conn, List<Step> steps) throws SQLException {
+		if(steps.isEmpty()) {
+			return 0;
+		}
+		try(PreparedStatement stmt = prepareStatement(conn, INSERT_STEP_SQL, Statement.RETURN_GENERATED_KEYS)){
+			int start = 0;
+			for(int i = 0; i < steps.size(); i++) {
+				Step step = steps.get(i);
+				setParameter(stmt, 1, step.getProjectId(), Integer.class);
+				setParameter(stmt, 2, step.getStepText(), String.class);
+				setParameter(stmt, 3, step.getStepOrder(), Integer.class);
+				stmt.addBatch();
+				
+				if(i - start + 1 == INSERT_BATCH_SIZE || i == steps.size() - 1) {
+					stmt.executeBatch();
+					int[] ids = getGeneratedIds(stmt, i - start + 1);
+					for(int j = 0; j < ids.length; j++) {
+						steps.get(start + j).setStepId(ids[j]);
+					}
+					start = i + 1;
+				}
+			}
+		}
+		return steps.size();
+	}
+
+	// Link the projects to existing categories. Categories are looked up by ID and are not created here:
+	private int insertProjectCategoryRows(Connection conn, List<Project> projects) throws SQLException {
+		List<CategoryLink> links = new ArrayList<>();
+		for(Project project : projects) {
+			for(Category category : project.getCategories()) {
+				links.add(CategoryLink.of(project.getProjectId(), category));
+			}
+		}
+		return insertCategoryLinks(conn, links);
+	}
+
+	private int insertCategoryLinks(Connection conn, List<CategoryLink> links) throws SQLException {
+		if(links.isEmpty()) {
+			return 0;
+		}
+		try(PreparedStatement stmt = prepareStatement(conn, INSERT_PROJECT_CATEGORY_SQL)){
+			int pending = 0;
+			for(CategoryLink link : links) {
+				setParameter(stmt, 1, link.projectId(), Integer.class);
+				setParameter(stmt, 2, link.categoryId(), Integer.class);
+				stmt.addBatch();
+				
+				if(++pending == INSERT_BATCH_SIZE) {
+					stmt.executeBatch();
+					pending = 0;
+				}
+			}
+			if(pending > 0) {
+				stmt.executeBatch();
+			}
+		}
+		return links.size();
+	}
+
+	private int insertCategories(Connection conn, List<Category> categories) throws SQLException {
+		if(categories.isEmpty()) {
+			return 0;
+		}
+		try(PreparedStatement stmt = prepareStatement(conn, INSERT_CATEGORY_SQL, Statement.RETURN_GENERATED_KEYS)){
+			int start = 0;
+			for(int i = 0; i < categories.size(); i++) {
+				setParameter(stmt, 1, categories.get(i).getCategoryName(), String.class);
+				stmt.addBatch();
 				
-				project.setProjectId(projectId);
-				return project;
+				if(i - start + 1 == INSERT_BATCH_SIZE || i == categories.size() - 1) {
+					stmt.executeBatch();
+					int[] ids = getGeneratedIds(stmt, i - start + 1);
+					for(int j = 0; j < ids.length; j++) {
+						categories.get(start + j).setCategoryId(ids[j]);
+					}
+					start = i + 1;
+				}
+			}
+		}
+		return categories.size();
+	}
+
+	// A project_category row:
+	private record CategoryLink(Integer projectId, Integer categoryId) {
+		private static CategoryLink of(Integer projectId, Category category) {
+			if(Objects.isNull(category.getCategoryId())) {
+				throw new DbException("Category " + category.getCategoryName() + " has no category ID");
+			}
+			return new CategoryLink(projectId, category.getCategoryId());
+		}
+	}
+
+	// Add materials to existing projects, each material naming its project. All of them are inserted in one
+	// transaction with batched multi-row INSERTs, and each gets its generated ID:
+	@Override
+	public List<Material> addMaterials(List<Material> materials) {
+		for(Material material : materials) {
+			if(Objects.isNull(material.getProjectId())) {
+				throw new DbException("Material " + material.getMaterialName() + " has no project ID");
+			}
+		}
+		Set<Integer> projectIds = new LinkedHashSet<>();
+		for(Material material : materials) {
+			projectIds.add(material.getProjectId());
+		}
+		return addChildren(DaoOperation.ADD_MATERIALS, materials, projectIds, conn -> insertMaterials(conn, materials));
+	}
+
+	// Add steps to existing projects, each step naming its project, as addMaterials() does for materials. Steps
+	// without a step order are numbered after the existing steps of their project, in list order. The numbers come
+	// from blocks reserved in project_sequence, so steps are never numbered by counting rows:
+	@Override
+	public List<Step> addSteps(List<Step> steps) {
+		Map<Integer, List<Step>> unnumbered = new LinkedHashMap<>();
+		Set<Integer> projectIds = new LinkedHashSet<>();
+		for(Step step : steps) {
+			if(Objects.isNull(step.getProjectId())) {
+				throw new DbException("Step " + step.getStepText() + " has no project ID");
+			}
+			projectIds.add(step.getProjectId());
+			if(Objects.isNull(step.getStepOrder())) {
+				unnumbered.computeIfAbsent(step.getProjectId(), id -> new ArrayList<>()).add(step);
+			}
+		}
+		// Numbers are reserved before the steps are written, so their row locks are not held while writing:
+		unnumbered.forEach((projectId, projectSteps) -> {
+			int[] orders = stepOrders.allocate(projectId, projectSteps.size());
+			for(int i = 0; i < orders.length; i++) {
+				projectSteps.get(i).setStepOrder(orders[i]);
+			}
+		});
+		return addChildren(DaoOperation.ADD_STEPS, steps, projectIds, conn -> insertSteps(conn, steps));
+	}
+
+	// Add categories to an existing project in one transaction. Categories without an ID are created first and
+	// get their generated IDs; those with an ID are only linked:
+	@Override
+	public List<Category> addCategories(Integer projectId, List<Category> categories) {
+		return addChildren(DaoOperation.ADD_CATEGORIES, categories, Set.of(projectId), conn -> {
+			List<Category> created = new ArrayList<>();
+			for(Category category : categories) {
+				if(Objects.isNull(category.getCategoryId())) {
+					created.add(category);
+				}
+			}
+			int rows = insertCategories(conn, created);
+			List<CategoryLink> links = new ArrayList<>(categories.size());
+			for(Category category : categories) {
+				links.add(CategoryLink.of(projectId, category));
+			}
+			return rows + insertCategoryLinks(conn, links);
+		});
+	}
+
+	// Run the inserts of one add* call in a transaction, logging a change to each of the projects, and return the
+	// children it was given:
+	private <T> List<T> addChildren(DaoOperation operation, List<T> children, Set<Integer> projectIds,
+			ChildInserter inserter) {
+		if(children.isEmpty()) {
+			return children;
+		}
+		try(OperationTimer timer = metrics.start(operation);
+				Connection conn = timer.connected(DbConnection.getConnection())){
+			startTransaction(conn);
+			try{
+				timer.addRows(inserter.insert(conn));
+				logChanges(conn, projectIds, false);
+				commitWrite(conn, projectIds, false);
+				timer.succeeded();
+				return children;
 			}
 			catch(Exception e) {
 				rollbackTransaction(conn);
@@ -61,27 +518,78 @@ public class ProjectDAO extends DaoBase{
 		}
 	}
 
+	// Writes child rows on the given connection and returns the number of rows written:
+	private interface ChildInserter {
+		int insert(Connection conn) throws SQLException;
+	}
+
+	// Add a row to the change log for each of the projects, in the transaction that changes them, as one batched
+	// INSERT. A project gets one row per write, however many of its child rows the write touches:
+	private void logChanges(Connection conn, Collection<Integer> projectIds, boolean deleted) throws SQLException {
+		if(projectIds.isEmpty()) {
+			return;
+		}
+		try(PreparedStatement stmt = prepareStatement(conn, INSERT_CHANGE_SQL)){
+			int count = 0;
+			for(Integer projectId : projectIds) {
+				setParameter(stmt, 1, projectId, Integer.class);
+				// DaoBase.setParameter() has no BOOLEAN mapping:
+				stmt.setBoolean(2, deleted);
+				stmt.addBatch();
+				if(++count % INSERT_BATCH_SIZE == 0) {
+					stmt.executeBatch();
+				}
+			}
+			if(count % INSERT_BATCH_SIZE != 0) {
+				stmt.executeBatch();
+			}
+		}
+	}
+
+	private static Set<Integer> projectIds(List<Project> projects) {
+		Set<Integer> projectIds = new LinkedHashSet<>();
+		for(Project project : projects) {
+			projectIds.add(project.getProjectId());
+		}
+		return projectIds;
+	}
+
+	// Commit a transaction that wrote the projects, and changed the project list if listChanged is set. Replicas
+	// may not have applied it yet, so reads of those projects, or of the list, go to the primary for a while,
+	// whichever thread they come from:
+	private void commitWrite(Connection conn, Collection<Integer> projectIds, boolean listChanged)
+			throws SQLException {
+		commitTransaction(conn);
+		DbConnection.stickToPrimary(readYourWrites, projectIds, listChanged);
+	}
+
+	// A connection for a read of the project list, or of every project. It comes from the primary for a while
+	// after a write that changed the list:
+	private Connection listReadConnection() {
+		return DbConnection.getReadConnection(readYourWrites.listsFromPrimary());
+	}
+
+	@Override
 	public List<Project> fetchAllProjects() {
 		// Set up SELECT statement to obtain all rows from the PROJECT_TABLE sorted by project_name:
-		// @formatter:off
-		String sql = ""
-		+ "SELECT * " 		
-		+ "FROM " + PROJECT_TABLE + " " 
-		+ "ORDER BY project_name";
-		// @formatter:on
 		// Attempt to connect to database:
-		try(Connection conn = DbConnection.getConnection()){
+		try(OperationTimer timer = metrics.start(DaoOperation.FETCH_ALL);
+				Connection conn = timer.connected(listReadConnection())){
 			// Begin transaction on database if connection was successful:
 			startTransaction(conn);
-			try(PreparedStatement stmt = conn.prepareStatement(sql)){
+			try(PreparedStatement stmt = prepareStatement(conn, FETCH_ALL_PROJECTS_SQL)){
 				// Obtain ResultSet of data obtained by executing the prepared query:
 				try(ResultSet rs = stmt.executeQuery()){
 					List<Project> projects = new LinkedList<>();
+					// Look up the row mapper once for the whole result set:
+					RowMapper<Project> mapper = rowMapper(rs, Project.class);
 					// While there are still entries in rs:
 					while(rs.next()) {
 				// Add the contents of the current row in rs to projects after converting the data into a Project item:
-						projects.add(extract(rs,Project.class));
+						projects.add(mapper.map(rs));
 					}
+					timer.addRows(projects.size());
+					timer.succeeded();
 					// Return generated list of projects in the database:
 					return projects;
 				}
@@ -97,43 +605,334 @@ public class ProjectDAO extends DaoBase{
 		}
 	}
 
-	public Optional<Project> fetchProjectById(Integer projectId) {
-		// Set up SELECT statement to obtain row in PROJECT_TABLE with matching project_id:
-		// @formatter:off
-		String sql = ""
-		+ "SELECT * " 		
-		+ "FROM " + PROJECT_TABLE + " " 
-		+ "WHERE project_id = ?";
-		// @formatter:on
-		// Attempt to connect to the database:
-		try(Connection conn = DbConnection.getConnection()){
-			// Begin transaction on database if connection was successful:
+	// Stream every project row, ordered by name, through a server-side cursor that fetches fetchSize rows at a
+	// time. The stream holds a pooled connection until it is closed, so callers must use try-with-resources:
+	@Override
+	public Stream<Project> streamAllProjects(int fetchSize) {
+		// The timer is closed along with the stream, so it covers the whole read. It only counts as a success once
+		// every row has been read:
+		OperationTimer timer = metrics.start(DaoOperation.STREAM_ALL);
+		Connection conn;
+		try {
+			conn = timer.connected(listReadConnection());
+		}catch(RuntimeException e) {
+			timer.close();
+			throw e;
+		}
+		PreparedStatement stmt = null;
+		ResultSet rs = null;
+		try {
+			// Not taken from the statement cache, because the fetch size would stay set on a cached statement:
+			stmt = conn.prepareStatement(STREAM_ALL_PROJECTS_SQL, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+			stmt.setFetchSize(fetchSize);
+			rs = stmt.executeQuery();
+			
+			ResultSet results = rs;
+			RowMapper<Project> mapper = rowMapper(results, Project.class);
+			Spliterator<Project> rows = new Spliterators.AbstractSpliterator<Project>(Long.MAX_VALUE,
+					Spliterator.ORDERED | Spliterator.NONNULL) {
+				@Override
+				public boolean tryAdvance(Consumer<? super Project> action) {
+					try {
+						if(!results.next()) {
+							timer.succeeded();
+							return false;
+						}
+						action.accept(mapper.map(results));
+						timer.addRows(1);
+						return true;
+					}catch(SQLException e) {
+						throw new DbException(e);
+					}
+				}
+			};
+			AutoCloseable[] resources = {rs, stmt, conn, timer};
+			return StreamSupport.stream(rows, false).onClose(() -> closeAll(resources));
+		}catch(SQLException | RuntimeException e) {
+			closeAll(new AutoCloseable[] {rs, stmt, conn, timer});
+			throw e instanceof DbException dbe ? dbe : new DbException(e);
+		}
+	}
+
+	// Fetch the page of projects that follows (afterName, afterId) in name order. Pass nulls for the first page.
+	// Keyset pagination seeks straight to the next row instead of skipping an OFFSET, so every page costs the
+	// same however deep into the table it is:
+	@Override
+	public List<Project> fetchProjectsPage(String afterName, Integer afterId, int limit) {
+		return fetchPage(Project.class, FETCH_FIRST_PROJECTS_PAGE_SQL, FETCH_PROJECTS_PAGE_SQL, DaoOperation.FETCH_PAGE,
+				afterName, afterId, limit);
+	}
+
+	// The same pages as fetchProjectsPage(), holding only each project's ID and name:
+	@Override
+	public List<ProjectSummary> fetchProjectSummariesPage(String afterName, Integer afterId, int limit) {
+		return fetchPage(ProjectSummary.class, FETCH_FIRST_SUMMARIES_PAGE_SQL, FETCH_SUMMARIES_PAGE_SQL,
+				DaoOperation.FETCH_SUMMARY_PAGE, afterName, afterId, limit);
+	}
+
+	private <T> List<T> fetchPage(Class<T> rowType, String firstPageSql, String nextPageSql, DaoOperation operation,
+			String afterName, Integer afterId, int limit) {
+		String sql = Objects.isNull(afterName) ? firstPageSql : nextPageSql;
+		try(OperationTimer timer = metrics.start(operation);
+				Connection conn = timer.connected(listReadConnection())){
+			try(PreparedStatement stmt = prepareStatement(conn, sql)){
+				int index = 1;
+				if(Objects.nonNull(afterName)) {
+					setParameter(stmt, index++, afterName, String.class);
+					setParameter(stmt, index++, afterName, String.class);
+					setParameter(stmt, index++, Objects.isNull(afterId) ? 0 : afterId, Integer.class);
+				}
+				setParameter(stmt, index, limit, Integer.class);
+				
+				try(ResultSet rs = stmt.executeQuery()){
+					List<T> rows = new ArrayList<>(limit);
+					RowMapper<T> mapper = rowMapper(rs, rowType);
+					while(rs.next()) {
+						rows.add(mapper.map(rs));
+					}
+					timer.addRows(rows.size());
+					timer.succeeded();
+					return rows;
+				}
+			}
+		}catch(SQLException e) {
+			throw new DbException(e);
+		}
+	}
+
+	// Read the columns used by the analytics engine from all five tables into a ProjectSnapshot. The reads share
+	// one transaction, so InnoDB serves them all from the same consistent view, and each is streamed through a
+	// server-side cursor so that no full result set is buffered:
+	@Override
+	public ProjectSnapshot loadSnapshot() {
+		try(OperationTimer timer = metrics.start(DaoOperation.LOAD_SNAPSHOT);
+				Connection conn = timer.connected(listReadConnection())){
 			startTransaction(conn);
-			try{
-				Project project = null;
-				// Prepare to execute the SQL statement:
-				try(PreparedStatement stmt = conn.prepareStatement(sql)){
-					// Set placeholder ? in the statement to the value of projectId:
-					setParameter(stmt, 1, projectId, Integer.class);
-					// Attempt to obtain result set of executing the SQL query:
+			try {
+				ProjectSnapshot.Builder builder = new ProjectSnapshot.Builder();
+				long rows = 0;
+				rows += readSnapshotRows(conn, SNAPSHOT_PROJECTS_SQL, rs -> builder.addProject(rs.getInt(1),
+						intOrNull(rs, 2), longOrNull(rs, 3), longOrNull(rs, 4)));
+				rows += readSnapshotRows(conn, SNAPSHOT_MATERIALS_SQL, rs -> builder.addMaterial(rs.getInt(1),
+						intOrNull(rs, 2), longOrNull(rs, 3)));
+				rows += readSnapshotRows(conn, SNAPSHOT_STEPS_SQL, rs -> builder.addStep(rs.getInt(1)));
+				rows += readSnapshotRows(conn, SNAPSHOT_CATEGORIES_SQL, rs -> builder.addCategory(rs.getInt(1),
+						rs.getString(2)));
+				rows += readSnapshotRows(conn, SNAPSHOT_PROJECT_CATEGORIES_SQL, rs -> builder.addProjectCategory(
+						rs.getInt(1), rs.getInt(2)));
+				commitTransaction(conn);
+				timer.addRows(rows);
+				timer.succeeded();
+				return builder.build();
+			}catch(Exception e) {
+				rollbackTransaction(conn);
+				throw new DbException(e);
+			}
+		}catch(SQLException e) {
+			throw new DbException(e);
+		}
+	}
+
+	// Read from the same place as the project list, so a list read after the marker is at least as new as it:
+	@Override
+	public CatalogMarker fetchCatalogMarker() {
+		try(OperationTimer timer = metrics.start(DaoOperation.FETCH_CATALOG_MARKER);
+				Connection conn = timer.connected(listReadConnection())){
+			try(PreparedStatement stmt = prepareStatement(conn, CATALOG_MARKER_SQL);
+					ResultSet rs = stmt.executeQuery()){
+				rs.next();
+				CatalogMarker marker = new CatalogMarker(rs.getLong(1), rs.getInt(2), rs.getLong(3));
+				timer.addRows(1);
+				timer.succeeded();
+				return marker;
+			}
+		}catch(SQLException e) {
+			throw new DbException(e);
+		}
+	}
+
+	// Every write adds to project_change in its own transaction, whichever application makes it:
+	@Override
+	public boolean keepsChangeLog() {
+		return true;
+	}
+
+	// Read the change log after the cursor and load the current graphs of the projects in it, in the order of their
+	// latest change. Projects whose latest change is a tombstone are returned as deleted without being loaded, as
+	// are any that no longer exist. Change numbers are taken when a row is written, so one may become visible after
+	// a higher one. The fetch stops before a missing number until the change after it is older than
+	// CHANGE_GAP_MILLIS, so that a change committed late is not skipped. A rolled-back write also leaves a missing
+	// number, so consumers see hasMore without progress for up to CHANGE_GAP_MILLIS after each rollback. The log is
+	// read from the primary: on a lagging replica, a change not yet replicated would look like a gap, and one that
+	// ages past CHANGE_GAP_MILLIS there would move the cursor past a change the primary has already committed:
+	@Override
+	public ProjectChanges fetchChangesSince(long cursor, int limit) {
+		try(OperationTimer timer = metrics.start(DaoOperation.FETCH_CHANGES);
+				Connection conn = timer.connected(DbConnection.getConnection())){
+			// The log and the graphs are read in one transaction, so they come from the same snapshot:
+			startTransaction(conn);
+			try {
+				// Whether each project's latest change deleted it, in the order of those changes:
+				Map<Integer, Boolean> latest = new LinkedHashMap<>();
+				long next = cursor;
+				int rows = 0;
+				boolean gap = false;
+				try(PreparedStatement stmt = prepareStatement(conn, FETCH_CHANGES_SQL)){
+					// DaoBase.setParameter() has no BIGINT mapping:
+					stmt.setLong(1, cursor);
+					setParameter(stmt, 2, limit, Integer.class);
 					try(ResultSet rs = stmt.executeQuery()){
-						if(rs.next()) {
-							// If rs has a row in it, extract the row and store its contents in project:
-							project = extract(rs,Project.class);
+						while(rs.next()) {
+							long changeSeq = rs.getLong(1);
+							if(changeSeq != next + 1 && rs.getLong(4) < CHANGE_GAP_MILLIS) {
+								gap = true;
+								break;
+							}
+							Integer projectId = rs.getInt(2);
+							// Keep the order of each project's latest change:
+							latest.remove(projectId);
+							latest.put(projectId, rs.getBoolean(3));
+							next = changeSeq;
+							rows++;
 						}
 					}
 				}
-				// Confirm that project is not set to null:
-				if(Objects.nonNull(project)) {
-					// If project is not null, obtain the project's list categories, materials, and steps:
-					project.getMaterials().addAll(fetchMaterialsForProject(conn,projectId));
-					project.getSteps().addAll(fetchStepsForProject(conn,projectId));
-					project.getCategories().addAll(fetchCategoriesForProject(conn,projectId));
+				List<Integer> existing = new ArrayList<>();
+				latest.forEach((projectId, deleted) -> {
+					if(!deleted) {
+						existing.add(projectId);
+					}
+				});
+				List<Project> changed = loadProjectGraphs(conn, existing);
+				commitTransaction(conn);
+				Set<Integer> deleted = new LinkedHashSet<>(latest.keySet());
+				for(Project project : changed) {
+					deleted.remove(project.getProjectId());
 				}
-				
-				// commit results of transaction:
+				timer.addRows(rows);
+				timer.succeeded();
+				return new ProjectChanges(changed, new ArrayList<>(deleted), next, gap || rows == limit);
+			}catch(Exception e) {
+				rollbackTransaction(conn);
+				throw new DbException(e);
+			}
+		}catch(SQLException e) {
+			throw new DbException(e);
+		}
+	}
+
+	// Read from the primary, as the log is by fetchChangesSince():
+	@Override
+	public long fetchChangeCursor() {
+		try(OperationTimer timer = metrics.start(DaoOperation.FETCH_CHANGE_CURSOR);
+				Connection conn = timer.connected(DbConnection.getConnection())){
+			try(PreparedStatement stmt = prepareStatement(conn, FETCH_CHANGE_CURSOR_SQL);
+					ResultSet rs = stmt.executeQuery()){
+				rs.next();
+				long cursor = rs.getLong(1);
+				timer.succeeded();
+				return cursor;
+			}
+		}catch(SQLException e) {
+			throw new DbException(e);
+		}
+	}
+
+	// Receives one row of a snapshot query:
+	private interface SnapshotRowReader {
+		void read(ResultSet rs) throws SQLException;
+	}
+
+	private int readSnapshotRows(Connection conn, String sql, SnapshotRowReader reader) throws SQLException {
+		// Not taken from the statement cache, because the fetch size would stay set on a cached statement:
+		try(PreparedStatement stmt = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY,
+				ResultSet.CONCUR_READ_ONLY)){
+			stmt.setFetchSize(DEFAULT_FETCH_CHUNK_SIZE * 10);
+			try(ResultSet rs = stmt.executeQuery()){
+				int rows = 0;
+				while(rs.next()) {
+					reader.read(rs);
+					rows++;
+				}
+				return rows;
+			}
+		}
+	}
+
+	private static int intOrNull(ResultSet rs, int column) throws SQLException {
+		int value = rs.getInt(column);
+		return rs.wasNull() ? ProjectSnapshot.NULL_INT : value;
+	}
+
+	private static long longOrNull(ResultSet rs, int column) throws SQLException {
+		long value = rs.getLong(column);
+		return rs.wasNull() ? ProjectSnapshot.NULL_LONG : value;
+	}
+
+	// Close each resource, keeping the first failure and attaching later ones to it:
+	private void closeAll(AutoCloseable[] resources) {
+		DbException failure = null;
+		for(AutoCloseable resource : resources) {
+			if(Objects.isNull(resource)) {
+				continue;
+			}
+			try {
+				resource.close();
+			}catch(Exception e) {
+				if(Objects.isNull(failure)) {
+					failure = new DbException(e);
+				}else {
+					failure.addSuppressed(e);
+				}
+			}
+		}
+		if(Objects.nonNull(failure)) {
+			throw failure;
+		}
+	}
+
+	@Override
+	public Optional<Project> fetchProjectById(Integer projectId) {
+		// Single-project fetch goes through the same path as the batch fetch:
+		List<Project> projects = fetchProjectGraphs(List.of(projectId), DaoOperation.FETCH_BY_ID);
+		return projects.isEmpty() ? Optional.empty() : Optional.of(projects.get(0));
+	}
+
+	public int getFetchChunkSize() {
+		return fetchChunkSize;
+	}
+
+	public void setFetchChunkSize(int fetchChunkSize) {
+		if(fetchChunkSize < 1) {
+			throw new IllegalArgumentException("Fetch chunk size must be positive: " + fetchChunkSize);
+		}
+		this.fetchChunkSize = fetchChunkSize;
+	}
+
+	// Load the full graphs of the given projects. Each chunk of IDs costs four queries (projects, materials, steps
+	// and categories) no matter how many projects it contains. Projects are returned in the order their IDs were
+	// given; IDs that do not exist are skipped:
+	@Override
+	public List<Project> fetchProjectsByIds(Collection<Integer> projectIds) {
+		return fetchProjectGraphs(projectIds, DaoOperation.FETCH_BY_IDS);
+	}
+
+	private List<Project> fetchProjectGraphs(Collection<Integer> projectIds, DaoOperation operation) {
+		// Drop duplicate IDs while keeping the order in which they were requested:
+		List<Integer> ids = new ArrayList<>(new LinkedHashSet<>(projectIds));
+		if(ids.isEmpty()) {
+			return new ArrayList<>();
+		}
+		try(OperationTimer timer = metrics.start(operation);
+				Connection conn = timer.connected(
+						DbConnection.getReadConnection(readYourWrites.readsFromPrimary(ids)))){
+			startTransaction(conn);
+			try{
+				List<Project> projects = loadProjectGraphs(conn, ids);
 				commitTransaction(conn);
-				return Optional.ofNullable(project);
+				timer.addRows(projects.size());
+				timer.succeeded();
+				return projects;
 			}
 			catch(Exception e) {
 				// Roll back transaction if an error occurred:
@@ -145,108 +944,173 @@ public class ProjectDAO extends DaoBase{
 		}
 	}
 
+	// The graphs of the projects with the given distinct IDs, in the order of the IDs. IDs that do not exist are
+	// skipped:
+	private List<Project> loadProjectGraphs(Connection conn, List<Integer> ids) throws SQLException {
+		Map<Integer, Project> projectsById = new HashMap<>();
+		int chunkSize = fetchChunkSize;
+		for(int from = 0; from < ids.size(); from += chunkSize) {
+			List<Integer> chunk = ids.subList(from, Math.min(ids.size(), from + chunkSize));
+			List<Integer> found = fetchProjectRows(conn, chunk, projectsById);
+			// Only look for children of the projects that exist:
+			if(!found.isEmpty()) {
+				fetchMaterialsForProjects(conn, found, projectsById);
+				fetchStepsForProjects(conn, found, projectsById);
+				fetchCategoriesForProjects(conn, found, projectsById);
+			}
+		}
+		List<Project> projects = new ArrayList<>(projectsById.size());
+		for(Integer projectId : ids) {
+			Project project = projectsById.get(projectId);
+			if(Objects.nonNull(project)) {
+				projects.add(project);
+			}
+		}
+		return projects;
+	}
+
+	// Obtain rows from PROJECT_TABLE with the designated IDs, returning the IDs that were found:
+	private List<Integer> fetchProjectRows(Connection conn, List<Integer> projectIds,
+			Map<Integer, Project> projectsById) throws SQLException {
+		String sql = inListSql(FETCH_PROJECTS_BY_IDS_SQL, projectIds.size());
+		try(PreparedStatement stmt = prepareStatement(conn, sql)){
+			setIdParameters(stmt, projectIds);
+			
+			try(ResultSet rs = stmt.executeQuery()){
+				List<Integer> found = new ArrayList<>(projectIds.size());
+				RowMapper<Project> mapper = rowMapper(rs, Project.class);
+				while(rs.next()) {
+					Project project = mapper.map(rs);
+					projectsById.put(project.getProjectId(), project);
+					found.add(project.getProjectId());
+				}
+				return found;
+			}
+		}
+	}
 	
-	// Obtain rows from MATERIAL_TABLE with designated projectId:
-	private List<Material> fetchMaterialsForProject(Connection conn, Integer projectId) throws SQLException{
-		// Set up SELECT statement to obtain row in MATERIAL_TABLE with matching project_id:
-		// @formatter:off
-		String sql = ""
-		+ "SELECT *" 		
-		+ "FROM " + MATERIAL_TABLE + " " 
-		+ "WHERE project_id = ?";
-		// @formatter:on
-		try(PreparedStatement stmt = conn.prepareStatement(sql)){
-			setParameter(stmt,1,projectId,Integer.class);
+	// Obtain rows from MATERIAL_TABLE for the designated projects and attach them to their projects:
+	private void fetchMaterialsForProjects(Connection conn, List<Integer> projectIds,
+			Map<Integer, Project> projectsById) throws SQLException{
+		String sql = inListSql(FETCH_MATERIALS_BY_PROJECT_IDS_SQL, projectIds.size());
+		try(OperationTimer timer = metrics.start(DaoOperation.FETCH_MATERIALS);
+				PreparedStatement stmt = prepareStatement(conn, sql)){
+			setIdParameters(stmt, projectIds);
 			
 			try(ResultSet rs = stmt.executeQuery()){
-				List<Material> materials = new LinkedList<>();
+				RowMapper<Material> mapper = rowMapper(rs, Material.class);
 				while(rs.next()) {
-					materials.add(extract(rs,Material.class));
+					Material material = mapper.map(rs);
+					projectsById.get(material.getProjectId()).getMaterials().add(material);
+					timer.addRows(1);
 				}
-				return materials;
+				timer.succeeded();
 			}
 		}
 	}
 	
-	// Obtain rows from STEP_TABLE with designated projectId:
-	private List<Step> fetchStepsForProject(Connection conn, Integer projectId) throws SQLException{
-		// Set up SELECT statement to obtain row in STEP_TABLE with matching project_id:
-		// @formatter:off
-		String sql = ""
-		+ "SELECT *" 		
-		+ "FROM " + STEP_TABLE + " " 
-		+ "WHERE project_id = ?";
-		// @formatter:on
-		try(PreparedStatement stmt = conn.prepareStatement(sql)){
-			setParameter(stmt,1,projectId,Integer.class);
+	// Obtain rows from STEP_TABLE for the designated projects and attach them to their projects in step order:
+	private void fetchStepsForProjects(Connection conn, List<Integer> projectIds,
+			Map<Integer, Project> projectsById) throws SQLException{
+		String sql = inListSql(FETCH_STEPS_BY_PROJECT_IDS_SQL, projectIds.size());
+		try(OperationTimer timer = metrics.start(DaoOperation.FETCH_STEPS);
+				PreparedStatement stmt = prepareStatement(conn, sql)){
+			setIdParameters(stmt, projectIds);
 					
 			try(ResultSet rs = stmt.executeQuery()){
-				List<Step> steps = new LinkedList<>();
+				RowMapper<Step> mapper = rowMapper(rs, Step.class);
 				while(rs.next()) {
-					steps.add(extract(rs,Step.class));
+					Step step = mapper.map(rs);
+					projectsById.get(step.getProjectId()).getSteps().add(step);
+					timer.addRows(1);
 				}
-				return steps;
+				timer.succeeded();
 			}
 		}
 	}
-	// Obtain rows from CATEGORY_TABLE with designated projectId:
-	private List<Category> fetchCategoriesForProject(Connection conn, Integer projectId) throws SQLException{
-		// Set up SELECT statement to obtain row in CATEGORY_TABLE with matching project_id:
-		// @formatter:off
-		String sql = ""
-		+ "SELECT c.*" 		
-		+ "FROM " + CATEGORY_TABLE + " c " 
-		+ "JOIN " + PROJECT_CATEGORY_TABLE + " pc USING (category_id)"
-		+ "WHERE project_id = ?";
-		// @formatter:on
-		try(PreparedStatement stmt = conn.prepareStatement(sql)){
-			setParameter(stmt,1,projectId,Integer.class);
+	
+	// Obtain rows from CATEGORY_TABLE linked to the designated projects and attach them to their projects:
+	private void fetchCategoriesForProjects(Connection conn, List<Integer> projectIds,
+			Map<Integer, Project> projectsById) throws SQLException{
+		String sql = inListSql(FETCH_CATEGORIES_BY_PROJECT_IDS_SQL, projectIds.size());
+		try(OperationTimer timer = metrics.start(DaoOperation.FETCH_CATEGORIES);
+				PreparedStatement stmt = prepareStatement(conn, sql)){
+			setIdParameters(stmt, projectIds);
 						
 			try(ResultSet rs = stmt.executeQuery()){
-				List<Category> categories = new LinkedList<>();
+				RowMapper<Category> mapper = rowMapper(rs, Category.class);
+				// Category has no project ID field, so read the owning project from its column directly:
+				int projectIdColumn = rs.findColumn("project_id");
 				while(rs.next()) {
-					categories.add(extract(rs, Category.class));
+					projectsById.get(rs.getInt(projectIdColumn)).getCategories().add(mapper.map(rs));
+					timer.addRows(1);
 				}
-				return categories;
+				timer.succeeded();
 			}
 		}
 	}
 
+	// IN lists are padded to the next power of two (or the chunk size) so that only a handful of distinct
+	// statements reach the statement cache:
+	private int paddedSize(int size) {
+		int padded = Integer.highestOneBit(size);
+		if(padded < size) {
+			padded <<= 1;
+		}
+		return Math.max(size, Math.min(padded, fetchChunkSize));
+	}
+
+	// Return the SQL for the template with an IN list of at least the given size, building it once per size:
+	private String inListSql(String template, int size) {
+		return inListSql.computeIfAbsent(template, key -> new ConcurrentHashMap<>())
+				.computeIfAbsent(paddedSize(size), padded -> String.format(template, placeholders(padded)));
+	}
+
+	// Bind each ID in the list to the placeholder with the same position. Placeholders added by padding repeat
+	// the last ID, which does not change the result:
+	private void setIdParameters(PreparedStatement stmt, List<Integer> ids) throws SQLException {
+		int index = 1;
+		for(Integer id : ids) {
+			setParameter(stmt, index++, id, Integer.class);
+		}
+		Integer last = ids.get(ids.size() - 1);
+		for(int padded = paddedSize(ids.size()); index <= padded; index++) {
+			setParameter(stmt, index, last, Integer.class);
+		}
+	}
+
+	// Write the changed details of the project. When the project has a version, the update only succeeds if the
+	// row still has that version, and a StaleProjectException is thrown if it does not. On success the project's
+	// version is incremented and its changes are cleared, so it holds the saved state of the row without a re-read.
+	// Returns false if the project does not exist:
+	@Override
 	public boolean modifyProjectDetails(Project project) {
-		// @formatter:off
-		String sql = ""
-				+ "UPDATE " + PROJECT_TABLE + " SET "
-				+ "project_name = ?, "
-				+ "estimated_hours = ?, "
-				+ "actual_hours = ?, "
-				+ "difficulty = ?, "
-				+ "notes = ? "
-				+ "WHERE project_id = ?";
-		// @formatter:on
-		// System.out.println(sql);
-		try(Connection conn = DbConnection.getConnection()){
+		if(project.getChangedDetails().isEmpty()) {
+			return existingVersion(project.getProjectId()).isPresent();
+		}
+		try(OperationTimer timer = metrics.start(DaoOperation.MODIFY);
+				Connection conn = timer.connected(DbConnection.getConnection())){
 			// Start the new transaction:
 			startTransaction(conn);
-			try(PreparedStatement stmt = conn.prepareStatement(sql)){
-				// Set the first ? placeholder in the SQL statement to projectName from project:
-				setParameter(stmt, 1, project.getProjectName(), String.class);
-				// Set the second ? placeholder in the SQL statement to estimatedHours from project:
-				setParameter(stmt, 2, project.getEstimatedHours(), BigDecimal.class);
-				// Set the third ? placeholder in the SQL statement to actualHours from project:
-				setParameter(stmt, 3, project.getActualHours(), BigDecimal.class);
-				// Set the fourth ? placeholder in the SQL statement to difficulty from project:
-				setParameter(stmt, 4, project.getDifficulty(), Integer.class);
-				// Set the fifth ? placeholder in the SQL statement to notes from project:
-				setParameter(stmt, 5, project.getNotes(), String.class);
-				// Set the sixth ? placeholder in the SQL statement to projectId from project:
-				setParameter(stmt, 6, project.getProjectId(), Integer.class);
-				// System.out.println(project);
-				// Confirm results of update:
-				boolean modified = stmt.executeUpdate() == 1;
+			try{
+				List<ProjectWrite.Outcome> outcomes = new ArrayList<>(1);
+				List<SavedVersion> savedVersions = new ArrayList<>(1);
+				applyModifies(conn, List.of(ProjectWrite.modify(project)), outcomes, savedVersions);
+				ProjectWrite.Outcome outcome = outcomes.get(0);
+				if(Objects.nonNull(outcome.failure())) {
+					throw outcome.failure();
+				}
 				// Commit results of update to the database:
-				commitTransaction(conn);
+				commitWrite(conn, List.of(project.getProjectId()),
+						project.getChangedDetails().contains(Project.Detail.PROJECT_NAME));
+				savedVersions.forEach(SavedVersion::apply);
+				timer.addRows(outcome.applied() ? 1 : 0);
+				timer.succeeded();
 				// Return whether or not the update was successful:
-				return modified;
+				return outcome.applied();
+			}catch(StaleProjectException e) {
+				rollbackTransaction(conn);
+				throw e;
 			}catch(Exception e) {
 				rollbackTransaction(conn);
 				throw new DbException(e);
@@ -256,20 +1120,232 @@ public class ProjectDAO extends DaoBase{
 		}
 	}
 
-	public boolean deleteProject(Integer projectId) {
-		// TODO Auto-generated method stub
-		String sql = "DELETE FROM " + PROJECT_TABLE +" WHERE project_id = ?";
+	// Apply the writes in order in a single transaction, so that they share one commit. Consecutive writes that
+	// use the same statement are sent as one JDBC batch: a run of inserts goes through the same batched INSERTs as
+	// insertProjects(), and a run of deletes, or of modifies that change the same columns, is a single batch.
+	// Returns the outcome of each write, in order. If a statement fails nothing is committed and DbException is
+	// thrown; the caller can then retry the writes one at a time to find the one that fails:
+	@Override
+	public List<ProjectWrite.Outcome> applyWrites(List<ProjectWrite> writes) {
+		List<ProjectWrite.Outcome> outcomes = new ArrayList<>(writes.size());
+		if(writes.isEmpty()) {
+			return outcomes;
+		}
+		try(OperationTimer timer = metrics.start(DaoOperation.APPLY_WRITES);
+				Connection conn = timer.connected(DbConnection.getConnection())){
+			startTransaction(conn);
+			try{
+				// Projects only take their new versions once the transaction has committed:
+				List<SavedVersion> savedVersions = new ArrayList<>();
+				int start = 0;
+				while(start < writes.size()) {
+					int end = start + 1;
+					while(end < writes.size() && sameStatement(writes.get(start), writes.get(end))) {
+						end++;
+					}
+					List<ProjectWrite> run = writes.subList(start, end);
+					switch(run.get(0).kind()) {
+						case INSERT -> applyInserts(conn, run, outcomes, savedVersions, timer);
+						case MODIFY -> applyModifies(conn, run, outcomes, savedVersions);
+						case DELETE -> applyDeletes(conn, run, outcomes);
+					}
+					start = end;
+				}
+				Set<Integer> projectIds = new LinkedHashSet<>();
+				boolean listChanged = false;
+				for(ProjectWrite write : writes) {
+					// Inserted projects have their generated IDs by now:
+					projectIds.add(write.kind() == ProjectWrite.Kind.INSERT ? write.project().getProjectId()
+							: write.projectId());
+					listChanged |= write.kind() != ProjectWrite.Kind.MODIFY
+							|| write.project().getChangedDetails().contains(Project.Detail.PROJECT_NAME);
+				}
+				commitWrite(conn, projectIds, listChanged);
+				savedVersions.forEach(SavedVersion::apply);
+				timer.addRows(writes.size());
+				timer.succeeded();
+				return outcomes;
+			}catch(Exception e) {
+				rollbackTransaction(conn);
+				throw new DbException(e);
+			}
+		}catch(SQLException e) {
+			throw new DbException(e);
+		}
+	}
+
+	// Whether two writes can go in the same batch:
+	private boolean sameStatement(ProjectWrite first, ProjectWrite second) {
+		if(first.kind() != second.kind()) {
+			return false;
+		}
+		return first.kind() != ProjectWrite.Kind.MODIFY
+				|| Objects.equals(modifySql(first.project()), modifySql(second.project()));
+	}
+
+	private void applyInserts(Connection conn, List<ProjectWrite> run, List<ProjectWrite.Outcome> outcomes,
+			List<SavedVersion> savedVersions, OperationTimer timer) throws SQLException {
+		List<Project> projects = new ArrayList<>(run.size());
+		for(ProjectWrite write : run) {
+			projects.add(write.project());
+		}
+		insertProjectRows(conn, projects);
+		timer.addRows(insertMaterialRows(conn, projects));
+		timer.addRows(insertStepRows(conn, projects));
+		timer.addRows(insertProjectCategoryRows(conn, projects));
+		logChanges(conn, projectIds(projects), false);
+		// The new rows start at the column default version, and hold everything that was set:
+		for(Project project : projects) {
+			savedVersions.add(new SavedVersion(project, 0));
+			outcomes.add(ProjectWrite.Outcome.APPLIED);
+		}
+	}
+
+	// Modifies in one run change the same columns, so they share one UPDATE statement:
+	private void applyModifies(Connection conn, List<ProjectWrite> run, List<ProjectWrite.Outcome> outcomes,
+			List<SavedVersion> savedVersions) throws SQLException {
+		String sql = modifySql(run.get(0).project());
+		if(Objects.isNull(sql)) {
+			// Nothing changed, so there is nothing to write:
+			for(ProjectWrite write : run) {
+				boolean exists = existingVersion(conn, write.projectId()).isPresent();
+				outcomes.add(exists ? ProjectWrite.Outcome.APPLIED : ProjectWrite.Outcome.NOT_FOUND);
+			}
+			return;
+		}
+		try(PreparedStatement stmt = prepareStatement(conn, sql)){
+			for(ProjectWrite write : run) {
+				Project project = write.project();
+				int index = 1;
+				// Set a placeholder for each changed column, in the order buildModifySql() lists them:
+				for(Project.Detail detail : project.getChangedDetails()) {
+					switch(detail) {
+						case PROJECT_NAME -> setParameter(stmt, index++, project.getProjectName(), String.class);
+						case ESTIMATED_HOURS ->
+							setParameter(stmt, index++, project.getEstimatedHours(), BigDecimal.class);
+						case ACTUAL_HOURS -> setParameter(stmt, index++, project.getActualHours(), BigDecimal.class);
+						case DIFFICULTY -> setParameter(stmt, index++, project.getDifficulty(), Integer.class);
+						case NOTES -> setParameter(stmt, index++, project.getNotes(), String.class);
+					}
+				}
+				setParameter(stmt, index++, project.getProjectId(), Integer.class);
+				if(Objects.nonNull(project.getVersion())) {
+					setParameter(stmt, index, project.getVersion(), Integer.class);
+				}
+				stmt.addBatch();
+			}
+			int[] counts = stmt.executeBatch();
+			Set<Integer> modified = new LinkedHashSet<>();
+			for(int i = 0; i < run.size(); i++) {
+				Project project = run.get(i).project();
+				boolean checkVersion = Objects.nonNull(project.getVersion());
+				if(counts[i] > 0) {
+					modified.add(project.getProjectId());
+					// Without a known version, read the new one. The row is locked by the update, so it is current:
+					Integer version = checkVersion ? project.getVersion() + 1
+							: existingVersion(conn, project.getProjectId()).orElse(null);
+					savedVersions.add(new SavedVersion(project, version));
+					outcomes.add(ProjectWrite.Outcome.APPLIED);
+				}else if(checkVersion && existingVersion(conn, project.getProjectId()).isPresent()) {
+					// No row matched, but the project exists, so someone else changed it:
+					outcomes.add(ProjectWrite.Outcome.failed(
+							new StaleProjectException(project.getProjectId(), project.getVersion())));
+				}else {
+					outcomes.add(ProjectWrite.Outcome.NOT_FOUND);
+				}
+			}
+			logChanges(conn, modified, false);
+		}
+	}
+
+	private void applyDeletes(Connection conn, List<ProjectWrite> run, List<ProjectWrite.Outcome> outcomes)
+			throws SQLException {
+		try(PreparedStatement stmt = prepareStatement(conn, DELETE_PROJECT_SQL)){
+			for(ProjectWrite write : run) {
+				setParameter(stmt, 1, write.projectId(), Integer.class);
+				stmt.addBatch();
+			}
+			int[] counts = stmt.executeBatch();
+			Set<Integer> deleted = new LinkedHashSet<>();
+			for(int i = 0; i < run.size(); i++) {
+				// The sequence row is deleted along with the project:
+				stepOrders.forget(run.get(i).projectId());
+				if(counts[i] > 0) {
+					deleted.add(run.get(i).projectId());
+				}
+				outcomes.add(counts[i] > 0 ? ProjectWrite.Outcome.APPLIED : ProjectWrite.Outcome.NOT_FOUND);
+			}
+			logChanges(conn, deleted, true);
+		}
+	}
+
+	// The UPDATE for the project's changed details, or null if nothing changed:
+	private String modifySql(Project project) {
+		Set<Project.Detail> changes = project.getChangedDetails();
+		if(changes.isEmpty()) {
+			return null;
+		}
+		String[] sqlVariants = modifySql.computeIfAbsent(EnumSet.copyOf(changes), ProjectDAO::buildModifySql);
+		return sqlVariants[Objects.nonNull(project.getVersion()) ? 1 : 0];
+	}
+
+	// The UPDATE for a set of changed details, without and with the version check. Each Detail is named after
+	// its column:
+	private static String[] buildModifySql(Set<Project.Detail> changes) {
+		StringBuilder columns = new StringBuilder();
+		for(Project.Detail detail : changes) {
+			columns.append(detail.name().toLowerCase()).append(" = ?, ");
+		}
+		String sql = String.format(MODIFY_PROJECT_SQL, columns);
+		return new String[] {sql, sql + VERSION_CONDITION_SQL};
+	}
+
+	private Optional<Integer> existingVersion(Integer projectId) {
 		try(Connection conn = DbConnection.getConnection()){
+			return existingVersion(conn, projectId);
+		}catch(SQLException e) {
+			throw new DbException(e);
+		}
+	}
+
+	private Optional<Integer> existingVersion(Connection conn, Integer projectId) throws SQLException {
+		try(PreparedStatement stmt = prepareStatement(conn, FETCH_PROJECT_VERSION_SQL)){
+			setParameter(stmt, 1, projectId, Integer.class);
+			try(ResultSet rs = stmt.executeQuery()){
+				return rs.next() ? Optional.of(rs.getInt(1)) : Optional.empty();
+			}
+		}
+	}
+
+	// A project's version once its write is committed. Applying it also clears the project's changes:
+	private record SavedVersion(Project project, Integer version) {
+		private void apply() {
+			project.setVersion(version);
+			project.clearChangedDetails();
+		}
+	}
+
+	@Override
+	public boolean deleteProject(Integer projectId) {
+		try(OperationTimer timer = metrics.start(DaoOperation.DELETE);
+				Connection conn = timer.connected(DbConnection.getConnection())){
 			// Start a new transaction if the connection succeeded:
 			startTransaction(conn);
 			// Attempt to prepare a statement with the SQL query:
-			try(PreparedStatement stmt = conn.prepareStatement(sql)){
+			try(PreparedStatement stmt = prepareStatement(conn, DELETE_PROJECT_SQL)){
 				// Replace wildcard placeholder in statement with projectId:
 				setParameter(stmt,1,projectId,Integer.class);
 				// Execute statement with executeUpdate and confirm that returned value is 1:
 				boolean deleted = stmt.executeUpdate() == 1;
+				if(deleted) {
+					logChanges(conn, Set.of(projectId), true);
+				}
 				// Commit results of transaction to database:
-				commitTransaction(conn);
+				commitWrite(conn, Set.of(projectId), true);
+				// The project's sequence row went with it:
+				stepOrders.forget(projectId);
+				timer.addRows(deleted ? 1 : 0);
+				timer.succeeded();
 				return deleted;
 			}catch(Exception e) {
 				rollbackTransaction(conn);
@@ -280,4 +1356,55 @@ public class ProjectDAO extends DaoBase{
 			throw new DbException(e);
 		}
 	}
+
+	// Run EXPLAIN on the hot read queries and report each one that does not read through the index added for it,
+	// or that still sorts its rows. An empty list means every plan is as expected. The optimizer may choose a
+	// table scan for a table with only a few rows, so a report on a near-empty database is not a concern:
+	@Override
+	public List<String> checkQueryPlans() {
+		// @formatter:off
+		List<PlanCheck> checks = List.of(
+				new PlanCheck("first summary page", FETCH_FIRST_SUMMARIES_PAGE_SQL, List.of(LIST_CHECK_LIMIT),
+						PROJECT_TABLE, "idx_project_name"),
+				new PlanCheck("next project page", FETCH_PROJECTS_PAGE_SQL, List.of("", "", 0, LIST_CHECK_LIMIT),
+						PROJECT_TABLE, "idx_project_name"),
+				new PlanCheck("steps by project IDs", inListSql(FETCH_STEPS_BY_PROJECT_IDS_SQL, 4), List.of(1, 2, 3, 4),
+						STEP_TABLE, "idx_step_project_order"),
+				new PlanCheck("categories by project IDs", inListSql(FETCH_CATEGORIES_BY_PROJECT_IDS_SQL, 4),
+						List.of(1, 2, 3, 4), "pc", "PRIMARY"));
+		// @formatter:on
+		List<String> problems = new ArrayList<>();
+		try(Connection conn = DbConnection.getConnection()){
+			for(PlanCheck check : checks) {
+				try(PreparedStatement stmt = conn.prepareStatement("EXPLAIN " + check.sql())){
+					int index = 1;
+					for(Object parameter : check.parameters()) {
+						setParameter(stmt, index++, parameter, parameter.getClass());
+					}
+					try(ResultSet rs = stmt.executeQuery()){
+						String problem = check.table() + " is not in the plan";
+						while(rs.next()) {
+							if(!check.table().equals(rs.getString("table"))) {
+								continue;
+							}
+							String key = rs.getString("key");
+							String extra = Objects.toString(rs.getString("Extra"), "");
+							problem = check.index().equals(key) && !extra.contains("filesort") ? null
+									: "reads " + check.table() + " with key " + key + " (" + extra + ")";
+						}
+						if(Objects.nonNull(problem)) {
+							problems.add(check.name() + ": expected index " + check.index() + " but " + problem);
+						}
+					}
+				}
+			}
+		}catch(SQLException e) {
+			throw new DbException(e);
+		}
+		return problems;
+	}
+
+	// A query, sample parameters for it, and the index it should use on one of its tables:
+	private record PlanCheck(String name, String sql, List<Object> parameters, String table, String index) {
+	}
 }
@@ -0,0 +1,73 @@
+package projects.dao;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import projects.analytics.ProjectSnapshot;
+import projects.entity.Category;
+import projects.entity.Material;
+import projects.entity.Project;
+import projects.entity.ProjectSummary;
+import projects.entity.Step;
+
+// Where ProjectService keeps projects. ProjectDAO stores them in MySQL; MappedProjectStore keeps them in a local
+// file for deployments without a database server. Both give the semantics documented on ProjectDAO: generated IDs
+// are set on the objects passed in, modifies write only the changed details and check the version when the
+// project has one, and fetched projects belong to the caller.
+public interface ProjectStore extends AutoCloseable {
+	Project insertProject(Project project);
+
+	List<Project> insertProjects(List<Project> projects);
+
+	List<Material> addMaterials(List<Material> materials);
+
+	List<Step> addSteps(List<Step> steps);
+
+	List<Category> addCategories(Integer projectId, List<Category> categories);
+
+	// Project details without their children, ordered by name:
+	List<Project> fetchAllProjects();
+
+	// As fetchAllProjects(), one at a time. The stream may hold resources and must be closed:
+	Stream<Project> streamAllProjects(int fetchSize);
+
+	List<Project> fetchProjectsPage(String afterName, Integer afterId, int limit);
+
+	List<ProjectSummary> fetchProjectSummariesPage(String afterName, Integer afterId, int limit);
+
+	// Full project graphs:
+	Optional<Project> fetchProjectById(Integer projectId);
+
+	List<Project> fetchProjectsByIds(Collection<Integer> projectIds);
+
+	boolean modifyProjectDetails(Project project);
+
+	boolean deleteProject(Integer projectId);
+
+	List<ProjectWrite.Outcome> applyWrites(List<ProjectWrite> writes);
+
+	ProjectSnapshot loadSnapshot();
+
+	CatalogMarker fetchCatalogMarker();
+
+	// Whether the store keeps a log of changes made by every writer, so that fetchChangesSince() and
+	// fetchChangeCursor() can be used. Stores without one throw UnsupportedOperationException from both:
+	boolean keepsChangeLog();
+
+	// Projects changed after the cursor, looking at no more than limit changes. A cursor of 0 starts at the first
+	// change:
+	ProjectChanges fetchChangesSince(long cursor, int limit);
+
+	// The cursor of the latest change. Read it before loading everything, then fetch the changes since it:
+	long fetchChangeCursor();
+
+	// Problems with how the store answers queries, or an empty list if there are none:
+	List<String> checkQueryPlans();
+
+	// Release what the store holds open. Stores without such resources need not override this:
+	@Override
+	default void close() {
+	}
+}
@@ -0,0 +1,36 @@
+package projects.dao;
+
+import java.util.Objects;
+
+import projects.entity.Project;
+
+// One insert, modify or delete of a project, for ProjectDAO.applyWrites(). A modify writes the changed details of
+// the project, as modifyProjectDetails() does.
+public record ProjectWrite(Kind kind, Project project, Integer projectId) {
+	public enum Kind {
+		INSERT, MODIFY, DELETE
+	}
+
+	public static ProjectWrite insert(Project project) {
+		return new ProjectWrite(Kind.INSERT, Objects.requireNonNull(project), null);
+	}
+
+	public static ProjectWrite modify(Project project) {
+		return new ProjectWrite(Kind.MODIFY, Objects.requireNonNull(project), project.getProjectId());
+	}
+
+	public static ProjectWrite delete(Integer projectId) {
+		return new ProjectWrite(Kind.DELETE, null, Objects.requireNonNull(projectId));
+	}
+
+	// What happened to one write. A write that was not applied either found no project (failure is null) or was
+	// rejected with the failure, such as a StaleProjectException:
+	public record Outcome(boolean applied, RuntimeException failure) {
+		public static final Outcome APPLIED = new Outcome(true, null);
+		public static final Outcome NOT_FOUND = new Outcome(false, null);
+
+		public static Outcome failed(RuntimeException failure) {
+			return new Outcome(false, failure);
+		}
+	}
+}
@@ -0,0 +1,62 @@
+package projects.dao;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Which recent writes replicas may not have applied yet, so that reads that would see them go to the primary
+// instead. Windows are kept per project: a write to one project sends reads of that project to the primary, while
+// reads of other projects keep going to replicas, whichever thread or caller made the write. Writes that change
+// the project list (inserts, deletes and renames) also open a window for list reads. The list is shared by every
+// caller, through ProjectService's catalog, so a list read from a lagging replica would be wrong for all of them.
+public class ReadYourWrites {
+	// Expired windows are swept out once there are this many:
+	private static final int SWEEP_THRESHOLD = 1024;
+
+	// When reads of each project may go to replicas again, in System.nanoTime() terms:
+	private final Map<Integer, Long> projectsUntil = new ConcurrentHashMap<>();
+	// When list reads may go to replicas again. It starts out already passed:
+	private final AtomicLong listsUntil = new AtomicLong(System.nanoTime());
+
+	// Open the window after a write of the projects that has just committed. A later deadline set by a concurrent
+	// write is kept:
+	public void wrote(Collection<Integer> projectIds, boolean listChanged, long windowNanos) {
+		if(windowNanos <= 0) {
+			return;
+		}
+		long until = System.nanoTime() + windowNanos;
+		for(Integer projectId : projectIds) {
+			projectsUntil.merge(projectId, until, ReadYourWrites::later);
+		}
+		if(listChanged) {
+			listsUntil.accumulateAndGet(until, ReadYourWrites::later);
+		}
+		if(projectsUntil.size() > SWEEP_THRESHOLD) {
+			long now = System.nanoTime();
+			projectsUntil.values().removeIf(deadline -> deadline - now <= 0);
+		}
+	}
+
+	// Whether any of the projects was written within the window:
+	public boolean readsFromPrimary(Collection<Integer> projectIds) {
+		long now = System.nanoTime();
+		for(Integer projectId : projectIds) {
+			Long until = projectsUntil.get(projectId);
+			if(Objects.nonNull(until) && until - now > 0) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	// Whether the project list changed within the window:
+	public boolean listsFromPrimary() {
+		return listsUntil.get() - System.nanoTime() > 0;
+	}
+
+	private static long later(long current, long next) {
+		return next - current > 0 ? next : current;
+	}
+}
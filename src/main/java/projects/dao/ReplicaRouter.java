@@ -0,0 +1,102 @@
+package projects.dao;
+
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import projects.exception.DbException;
+
+// Chooses a replica for each read. Replicas are tried in turn starting from the chosen one, and null is returned
+// when none can hand out a connection, so the caller can read from the primary instead. Reads that would see a
+// recent write go to the primary for a while, because a replica may not have applied the write yet; ReadYourWrites
+// tracks which reads those are.
+public class ReplicaRouter implements AutoCloseable {
+	public enum Policy {
+		// Each read goes to the next replica:
+		ROUND_ROBIN,
+		// Each read goes to the replica with the fewest connections in use, in turn among equals:
+		LEAST_LOADED
+	}
+
+	private final List<ConnectionPool> replicas;
+	private final Policy policy;
+	private final long readYourWritesNanos;
+	private final AtomicInteger next = new AtomicInteger();
+	private final LongAdder replicaReads = new LongAdder();
+	private final LongAdder stickyReads = new LongAdder();
+	private final LongAdder fallbacks = new LongAdder();
+
+	public ReplicaRouter(List<ConnectionPool> replicas, Policy policy, long readYourWritesMillis) {
+		if(replicas.isEmpty()) {
+			throw new IllegalArgumentException("At least one replica is required");
+		}
+		this.replicas = List.copyOf(replicas);
+		this.policy = policy;
+		this.readYourWritesNanos = readYourWritesMillis * 1_000_000;
+	}
+
+	// A replica connection for a read, or null if the read should go to the primary. recentlyWritten is set for
+	// reads that would see a write made within the read-your-writes window:
+	public Connection getConnection(boolean recentlyWritten) {
+		if(recentlyWritten) {
+			stickyReads.increment();
+			return null;
+		}
+		int first = choose();
+		for(int i = 0; i < replicas.size(); i++) {
+			try {
+				Connection conn = replicas.get((first + i) % replicas.size()).getConnection();
+				replicaReads.increment();
+				return conn;
+			}catch(DbException e) {
+				// Unreachable or saturated. Try the next one:
+			}
+		}
+		fallbacks.increment();
+		return null;
+	}
+
+	// How long after a write the reads that would see it keep going to the primary:
+	public long getReadYourWritesNanos() {
+		return readYourWritesNanos;
+	}
+
+	public RoutingStats getStats() {
+		List<ConnectionPool.PoolStats> pools = new ArrayList<>(replicas.size());
+		for(ConnectionPool replica : replicas) {
+			pools.add(replica.getStats());
+		}
+		return new RoutingStats(policy, replicaReads.sum(), stickyReads.sum(), fallbacks.sum(), pools);
+	}
+
+	@Override
+	public void close() {
+		replicas.forEach(ConnectionPool::close);
+	}
+
+	private int choose() {
+		int start = Math.floorMod(next.getAndIncrement(), replicas.size());
+		if(policy == Policy.ROUND_ROBIN) {
+			return start;
+		}
+		int best = start;
+		int bestActive = Integer.MAX_VALUE;
+		for(int i = 0; i < replicas.size(); i++) {
+			int index = (start + i) % replicas.size();
+			int active = replicas.get(index).getActiveCount();
+			if(active < bestActive) {
+				best = index;
+				bestActive = active;
+			}
+		}
+		return best;
+	}
+
+	// Where reads went: to a replica, to the primary within a read-your-writes window, or to the primary because
+	// no replica could serve them:
+	public record RoutingStats(Policy policy, long replicaReads, long stickyReads, long fallbacks,
+			List<ConnectionPool.PoolStats> replicaPools) {
+	}
+}
@@ -0,0 +1,212 @@
+package projects.dao;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import projects.exception.DbException;
+
+// Brings the schema up to date by applying the versioned scripts in db/migration on the classpath, oldest first.
+// Each applied script is recorded in schema_version with a checksum of its text, so it is never run twice and an
+// applied script that has since been edited is reported instead of silently diverging. Scripts only ever add to
+// the schema; existing data is kept.
+public class SchemaMigrator {
+	private static final String MIGRATION_PATH = "db/migration/";
+	// Applied in this order. A new migration gets the next version number and is added to the end:
+	// @formatter:off
+	private static final List<String> MIGRATION_SCRIPTS = List.of(
+			"V1__baseline.sql",
+			"V2__project_name_index.sql",
+			"V3__step_order_index.sql",
+			"V4__project_category_key.sql",
+			"V5__project_version.sql",
+			"V6__project_sequence.sql",
+			"V7__project_change.sql");
+	// @formatter:on
+	private static final Pattern SCRIPT_NAME = Pattern.compile("V(\\d+)__(\\w+)\\.sql");
+	// Held while migrating, so that applications starting at the same time do not both apply a script:
+	private static final String LOCK_NAME = "projects.schema_migration";
+	private static final int LOCK_TIMEOUT_SECONDS = 60;
+
+	// @formatter:off
+	private static final String CREATE_VERSION_TABLE_SQL = ""
+	+ "CREATE TABLE IF NOT EXISTS schema_version("
+	+ "version INT NOT NULL, "
+	+ "description VARCHAR(128) NOT NULL, "
+	+ "script VARCHAR(128) NOT NULL, "
+	+ "checksum CHAR(64) NOT NULL, "
+	+ "execution_millis INT NOT NULL, "
+	+ "installed_on TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP, "
+	+ "PRIMARY KEY (version))";
+	private static final String FETCH_VERSIONS_SQL = "SELECT version, checksum FROM schema_version";
+	private static final String INSERT_VERSION_SQL = ""
+	+ "INSERT INTO schema_version "
+	+ "(version, description, script, checksum, execution_millis) "
+	+ "VALUES "
+	+ "(?, ?, ?, ?, ?)";
+	// @formatter:on
+
+	private final List<Migration> migrations;
+
+	public SchemaMigrator() {
+		migrations = new ArrayList<>();
+		for(String script : MIGRATION_SCRIPTS) {
+			migrations.add(Migration.load(script));
+		}
+	}
+
+	// Apply every migration that has not been applied yet and return how many were applied. DDL commits
+	// implicitly in MySQL, so a migration that fails part way is not recorded and must be repaired by hand:
+	public int migrate(Connection conn) {
+		try {
+			lock(conn);
+			try {
+				try(Statement stmt = conn.createStatement()){
+					stmt.execute(CREATE_VERSION_TABLE_SQL);
+				}
+				Map<Integer, String> applied = fetchAppliedChecksums(conn);
+				int count = 0;
+				for(Migration migration : migrations) {
+					String checksum = applied.remove(migration.version());
+					if(Objects.isNull(checksum)) {
+						apply(conn, migration);
+						count++;
+					}else if(!checksum.equals(migration.checksum())) {
+						throw new DbException("Migration " + migration.script() + " was changed after it was applied. "
+								+ "Add a new migration instead of editing an applied one.");
+					}
+				}
+				if(!applied.isEmpty()) {
+					System.out.println("The schema has migrations unknown to this version of the application: "
+							+ applied.keySet());
+				}
+				return count;
+			}finally {
+				unlock(conn);
+			}
+		}catch(SQLException e) {
+			throw new DbException(e);
+		}
+	}
+
+	private Map<Integer, String> fetchAppliedChecksums(Connection conn) throws SQLException {
+		Map<Integer, String> applied = new HashMap<>();
+		try(Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery(FETCH_VERSIONS_SQL)){
+			while(rs.next()) {
+				applied.put(rs.getInt(1), rs.getString(2));
+			}
+		}
+		return applied;
+	}
+
+	private void apply(Connection conn, Migration migration) throws SQLException {
+		long start = System.nanoTime();
+		try(Statement stmt = conn.createStatement()){
+			for(String sql : migration.statements()) {
+				try {
+					stmt.execute(sql);
+				}catch(SQLException e) {
+					throw new DbException("Migration " + migration.script() + " failed at: " + sql, e);
+				}
+			}
+		}
+		int elapsedMillis = (int)((System.nanoTime() - start) / 1_000_000);
+		try(PreparedStatement stmt = conn.prepareStatement(INSERT_VERSION_SQL)){
+			stmt.setInt(1, migration.version());
+			stmt.setString(2, migration.description());
+			stmt.setString(3, migration.script());
+			stmt.setString(4, migration.checksum());
+			stmt.setInt(5, elapsedMillis);
+			stmt.executeUpdate();
+		}
+		System.out.println("Applied migration " + migration.script() + " in " + elapsedMillis + " ms.");
+	}
+
+	private void lock(Connection conn) throws SQLException {
+		try(PreparedStatement stmt = conn.prepareStatement("SELECT GET_LOCK(?, ?)")){
+			stmt.setString(1, LOCK_NAME);
+			stmt.setInt(2, LOCK_TIMEOUT_SECONDS);
+			try(ResultSet rs = stmt.executeQuery()){
+				if(!rs.next() || rs.getInt(1) != 1) {
+					throw new DbException("Timed out waiting for another application to finish migrating the schema");
+				}
+			}
+		}
+	}
+
+	private void unlock(Connection conn) throws SQLException {
+		try(PreparedStatement stmt = conn.prepareStatement("SELECT RELEASE_LOCK(?)")){
+			stmt.setString(1, LOCK_NAME);
+			stmt.executeQuery().close();
+		}
+	}
+
+	private record Migration(int version, String description, String script, String checksum,
+			List<String> statements) {
+		private static Migration load(String script) {
+			Matcher name = SCRIPT_NAME.matcher(script);
+			if(!name.matches()) {
+				throw new DbException("Migration script " + script + " is not named V<version>__<description>.sql");
+			}
+			String text;
+			try(InputStream in = SchemaMigrator.class.getClassLoader().getResourceAsStream(MIGRATION_PATH + script)){
+				if(Objects.isNull(in)) {
+					throw new DbException("Migration script " + MIGRATION_PATH + script + " is not on the classpath");
+				}
+				// Line endings are normalized so that a checkout on Windows has the same checksum:
+				text = new String(in.readAllBytes(), StandardCharsets.UTF_8).replace("\r\n", "\n");
+			}catch(IOException e) {
+				throw new DbException("Unable to read migration script " + script, e);
+			}
+			return new Migration(Integer.parseInt(name.group(1)), name.group(2).replace('_', ' '), script,
+					sha256(text), splitStatements(text));
+		}
+
+		// Split a script into statements at each semicolon that ends a line, skipping -- comment lines:
+		private static List<String> splitStatements(String text) {
+			List<String> statements = new ArrayList<>();
+			StringBuilder statement = new StringBuilder();
+			for(String line : text.split("\n")) {
+				String trimmed = line.trim();
+				if(trimmed.isEmpty() || trimmed.startsWith("--")) {
+					continue;
+				}
+				if(trimmed.endsWith(";")) {
+					statement.append(trimmed, 0, trimmed.length() - 1);
+					statements.add(statement.toString());
+					statement.setLength(0);
+				}else {
+					statement.append(trimmed).append('\n');
+				}
+			}
+			if(!statement.toString().isBlank()) {
+				statements.add(statement.toString());
+			}
+			return statements;
+		}
+
+		private static String sha256(String text) {
+			try {
+				MessageDigest digest = MessageDigest.getInstance("SHA-256");
+				return HexFormat.of().formatHex(digest.digest(text.getBytes(StandardCharsets.UTF_8)));
+			}catch(NoSuchAlgorithmException e) {
+				throw new IllegalStateException(e);
+			}
+		}
+	}
+}
@@ -0,0 +1,168 @@
+package projects.dao;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+import projects.exception.DbException;
+import projects.metrics.DaoMetrics;
+import projects.metrics.DaoOperation;
+import projects.metrics.OperationTimer;
+import provided.util.DaoBase;
+
+// Hands out step_order numbers for new steps. Each project's numbers are reserved from project_sequence in blocks,
+// under a lock on the project's row, in a transaction of their own that commits at once, so the row is not held
+// while the steps are written. Numbers are then given out from memory until the block runs out. Numbers of a
+// block that is never used, or of an insert that fails, are skipped; steps only need to be in order, not
+// consecutive. With several applications on one database each holds its own blocks, so steps added to the same
+// project by different applications are ordered by block rather than by time.
+class StepOrderAllocator extends DaoBase {
+	private static final String SEQUENCE_TABLE = "project_sequence";
+
+	// @formatter:off
+	// Adds the project's row on first use, starting after its highest step. Does nothing if the row exists or
+	// the project does not:
+	private static final String CREATE_SEQUENCE_SQL = ""
+	+ "INSERT IGNORE INTO " + SEQUENCE_TABLE + " "
+	+ "(project_id, next_step_order) "
+	+ "SELECT p.project_id, COALESCE(MAX(s.step_order), 0) + 1 "
+	+ "FROM project p "
+	+ "LEFT JOIN step s USING (project_id) "
+	+ "WHERE p.project_id = ? "
+	+ "GROUP BY p.project_id";
+	private static final String LOCK_SEQUENCE_SQL = ""
+	+ "SELECT next_step_order "
+	+ "FROM " + SEQUENCE_TABLE + " "
+	+ "WHERE project_id = ? "
+	+ "FOR UPDATE";
+	private static final String ADVANCE_SEQUENCE_SQL = ""
+	+ "UPDATE " + SEQUENCE_TABLE + " "
+	+ "SET next_step_order = ? "
+	+ "WHERE project_id = ?";
+	// @formatter:on
+
+	private final DaoMetrics metrics;
+	private final int blockSize;
+	// The unused part of the last block reserved for each project:
+	private final Map<Integer, Block> blocks = new ConcurrentHashMap<>();
+
+	StepOrderAllocator(DaoMetrics metrics, int blockSize) {
+		if(blockSize < 1) {
+			throw new IllegalArgumentException("Invalid step order block size: " + blockSize);
+		}
+		this.metrics = metrics;
+		this.blockSize = blockSize;
+	}
+
+	// The next count step numbers of the project, in increasing order:
+	int[] allocate(Integer projectId, int count) {
+		int[] orders = new int[count];
+		Block block = lockBlock(projectId);
+		try {
+			int filled = 0;
+			while(filled < count) {
+				if(block.next == block.limit) {
+					// Reserve at least what is still needed, so a large insert takes one round trip:
+					int reserved = Math.max(blockSize, count - filled);
+					block.next = reserve(projectId, reserved);
+					block.limit = block.next + reserved;
+				}
+				orders[filled++] = block.next++;
+			}
+		}finally {
+			block.lock.unlock();
+		}
+		return orders;
+	}
+
+	// Drop the cached block of a deleted project. The block is removed under its lock, so an allocation that holds
+	// it finishes first:
+	void forget(Integer projectId) {
+		Block block = blocks.get(projectId);
+		if(Objects.isNull(block)) {
+			return;
+		}
+		block.lock.lock();
+		try {
+			blocks.remove(projectId, block);
+		}finally {
+			block.lock.unlock();
+		}
+	}
+
+	// Lock the project's current block. Only callers adding steps to the same project wait for each other. A lock
+	// rather than synchronized, since reserving a block talks to the database and a virtual thread waiting on it
+	// must not pin its carrier. A block that forget() removed while this waited is no longer the project's, so a
+	// new one is taken instead:
+	private Block lockBlock(Integer projectId) {
+		while(true) {
+			Block block = blocks.computeIfAbsent(projectId, id -> new Block());
+			block.lock.lock();
+			if(blocks.get(projectId) == block) {
+				return block;
+			}
+			block.lock.unlock();
+		}
+	}
+
+	// Advance the project's sequence by size and return the first number reserved:
+	private int reserve(Integer projectId, int size) {
+		try(OperationTimer timer = metrics.start(DaoOperation.ALLOCATE_STEP_ORDER);
+				Connection conn = timer.connected(DbConnection.getConnection())){
+			startTransaction(conn);
+			try{
+				Integer first = lockSequence(conn, projectId);
+				if(Objects.isNull(first)) {
+					// The project's first reservation adds its row:
+					try(PreparedStatement stmt = prepareStatement(conn, CREATE_SEQUENCE_SQL)){
+						setParameter(stmt, 1, projectId, Integer.class);
+						stmt.executeUpdate();
+					}
+					first = lockSequence(conn, projectId);
+					if(Objects.isNull(first)) {
+						throw new DbException("Project with ID=" + projectId + " does not exist.");
+					}
+				}
+				try(PreparedStatement stmt = prepareStatement(conn, ADVANCE_SEQUENCE_SQL)){
+					setParameter(stmt, 1, first + size, Integer.class);
+					setParameter(stmt, 2, projectId, Integer.class);
+					stmt.executeUpdate();
+				}
+				commitTransaction(conn);
+				timer.addRows(size);
+				timer.succeeded();
+				return first;
+			}catch(DbException e) {
+				rollbackTransaction(conn);
+				throw e;
+			}catch(Exception e) {
+				rollbackTransaction(conn);
+				throw new DbException(e);
+			}
+		}catch(SQLException e) {
+			throw new DbException(e);
+		}
+	}
+
+	// Lock the project's sequence row and return its next number, or null if the row does not exist yet:
+	private Integer lockSequence(Connection conn, Integer projectId) throws SQLException {
+		try(PreparedStatement stmt = prepareStatement(conn, LOCK_SEQUENCE_SQL)){
+			setParameter(stmt, 1, projectId, Integer.class);
+			try(ResultSet rs = stmt.executeQuery()){
+				return rs.next() ? rs.getInt(1) : null;
+			}
+		}
+	}
+
+	// Numbers from next up to, but not including, limit are reserved and unused. Guarded by lock:
+	private static class Block {
+		private final ReentrantLock lock = new ReentrantLock();
+		private int next;
+		private int limit;
+	}
+}
@@ -3,11 +3,15 @@
  */
 package projects.entity;
 
+import java.io.Serializable;
+
 /**
  * @author Promineo
  *
  */
-public class Category {
+public class Category implements Serializable {
+  private static final long serialVersionUID = 1L;
+
   private Integer categoryId;
   private String categoryName;
 
@@ -3,13 +3,16 @@
  */
 package projects.entity;
 
+import java.io.Serializable;
 import java.math.BigDecimal;
 
 /**
  * @author Promineo
  *
  */
-public class Material {
+public class Material implements Serializable {
+  private static final long serialVersionUID = 1L;
+
   private Integer materialId;
   private Integer projectId;
   private String materialName;
@@ -3,25 +3,51 @@
  */
 package projects.entity;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
 import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.EnumSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Objects;
+import java.util.Set;
 
 /**
+ * A project and its materials, steps and categories.
+ * 
+ * The setters for the project details record which details were changed to a different value, so
+ * that an update only writes those columns. Values mapped in from a result set are not recorded as
+ * changes. The version is the row version used for optimistic locking: an update only succeeds if
+ * the row still has the version that was read.
+ * 
  * @author Promineo
  *
  */
-public class Project {
+public class Project implements Serializable {
+  private static final long serialVersionUID = 1L;
+
+  /**
+   * The project details that can be changed by an update.
+   */
+  public enum Detail {
+    PROJECT_NAME, ESTIMATED_HOURS, ACTUAL_HOURS, DIFFICULTY, NOTES
+  }
+
   private Integer projectId;
   private String projectName;
   private BigDecimal estimatedHours;
   private BigDecimal actualHours;
   private Integer difficulty;
   private String notes;
+  private Integer version;
+
+  private LinkedList<Material> materials = new LinkedList<>();
+  private LinkedList<Step> steps = new LinkedList<>();
+  private LinkedList<Category> categories = new LinkedList<>();
 
-  private List<Material> materials = new LinkedList<>();
-  private List<Step> steps = new LinkedList<>();
-  private List<Category> categories = new LinkedList<>();
+  private transient Set<Detail> changedDetails = EnumSet.noneOf(Detail.class);
 
   public Integer getProjectId() {
     return projectId;
@@ -36,6 +62,7 @@ public class Project {
   }
 
   public void setProjectName(String projectName) {
+    markChanged(Detail.PROJECT_NAME, this.projectName, projectName);
     this.projectName = projectName;
   }
 
@@ -44,6 +71,7 @@ public class Project {
   }
 
   public void setEstimatedHours(BigDecimal estimatedHours) {
+    markChanged(Detail.ESTIMATED_HOURS, this.estimatedHours, estimatedHours);
     this.estimatedHours = estimatedHours;
   }
 
@@ -52,6 +80,7 @@ public class Project {
   }
 
   public void setActualHours(BigDecimal actualHours) {
+    markChanged(Detail.ACTUAL_HOURS, this.actualHours, actualHours);
     this.actualHours = actualHours;
   }
 
@@ -60,6 +89,7 @@ public class Project {
   }
 
   public void setDifficulty(Integer difficulty) {
+    markChanged(Detail.DIFFICULTY, this.difficulty, difficulty);
     this.difficulty = difficulty;
   }
 
@@ -68,9 +98,67 @@ public class Project {
   }
 
   public void setNotes(String notes) {
+    markChanged(Detail.NOTES, this.notes, notes);
     this.notes = notes;
   }
 
+  public Integer getVersion() {
+    return version;
+  }
+
+  public void setVersion(Integer version) {
+    this.version = version;
+  }
+
+  /**
+   * @return The details set to a new value since the project was read or last saved.
+   */
+  public Set<Detail> getChangedDetails() {
+    return Collections.unmodifiableSet(changedDetails);
+  }
+
+  /**
+   * Forgets the recorded changes. Called once the changes have been saved.
+   */
+  public void clearChangedDetails() {
+    changedDetails.clear();
+  }
+
+  /**
+   * Returns a copy of the project with no recorded changes. The copy has its own child lists, but
+   * the materials, steps and categories in them are shared with this project.
+   * 
+   * @return The copy
+   */
+  public Project copy() {
+    Project copy = new Project();
+    copy.projectId = projectId;
+    copy.projectName = projectName;
+    copy.estimatedHours = estimatedHours;
+    copy.actualHours = actualHours;
+    copy.difficulty = difficulty;
+    copy.notes = notes;
+    copy.version = version;
+    copy.materials.addAll(materials);
+    copy.steps.addAll(steps);
+    copy.categories.addAll(categories);
+    return copy;
+  }
+
+  /**
+   * Deserialized projects have no recorded changes, as the changes are not serialized.
+   */
+  private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+    in.defaultReadObject();
+    changedDetails = EnumSet.noneOf(Detail.class);
+  }
+
+  private void markChanged(Detail detail, Object oldValue, Object newValue) {
+    if(!Objects.equals(oldValue, newValue)) {
+      changedDetails.add(detail);
+    }
+  }
+
   public List<Material> getMaterials() {
     return materials;
   }
@@ -85,33 +173,8 @@ public class Project {
 
   @Override
   public String toString() {
-    String result = "";
-    
-    result += "\n   ID=" + projectId;
-    result += "\n   name=" + projectName;
-    result += "\n   estimatedHours=" + estimatedHours;
-    result += "\n   actualHours=" + actualHours;
-    result += "\n   difficulty=" + difficulty;
-    result += "\n   notes=" + notes;
-    
-    result += "\n   Materials:";
-    
-    for(Material material : materials) {
-      result += "\n      " + material;
-    }
-    
-    result += "\n   Steps:";
-    
-    for(Step step : steps) {
-      result += "\n      " + step;
-    }
-    
-    result += "\n   Categories:";
-    
-    for(Category category : categories) {
-      result += "\n      " + category;
-    }
-    
-    return result;
+    StringBuilder result = new StringBuilder(256);
+    ProjectRenderer.TEXT.render(this, result);
+    return result.toString();
   }
 }
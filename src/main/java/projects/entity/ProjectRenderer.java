@@ -0,0 +1,281 @@
+/**
+ *
+ */
+package projects.entity;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.util.Objects;
+
+/**
+ * Writes project graphs straight to an {@link Appendable} such as a Writer, PrintStream or
+ * StringBuilder. Nothing is built up in intermediate strings, so the cost is linear in the size of
+ * the project and its children.
+ *
+ * @author Promineo
+ *
+ */
+public enum ProjectRenderer {
+  /**
+   * The multi-line detail view produced by {@link Project#toString()}.
+   */
+  TEXT {
+    @Override
+    public void render(Project project, Appendable out) {
+      try {
+        out.append("\n   ID=");
+        appendNumber(project.getProjectId(), out);
+        out.append("\n   name=");
+        appendText(project.getProjectName(), out);
+        out.append("\n   estimatedHours=");
+        appendNumber(project.getEstimatedHours(), out);
+        out.append("\n   actualHours=");
+        appendNumber(project.getActualHours(), out);
+        out.append("\n   difficulty=");
+        appendNumber(project.getDifficulty(), out);
+        out.append("\n   notes=");
+        appendText(project.getNotes(), out);
+
+        out.append("\n   Materials:");
+
+        for(Material material : project.getMaterials()) {
+          out.append("\n      ID=");
+          appendNumber(material.getMaterialId(), out);
+          out.append(", materialName=");
+          appendText(material.getMaterialName(), out);
+          out.append(", numRequired=");
+          appendNumber(material.getNumRequired(), out);
+          out.append(", cost=");
+          appendNumber(material.getCost(), out);
+        }
+
+        out.append("\n   Steps:");
+
+        for(Step step : project.getSteps()) {
+          out.append("\n      ID=");
+          appendNumber(step.getStepId(), out);
+          out.append(", stepText=");
+          appendText(step.getStepText(), out);
+        }
+
+        out.append("\n   Categories:");
+
+        for(Category category : project.getCategories()) {
+          out.append("\n      ID=");
+          appendNumber(category.getCategoryId(), out);
+          out.append(", categoryName=");
+          appendText(category.getCategoryName(), out);
+        }
+      }
+      catch(IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+  },
+
+  /**
+   * A single-line JSON object with the project fields and arrays of materials, steps and
+   * categories.
+   */
+  JSON {
+    @Override
+    public void render(Project project, Appendable out) {
+      try {
+        out.append("{\"projectId\":");
+        appendJsonNumber(project.getProjectId(), out);
+        out.append(",\"projectName\":");
+        appendJsonString(project.getProjectName(), out);
+        out.append(",\"estimatedHours\":");
+        appendJsonNumber(project.getEstimatedHours(), out);
+        out.append(",\"actualHours\":");
+        appendJsonNumber(project.getActualHours(), out);
+        out.append(",\"difficulty\":");
+        appendJsonNumber(project.getDifficulty(), out);
+        out.append(",\"notes\":");
+        appendJsonString(project.getNotes(), out);
+
+        out.append(",\"materials\":[");
+        boolean first = true;
+
+        for(Material material : project.getMaterials()) {
+          out.append(first ? "{\"materialId\":" : ",{\"materialId\":");
+          appendJsonNumber(material.getMaterialId(), out);
+          out.append(",\"materialName\":");
+          appendJsonString(material.getMaterialName(), out);
+          out.append(",\"numRequired\":");
+          appendJsonNumber(material.getNumRequired(), out);
+          out.append(",\"cost\":");
+          appendJsonNumber(material.getCost(), out);
+          out.append('}');
+          first = false;
+        }
+
+        out.append("],\"steps\":[");
+        first = true;
+
+        for(Step step : project.getSteps()) {
+          out.append(first ? "{\"stepId\":" : ",{\"stepId\":");
+          appendJsonNumber(step.getStepId(), out);
+          out.append(",\"stepText\":");
+          appendJsonString(step.getStepText(), out);
+          out.append(",\"stepOrder\":");
+          appendJsonNumber(step.getStepOrder(), out);
+          out.append('}');
+          first = false;
+        }
+
+        out.append("],\"categories\":[");
+        first = true;
+
+        for(Category category : project.getCategories()) {
+          out.append(first ? "{\"categoryId\":" : ",{\"categoryId\":");
+          appendJsonNumber(category.getCategoryId(), out);
+          out.append(",\"categoryName\":");
+          appendJsonString(category.getCategoryName(), out);
+          out.append('}');
+          first = false;
+        }
+
+        out.append("]}");
+      }
+      catch(IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+  };
+
+  private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+  /**
+   * Writes the project graph in this format.
+   *
+   * @param project The project to write.
+   * @param out Where to write it.
+   * @throws UncheckedIOException Thrown if the Appendable fails.
+   */
+  public abstract void render(Project project, Appendable out);
+
+  /**
+   * Writes the one-line list entry for a project: a tab, the ID, a colon and the name.
+   *
+   * @param projectId The project ID.
+   * @param projectName The project name.
+   * @param out Where to write it.
+   */
+  public static void renderListEntry(Integer projectId, String projectName, Appendable out) {
+    try {
+      out.append('\t');
+      appendNumber(projectId, out);
+      out.append(": ");
+      appendText(projectName, out);
+    }
+    catch(IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private static void appendText(String value, Appendable out) throws IOException {
+    out.append(Objects.isNull(value) ? "null" : value);
+  }
+
+  private static void appendNumber(Integer value, Appendable out) throws IOException {
+    if(Objects.isNull(value)) {
+      out.append("null");
+    }
+    else {
+      appendInt(value, out);
+    }
+  }
+
+  private static void appendNumber(BigDecimal value, Appendable out) throws IOException {
+    /* BigDecimal caches its toString() value, so rendering the same project again is free. */
+    out.append(Objects.isNull(value) ? "null" : value.toString());
+  }
+
+  /**
+   * Writes the digits of the value one character at a time, without creating a String.
+   */
+  private static void appendInt(int value, Appendable out) throws IOException {
+    long remaining = value;
+
+    if(remaining < 0) {
+      out.append('-');
+      remaining = -remaining;
+    }
+
+    long divisor = 1;
+
+    while(divisor * 10 <= remaining) {
+      divisor *= 10;
+    }
+
+    for(; divisor > 0; divisor /= 10) {
+      out.append((char)('0' + remaining / divisor));
+      remaining %= divisor;
+    }
+  }
+
+  private static void appendJsonNumber(Integer value, Appendable out) throws IOException {
+    appendNumber(value, out);
+  }
+
+  private static void appendJsonNumber(BigDecimal value, Appendable out) throws IOException {
+    if(Objects.isNull(value)) {
+      out.append("null");
+    }
+    else if(value.scale() >= 0 && value.precision() - value.scale() - 1 >= -6) {
+      /* toString() only uses exponent notation outside this range, and its result is cached. */
+      out.append(value.toString());
+    }
+    else {
+      out.append(value.toPlainString());
+    }
+  }
+
+  private static void appendJsonString(String value, Appendable out) throws IOException {
+    if(Objects.isNull(value)) {
+      out.append("null");
+      return;
+    }
+
+    out.append('"');
+
+    /* Copy runs of characters that need no escaping in one call. */
+    int start = 0;
+
+    for(int i = 0; i < value.length(); i++) {
+      char ch = value.charAt(i);
+
+      if(ch == '"' || ch == '\\' || ch < 0x20) {
+        out.append(value, start, i);
+
+        switch(ch) {
+          case '"':
+            out.append("\\\"");
+            break;
+          case '\\':
+            out.append("\\\\");
+            break;
+          case '\n':
+            out.append("\\n");
+            break;
+          case '\r':
+            out.append("\\r");
+            break;
+          case '\t':
+            out.append("\\t");
+            break;
+          default:
+            out.append("\\u00").append(HEX[ch >> 4]).append(HEX[ch & 0xF]);
+            break;
+        }
+
+        start = i + 1;
+      }
+    }
+
+    out.append(value, start, value.length());
+    out.append('"');
+  }
+}
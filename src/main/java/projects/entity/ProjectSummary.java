@@ -0,0 +1,38 @@
+/**
+ * 
+ */
+package projects.entity;
+
+/**
+ * The ID and name of a project, for views that list projects without needing the rest of the row.
+ * Its fields are the only columns selected by the summary queries, so adding a field here adds the
+ * matching column to them.
+ * 
+ * @author Promineo
+ *
+ */
+public class ProjectSummary {
+  private Integer projectId;
+  private String projectName;
+
+  public Integer getProjectId() {
+    return projectId;
+  }
+
+  public void setProjectId(Integer projectId) {
+    this.projectId = projectId;
+  }
+
+  public String getProjectName() {
+    return projectName;
+  }
+
+  public void setProjectName(String projectName) {
+    this.projectName = projectName;
+  }
+
+  @Override
+  public String toString() {
+    return "ID=" + projectId + ", projectName=" + projectName;
+  }
+}
@@ -3,11 +3,15 @@
  */
 package projects.entity;
 
+import java.io.Serializable;
+
 /**
  * @author Promineo
  *
  */
-public class Step {
+public class Step implements Serializable {
+  private static final long serialVersionUID = 1L;
+
   private Integer stepId;
   private Integer projectId;
   private String stepText;
@@ -0,0 +1,23 @@
+package projects.exception;
+
+// Thrown when a project update is based on a version of the row that has since been changed by someone else.
+// The caller should re-read the project and apply its changes again:
+@SuppressWarnings("serial")
+public class StaleProjectException extends DbException{
+	private final Integer projectId;
+	private final Integer expectedVersion;
+
+	public StaleProjectException(Integer projectId, Integer expectedVersion) {
+		super("Project with ID=" + projectId + " was changed since version " + expectedVersion + " was read.");
+		this.projectId = projectId;
+		this.expectedVersion = expectedVersion;
+	}
+
+	public Integer getProjectId() {
+		return projectId;
+	}
+
+	public Integer getExpectedVersion() {
+		return expectedVersion;
+	}
+}
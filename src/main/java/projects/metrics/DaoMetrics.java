@@ -0,0 +1,18 @@
+package projects.metrics;
+
+// Receives one measurement per DAO operation. Implementations must be thread-safe and cheap, because record() is
+// called on every database call.
+public interface DaoMetrics {
+	// Metrics that are thrown away:
+	DaoMetrics NONE = (operation, latencyNanos, acquireNanos, rows, failed) -> {
+	};
+
+	// latencyNanos covers the whole operation, including acquireNanos spent waiting for a connection. rows is
+	// the number of rows mapped or written:
+	void record(DaoOperation operation, long latencyNanos, long acquireNanos, long rows, boolean failed);
+
+	// Start timing an operation. Closing the returned timer records it:
+	default OperationTimer start(DaoOperation operation) {
+		return new OperationTimer(this, operation);
+	}
+}
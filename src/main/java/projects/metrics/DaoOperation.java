@@ -0,0 +1,39 @@
+package projects.metrics;
+
+// The ProjectStore operations that are measured. The child fetches are recorded separately from the project fetch
+// that runs them.
+public enum DaoOperation {
+	INSERT("insert"),
+	ADD_MATERIALS("addMaterials"),
+	ADD_STEPS("addSteps"),
+	ADD_CATEGORIES("addCategories"),
+	ALLOCATE_STEP_ORDER("allocateStepOrder"),
+	FETCH_ALL("fetchAll"),
+	STREAM_ALL("streamAll"),
+	FETCH_PAGE("fetchPage"),
+	FETCH_SUMMARY_PAGE("fetchSummaryPage"),
+	FETCH_BY_ID("fetchById"),
+	FETCH_BY_IDS("fetchByIds"),
+	FETCH_MATERIALS("fetchMaterials"),
+	FETCH_STEPS("fetchSteps"),
+	FETCH_CATEGORIES("fetchCategories"),
+	MODIFY("modify"),
+	DELETE("delete"),
+	APPLY_WRITES("applyWrites"),
+	LOAD_SNAPSHOT("loadSnapshot"),
+	FETCH_CATALOG_MARKER("fetchCatalogMarker"),
+	FETCH_CHANGES("fetchChanges"),
+	FETCH_CHANGE_CURSOR("fetchChangeCursor"),
+	COMPACT("compact");
+
+	private final String metricName;
+
+	DaoOperation(String metricName) {
+		this.metricName = metricName;
+	}
+
+	// Name used for the operation in JMX object names and reports:
+	public String getMetricName() {
+		return metricName;
+	}
+}
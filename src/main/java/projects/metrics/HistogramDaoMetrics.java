@@ -0,0 +1,76 @@
+package projects.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.EnumMap;
+import java.util.Map;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import projects.exception.DbException;
+
+// The default DaoMetrics: per-operation counters and latency histograms, published as one MBean per operation
+// under projects:type=ProjectDAO,operation=<name>.
+public class HistogramDaoMetrics implements DaoMetrics {
+	private static final String OBJECT_NAME = "projects:type=ProjectDAO,operation=";
+	private static volatile HistogramDaoMetrics defaultMetrics;
+
+	private final Map<DaoOperation, OperationStats> stats = new EnumMap<>(DaoOperation.class);
+
+	public HistogramDaoMetrics() {
+		for(DaoOperation operation : DaoOperation.values()) {
+			stats.put(operation, new OperationStats());
+		}
+	}
+
+	// The shared instance used by ProjectDAO, registered with the platform MBean server on first use:
+	public static HistogramDaoMetrics getDefault() {
+		HistogramDaoMetrics current = defaultMetrics;
+		if(current != null) {
+			return current;
+		}
+		synchronized(HistogramDaoMetrics.class) {
+			if(defaultMetrics == null) {
+				HistogramDaoMetrics metrics = new HistogramDaoMetrics();
+				metrics.registerMBeans();
+				defaultMetrics = metrics;
+			}
+			return defaultMetrics;
+		}
+	}
+
+	@Override
+	public void record(DaoOperation operation, long latencyNanos, long acquireNanos, long rows, boolean failed) {
+		stats.get(operation).record(latencyNanos, acquireNanos, rows, failed);
+	}
+
+	public OperationStats getStats(DaoOperation operation) {
+		return stats.get(operation);
+	}
+
+	public void registerMBeans() {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		try {
+			for(Map.Entry<DaoOperation, OperationStats> entry : stats.entrySet()) {
+				ObjectName name = new ObjectName(OBJECT_NAME + entry.getKey().getMetricName());
+				if(!server.isRegistered(name)) {
+					server.registerMBean(entry.getValue(), name);
+				}
+			}
+		}catch(JMException e) {
+			throw new DbException("Unable to register DAO metrics MBeans", e);
+		}
+	}
+
+	// One line per operation that has been called:
+	public String report() {
+		StringBuilder report = new StringBuilder();
+		for(Map.Entry<DaoOperation, OperationStats> entry : stats.entrySet()) {
+			if(entry.getValue().getCalls() > 0) {
+				report.append(entry.getKey().getMetricName()).append(": ").append(entry.getValue()).append('\n');
+			}
+		}
+		return report.toString();
+	}
+}
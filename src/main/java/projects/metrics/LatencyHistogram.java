@@ -0,0 +1,68 @@
+package projects.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// A lock-free log-linear histogram of nanosecond latencies. Every power of two is split into 16 buckets, so a
+// reported percentile is within about 6% of the true value. Recording is a couple of shifts and one atomic
+// increment, which keeps it cheap enough to leave on.
+public class LatencyHistogram {
+	private static final int SUB_BUCKET_BITS = 4;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	private static final int BUCKETS = (64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+	private final AtomicLong count = new AtomicLong();
+	private final AtomicLong max = new AtomicLong();
+
+	public void record(long nanos) {
+		long value = Math.max(0, nanos);
+		counts.incrementAndGet(bucketIndex(value));
+		count.incrementAndGet();
+		max.accumulateAndGet(value, Math::max);
+	}
+
+	public long getCount() {
+		return count.get();
+	}
+
+	public long getMaxNanos() {
+		return max.get();
+	}
+
+	// The latency below which the given fraction (0.0 to 1.0) of recorded values fall:
+	public long percentileNanos(double fraction) {
+		long total = count.get();
+		if(total == 0) {
+			return 0;
+		}
+		long target = Math.max(1, (long)Math.ceil(total * fraction));
+		long seen = 0;
+		for(int i = 0; i < BUCKETS; i++) {
+			seen += counts.get(i);
+			if(seen >= target) {
+				return Math.min(bucketUpperBound(i), max.get());
+			}
+		}
+		return max.get();
+	}
+
+	private static int bucketIndex(long value) {
+		if(value < SUB_BUCKETS) {
+			return (int)value;
+		}
+		// The position of the highest bit picks the power of two; the next bits pick the sub-bucket:
+		int exponent = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS + 1;
+		int subBucket = (int)(value >>> (exponent - 1)) & (SUB_BUCKETS - 1);
+		return exponent * SUB_BUCKETS + subBucket;
+	}
+
+	private static long bucketUpperBound(int index) {
+		int exponent = index / SUB_BUCKETS;
+		int subBucket = index % SUB_BUCKETS;
+		if(exponent == 0) {
+			return subBucket;
+		}
+		return ((long)(SUB_BUCKETS + subBucket + 1) << (exponent - 1)) - 1;
+	}
+}
@@ -0,0 +1,80 @@
+package projects.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+// Running totals and a latency histogram for one DAO operation.
+public class OperationStats implements OperationStatsMBean {
+	private static final double NANOS_PER_MILLI = 1_000_000.0;
+
+	private final LongAdder calls = new LongAdder();
+	private final LongAdder errors = new LongAdder();
+	private final LongAdder rows = new LongAdder();
+	private final LongAdder acquireNanos = new LongAdder();
+	private final LongAdder latencyNanos = new LongAdder();
+	private final LatencyHistogram latency = new LatencyHistogram();
+
+	void record(long latencyNanos, long acquireNanos, long rows, boolean failed) {
+		calls.increment();
+		if(failed) {
+			errors.increment();
+		}
+		this.rows.add(rows);
+		this.acquireNanos.add(acquireNanos);
+		this.latencyNanos.add(latencyNanos);
+		latency.record(latencyNanos);
+	}
+
+	@Override
+	public long getCalls() {
+		return calls.sum();
+	}
+
+	@Override
+	public long getErrors() {
+		return errors.sum();
+	}
+
+	@Override
+	public long getRows() {
+		return rows.sum();
+	}
+
+	@Override
+	public double getMeanAcquireMillis() {
+		long count = calls.sum();
+		return count == 0 ? 0 : acquireNanos.sum() / NANOS_PER_MILLI / count;
+	}
+
+	@Override
+	public double getMeanLatencyMillis() {
+		long count = calls.sum();
+		return count == 0 ? 0 : latencyNanos.sum() / NANOS_PER_MILLI / count;
+	}
+
+	@Override
+	public double getP50Millis() {
+		return latency.percentileNanos(0.50) / NANOS_PER_MILLI;
+	}
+
+	@Override
+	public double getP95Millis() {
+		return latency.percentileNanos(0.95) / NANOS_PER_MILLI;
+	}
+
+	@Override
+	public double getP99Millis() {
+		return latency.percentileNanos(0.99) / NANOS_PER_MILLI;
+	}
+
+	@Override
+	public double getMaxMillis() {
+		return latency.getMaxNanos() / NANOS_PER_MILLI;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("calls=%d, errors=%d, rows=%d, acquire=%.3f ms, p50=%.3f ms, p95=%.3f ms, "
+				+ "p99=%.3f ms, max=%.3f ms", getCalls(), getErrors(), getRows(), getMeanAcquireMillis(),
+				getP50Millis(), getP95Millis(), getP99Millis(), getMaxMillis());
+	}
+}
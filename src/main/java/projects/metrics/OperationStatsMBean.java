@@ -0,0 +1,22 @@
+package projects.metrics;
+
+// JMX view of one DAO operation. Times are in milliseconds.
+public interface OperationStatsMBean {
+	long getCalls();
+
+	long getErrors();
+
+	long getRows();
+
+	double getMeanAcquireMillis();
+
+	double getMeanLatencyMillis();
+
+	double getP50Millis();
+
+	double getP95Millis();
+
+	double getP99Millis();
+
+	double getMaxMillis();
+}
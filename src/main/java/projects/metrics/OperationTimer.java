@@ -0,0 +1,49 @@
+package projects.metrics;
+
+import java.sql.Connection;
+
+// Times one DAO operation. It is meant to be the first resource of the operation's try-with-resources block:
+//
+//	try(OperationTimer timer = metrics.start(DaoOperation.DELETE);
+//			Connection conn = timer.connected(DbConnection.getConnection())){
+//		...
+//		timer.succeeded();
+//	}
+//
+// An operation that never calls succeeded() is recorded as an error.
+public class OperationTimer implements AutoCloseable {
+	private final DaoMetrics metrics;
+	private final DaoOperation operation;
+	private final long startNanos = System.nanoTime();
+	private long acquireNanos;
+	private long rows;
+	private boolean succeeded;
+	private boolean closed;
+
+	OperationTimer(DaoMetrics metrics, DaoOperation operation) {
+		this.metrics = metrics;
+		this.operation = operation;
+	}
+
+	// Note the time taken to get the connection and pass it through:
+	public Connection connected(Connection conn) {
+		acquireNanos = System.nanoTime() - startNanos;
+		return conn;
+	}
+
+	public void addRows(long count) {
+		rows += count;
+	}
+
+	public void succeeded() {
+		succeeded = true;
+	}
+
+	@Override
+	public void close() {
+		if(!closed) {
+			closed = true;
+			metrics.record(operation, System.nanoTime() - startNanos, acquireNanos, rows, !succeeded);
+		}
+	}
+}
@@ -0,0 +1,318 @@
+package projects.search;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+import projects.entity.Material;
+import projects.entity.Project;
+import projects.entity.Step;
+
+// An in-memory inverted index over project names, notes, step text and material names. Terms are kept in a
+// sorted map, so a prefix query is a range scan, and each term maps to the projects containing it with a weight
+// that counts name matches highest. Queries take the read lock and updates the write lock, so searches run in
+// parallel and never see a half-applied update.
+public class ProjectSearchIndex {
+	// Weight of one occurrence of a term in each field:
+	private static final int NAME_WEIGHT = 5;
+	private static final int MATERIAL_WEIGHT = 2;
+	private static final int NOTES_WEIGHT = 1;
+	private static final int STEP_WEIGHT = 1;
+
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+	// Term -> project ID -> weight:
+	private TreeMap<String, Map<Integer, Integer>> postings = new TreeMap<>();
+	// Project ID -> the terms it was indexed under, so that an update can remove the old ones:
+	private Map<Integer, Document> documents = new HashMap<>();
+	private boolean built;
+	// IDs changed while rebuild() is reading, or null when no rebuild is running:
+	private Set<Integer> changedDuringRebuild;
+	// IDs whose details were modified during the first rebuild, before there was a document to update:
+	private Set<Integer> reloadAfterRebuild;
+
+	// Whether the index has been filled by rebuild(). Until then, incremental updates are ignored:
+	public boolean isBuilt() {
+		lock.readLock().lock();
+		try {
+			return built;
+		}finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	// Replace the contents of the index with the given projects, which must include their materials and steps.
+	// The new index is built without holding the lock, so searches keep being answered from the old contents.
+	// Updates that arrive during the rebuild are applied to the old contents and carried over when the new
+	// contents are swapped in, so none are lost. Projects whose details were modified before the first build had
+	// anything to update are read again with reload:
+	public void rebuild(Stream<Project> projects, Function<Collection<Integer>, List<Project>> reload) {
+		lock.writeLock().lock();
+		try {
+			changedDuringRebuild = new HashSet<>();
+			reloadAfterRebuild = new HashSet<>();
+		}finally {
+			lock.writeLock().unlock();
+		}
+		TreeMap<String, Map<Integer, Integer>> newPostings = new TreeMap<>();
+		Map<Integer, Document> newDocuments = new HashMap<>();
+		try {
+			projects.forEach(project -> {
+				Document document = Document.of(project);
+				newDocuments.put(project.getProjectId(), document);
+				addPostings(newPostings, project.getProjectId(), document);
+			});
+		}catch(RuntimeException e) {
+			// A failed rebuild leaves the index as it was:
+			lock.writeLock().lock();
+			try {
+				changedDuringRebuild = null;
+				reloadAfterRebuild = null;
+			}finally {
+				lock.writeLock().unlock();
+			}
+			throw e;
+		}
+		Set<Integer> reloadIds;
+		lock.writeLock().lock();
+		try {
+			for(Integer projectId : changedDuringRebuild) {
+				Document stale = newDocuments.remove(projectId);
+				if(Objects.nonNull(stale)) {
+					removePostings(newPostings, projectId, stale);
+				}
+				Document current = documents.get(projectId);
+				if(Objects.nonNull(current)) {
+					newDocuments.put(projectId, current);
+					addPostings(newPostings, projectId, current);
+				}
+			}
+			postings = newPostings;
+			documents = newDocuments;
+			reloadIds = reloadAfterRebuild;
+			changedDuringRebuild = null;
+			reloadAfterRebuild = null;
+			built = true;
+		}finally {
+			lock.writeLock().unlock();
+		}
+		if(!reloadIds.isEmpty()) {
+			reload.apply(reloadIds).forEach(this::index);
+		}
+	}
+
+	// Index a new project, or re-index all fields of an existing one:
+	public void index(Project project) {
+		update(project.getProjectId(), Document.of(project));
+	}
+
+	// Re-index the name and notes of a project whose details were modified, keeping its step and material
+	// terms. Only the fields flagged as changed are read from the project:
+	public void updateDetails(Project project, boolean nameChanged, boolean notesChanged) {
+		lock.writeLock().lock();
+		try {
+			Document existing = documents.get(project.getProjectId());
+			if(Objects.isNull(existing)) {
+				if(Objects.nonNull(reloadAfterRebuild)) {
+					reloadAfterRebuild.add(project.getProjectId());
+				}
+				return;
+			}
+			update(project.getProjectId(), new Document(
+					nameChanged ? project.getProjectName() : existing.name(),
+					nameChanged ? terms(project.getProjectName(), NAME_WEIGHT, new HashMap<>())
+							: existing.nameTerms(),
+					notesChanged ? terms(project.getNotes(), NOTES_WEIGHT, new HashMap<>())
+							: existing.notesTerms(),
+					existing.childTerms()));
+		}finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	public void remove(Integer projectId) {
+		update(projectId, null);
+	}
+
+	// Projects containing every term of the query, best match first:
+	public List<SearchHit> search(String query, int limit) {
+		return search(query, limit, false);
+	}
+
+	// Projects with a term starting with each word of the query, best match first. "gard tool" finds a project
+	// named "Garden tools":
+	public List<SearchHit> searchPrefix(String query, int limit) {
+		return search(query, limit, true);
+	}
+
+	public int getProjectCount() {
+		lock.readLock().lock();
+		try {
+			return documents.size();
+		}finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	public int getTermCount() {
+		lock.readLock().lock();
+		try {
+			return postings.size();
+		}finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	private List<SearchHit> search(String query, int limit, boolean prefix) {
+		Set<String> queryTerms = terms(query, 1, new HashMap<>()).keySet();
+		List<SearchHit> hits = new ArrayList<>();
+		if(queryTerms.isEmpty() || limit < 1) {
+			return hits;
+		}
+		lock.readLock().lock();
+		try {
+			// Score every project that matches all query terms. Rarer terms count for more:
+			Map<Integer, Double> scores = null;
+			for(String queryTerm : queryTerms) {
+				Map<Integer, Double> termScores = new HashMap<>();
+				Collection<Map.Entry<String, Map<Integer, Integer>>> matches = prefix
+						? postings.subMap(queryTerm, queryTerm + Character.MAX_VALUE).entrySet()
+						: singleTerm(queryTerm);
+				for(Map.Entry<String, Map<Integer, Integer>> match : matches) {
+					double idf = Math.log(1 + (double)documents.size() / match.getValue().size());
+					match.getValue().forEach(
+							(projectId, weight) -> termScores.merge(projectId, weight * idf, Double::sum));
+				}
+				if(Objects.isNull(scores)) {
+					scores = termScores;
+				}else {
+					scores.keySet().retainAll(termScores.keySet());
+					for(Map.Entry<Integer, Double> score : scores.entrySet()) {
+						score.setValue(score.getValue() + termScores.get(score.getKey()));
+					}
+				}
+				if(scores.isEmpty()) {
+					return hits;
+				}
+			}
+			for(Map.Entry<Integer, Double> score : scores.entrySet()) {
+				hits.add(new SearchHit(score.getKey(), documents.get(score.getKey()).name(), score.getValue()));
+			}
+		}finally {
+			lock.readLock().unlock();
+		}
+		hits.sort(null);
+		return hits.size() > limit ? new ArrayList<>(hits.subList(0, limit)) : hits;
+	}
+
+	private Collection<Map.Entry<String, Map<Integer, Integer>>> singleTerm(String term) {
+		Map<Integer, Integer> projects = postings.get(term);
+		return Objects.isNull(projects) ? List.of() : List.of(Map.entry(term, projects));
+	}
+
+	// Replace the document of a project, or remove it when document is null:
+	private void update(Integer projectId, Document document) {
+		lock.writeLock().lock();
+		try {
+			if(!built && Objects.isNull(changedDuringRebuild)) {
+				// Nothing is indexed yet. The first rebuild will read the current state:
+				return;
+			}
+			Document old = Objects.isNull(document) ? documents.remove(projectId) : documents.put(projectId, document);
+			if(Objects.nonNull(old)) {
+				removePostings(postings, projectId, old);
+			}
+			if(Objects.nonNull(document)) {
+				addPostings(postings, projectId, document);
+			}
+			if(Objects.nonNull(changedDuringRebuild)) {
+				changedDuringRebuild.add(projectId);
+			}
+		}finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	private static void addPostings(TreeMap<String, Map<Integer, Integer>> postings, Integer projectId,
+			Document document) {
+		document.forEachTerm((term, weight) -> postings.computeIfAbsent(term, t -> new HashMap<>())
+				.merge(projectId, weight, Integer::sum));
+	}
+
+	private static void removePostings(TreeMap<String, Map<Integer, Integer>> postings, Integer projectId,
+			Document document) {
+		document.forEachTerm((term, weight) -> {
+			Map<Integer, Integer> projects = postings.get(term);
+			if(Objects.nonNull(projects)) {
+				projects.remove(projectId);
+				if(projects.isEmpty()) {
+					postings.remove(term);
+				}
+			}
+		});
+	}
+
+	// Add the lower-case words of the text to the term weights. Words are runs of letters and digits:
+	private static Map<String, Integer> terms(String text, int weight, Map<String, Integer> terms) {
+		if(Objects.isNull(text)) {
+			return terms;
+		}
+		int start = -1;
+		for(int i = 0; i <= text.length(); i++) {
+			boolean wordChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+			if(wordChar && start < 0) {
+				start = i;
+			}else if(!wordChar && start >= 0) {
+				terms.merge(text.substring(start, i).toLowerCase(Locale.ROOT), weight, Integer::sum);
+				start = -1;
+			}
+		}
+		return terms;
+	}
+
+	// The indexed terms of one project. Steps and materials are kept apart from the details, so that modifying the
+	// details does not need them:
+	private record Document(String name, Map<String, Integer> nameTerms, Map<String, Integer> notesTerms,
+			Map<String, Integer> childTerms) {
+		private static Document of(Project project) {
+			Map<String, Integer> childTerms = new HashMap<>();
+			for(Step step : project.getSteps()) {
+				terms(step.getStepText(), STEP_WEIGHT, childTerms);
+			}
+			for(Material material : project.getMaterials()) {
+				terms(material.getMaterialName(), MATERIAL_WEIGHT, childTerms);
+			}
+			return new Document(project.getProjectName(), terms(project.getProjectName(), NAME_WEIGHT, new HashMap<>()),
+					terms(project.getNotes(), NOTES_WEIGHT, new HashMap<>()), childTerms);
+		}
+
+		private void forEachTerm(BiConsumer<String, Integer> action) {
+			nameTerms.forEach(action);
+			notesTerms.forEach(action);
+			childTerms.forEach(action);
+		}
+	}
+
+	// A matching project. Hits sort by descending score, then by name:
+	public record SearchHit(Integer projectId, String projectName, double score) implements Comparable<SearchHit> {
+		@Override
+		public int compareTo(SearchHit other) {
+			int byScore = Double.compare(other.score, score);
+			if(byScore != 0) {
+				return byScore;
+			}
+			return Objects.toString(projectName, "").compareTo(Objects.toString(other.projectName, ""));
+		}
+	}
+}
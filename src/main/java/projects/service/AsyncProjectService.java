@@ -0,0 +1,112 @@
+package projects.service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.function.Supplier;
+
+import projects.dao.DbConnection;
+import projects.entity.Project;
+import projects.exception.DbException;
+
+// Non-blocking facade over ProjectService. Every call runs on its own virtual thread, and a semaphore sized to
+// the connection budget limits how many of them touch the database at once, so any number of callers can wait
+// cheaply without exhausting MySQL connections.
+public class AsyncProjectService implements AutoCloseable {
+	private final ProjectService projectService;
+	private final ExecutorService executor;
+	private final Semaphore permits;
+	private final int maxConcurrency;
+
+	public AsyncProjectService(ProjectService projectService) {
+		this(projectService, DbConnection.getMaxPoolSize());
+	}
+
+	public AsyncProjectService(ProjectService projectService, int maxConcurrency) {
+		if(maxConcurrency < 1) {
+			throw new IllegalArgumentException("Concurrency must be positive: " + maxConcurrency);
+		}
+		this.projectService = projectService;
+		this.maxConcurrency = maxConcurrency;
+		this.permits = new Semaphore(maxConcurrency, true);
+		this.executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("project-service-", 0).factory());
+	}
+
+	public CompletableFuture<Project> addProject(Project project) {
+		return submit(() -> projectService.addProject(project));
+	}
+
+	public CompletableFuture<List<Project>> fetchAllProjects() {
+		return submit(projectService::fetchAllProjects);
+	}
+
+	public CompletableFuture<Project> fetchProjectById(Integer projectId) {
+		return submit(() -> projectService.fetchProjectById(projectId));
+	}
+
+	// Split the IDs into one slice per available connection and fetch the slices in parallel. The result keeps
+	// the order of the IDs and skips IDs that do not exist:
+	public CompletableFuture<List<Project>> fetchProjectsByIds(Collection<Integer> projectIds) {
+		List<Integer> ids = new ArrayList<>(new LinkedHashSet<>(projectIds));
+		if(ids.isEmpty()) {
+			return CompletableFuture.completedFuture(new ArrayList<>());
+		}
+		int sliceSize = (ids.size() + maxConcurrency - 1) / maxConcurrency;
+		List<CompletableFuture<List<Project>>> slices = new ArrayList<>();
+		for(int from = 0; from < ids.size(); from += sliceSize) {
+			List<Integer> slice = ids.subList(from, Math.min(ids.size(), from + sliceSize));
+			slices.add(submit(() -> projectService.fetchProjectsByIds(slice)));
+		}
+		return CompletableFuture.allOf(slices.toArray(new CompletableFuture<?>[0])).thenApply(done -> {
+			List<Project> projects = new ArrayList<>(ids.size());
+			for(CompletableFuture<List<Project>> slice : slices) {
+				projects.addAll(slice.join());
+			}
+			return projects;
+		});
+	}
+
+	public CompletableFuture<Project> modifyProjectDetails(Project project) {
+		return submit(() -> projectService.modifyProjectDetails(project));
+	}
+
+	public CompletableFuture<Void> deleteProject(Integer projectId) {
+		return submit(() -> {
+			projectService.deleteProject(projectId);
+			return null;
+		});
+	}
+
+	// Number of calls currently waiting for a database slot:
+	public int getQueueLength() {
+		return permits.getQueueLength();
+	}
+
+	// Stop accepting work and wait for running calls to finish:
+	@Override
+	public void close() {
+		executor.close();
+	}
+
+	private <T> CompletableFuture<T> submit(Supplier<T> work) {
+		return CompletableFuture.supplyAsync(() -> {
+			try {
+				permits.acquire();
+			}catch(InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new CompletionException(new DbException("Interrupted while waiting for a database slot", e));
+			}
+			try {
+				return work.get();
+			}finally {
+				permits.release();
+			}
+		}, executor);
+	}
+}
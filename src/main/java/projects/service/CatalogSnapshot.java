@@ -0,0 +1,150 @@
+package projects.service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.zip.CRC32C;
+
+import projects.dao.CatalogMarker;
+import projects.entity.ProjectSummary;
+
+// The project list (IDs and names in list order) with the marker of the table it was read from, in a compact binary
+// form that is memory-mapped when loaded from disk. Only an index of entry positions is built on load; names are
+// decoded as pages are read.
+//
+// The file is a header (magic number, format version, marker and entry count), the entries (project ID, name
+// length and UTF-8 name each), and a CRC32C of everything before it.
+public class CatalogSnapshot {
+	private static final int MAGIC = 0x504A4354;
+	private static final int FORMAT_VERSION = 1;
+	private static final int HEADER_SIZE = 32;
+	private static final int CRC_SIZE = 4;
+
+	private final ByteBuffer data;
+	private final CatalogMarker marker;
+	// Offset of each entry, in list order:
+	private final int[] offsets;
+	// Position in the list of each project:
+	private final Map<Integer, Integer> positions;
+
+	private CatalogSnapshot(ByteBuffer data) throws IOException {
+		this.data = data;
+		if(data.limit() < HEADER_SIZE + CRC_SIZE || data.getInt(0) != MAGIC || data.getInt(4) != FORMAT_VERSION) {
+			throw new IOException("Not a project catalog of format version " + FORMAT_VERSION);
+		}
+		CRC32C crc = new CRC32C();
+		crc.update(data.slice(0, data.limit() - CRC_SIZE));
+		if((int)crc.getValue() != data.getInt(data.limit() - CRC_SIZE)) {
+			throw new IOException("The project catalog is damaged");
+		}
+		marker = new CatalogMarker(data.getLong(8), data.getInt(16), data.getLong(20));
+		int count = data.getInt(28);
+		offsets = new int[count];
+		positions = new HashMap<>(count * 4 / 3 + 1);
+		int offset = HEADER_SIZE;
+		for(int i = 0; i < count; i++) {
+			offsets[i] = offset;
+			positions.put(data.getInt(offset), i);
+			offset += 8 + data.getInt(offset + 4);
+		}
+	}
+
+	// The catalog saved in the file, or null if there is none:
+	public static CatalogSnapshot load(Path file) throws IOException {
+		try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)){
+			// The mapping stays valid after the channel is closed:
+			return new CatalogSnapshot(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+		}catch(NoSuchFileException e) {
+			return null;
+		}
+	}
+
+	// A catalog of the projects, which must be in list order, read from a table with the given marker:
+	public static CatalogSnapshot of(CatalogMarker marker, List<ProjectSummary> projects) {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(HEADER_SIZE + projects.size() * 32);
+		try(DataOutputStream out = new DataOutputStream(bytes)){
+			out.writeInt(MAGIC);
+			out.writeInt(FORMAT_VERSION);
+			out.writeLong(marker.projectCount());
+			out.writeInt(marker.maxProjectId());
+			out.writeLong(marker.versionSum());
+			out.writeInt(projects.size());
+			for(ProjectSummary project : projects) {
+				byte[] name = project.getProjectName().getBytes(StandardCharsets.UTF_8);
+				out.writeInt(project.getProjectId());
+				out.writeInt(name.length);
+				out.write(name);
+			}
+			CRC32C crc = new CRC32C();
+			crc.update(bytes.toByteArray());
+			out.writeInt((int)crc.getValue());
+			return new CatalogSnapshot(ByteBuffer.wrap(bytes.toByteArray()));
+		}catch(IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	// Write the catalog to a new file that then replaces the old one, so a crash leaves one or the other:
+	public void save(Path file) throws IOException {
+		Path saving = file.resolveSibling(file.getFileName() + ".saving");
+		try(FileChannel channel = FileChannel.open(saving, StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)){
+			ByteBuffer contents = data.duplicate().clear();
+			while(contents.hasRemaining()) {
+				channel.write(contents);
+			}
+			channel.force(true);
+		}
+		Files.move(saving, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	public CatalogMarker getMarker() {
+		return marker;
+	}
+
+	public int size() {
+		return offsets.length;
+	}
+
+	// The page after the given project, as ProjectStore.fetchProjectSummariesPage() returns it, or null if that
+	// project is not in the catalog:
+	public List<ProjectSummary> page(String afterName, Integer afterId, int limit) {
+		int from = 0;
+		if(Objects.nonNull(afterName)) {
+			Integer position = Objects.isNull(afterId) ? null : positions.get(afterId);
+			if(Objects.isNull(position) || !afterName.equals(nameAt(offsets[position]))) {
+				return null;
+			}
+			from = position + 1;
+		}
+		int to = Math.min(offsets.length, from + Math.max(limit, 0));
+		List<ProjectSummary> page = new ArrayList<>(to - from);
+		for(int i = from; i < to; i++) {
+			ProjectSummary summary = new ProjectSummary();
+			summary.setProjectId(data.getInt(offsets[i]));
+			summary.setProjectName(nameAt(offsets[i]));
+			page.add(summary);
+		}
+		return page;
+	}
+
+	private String nameAt(int offset) {
+		byte[] name = new byte[data.getInt(offset + 4)];
+		data.get(offset + 8, name);
+		return new String(name, StandardCharsets.UTF_8);
+	}
+}
@@ -0,0 +1,273 @@
+package projects.service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import projects.entity.Project;
+
+// A size-bounded, least-recently-used cache of full project graphs with a time-to-live. Cached projects are shared
+// between callers, so they must be treated as read-only. Concurrent misses for the same project share one load.
+public class ProjectCache {
+	private final int maxEntries;
+	private final long ttlNanos;
+	// Access-ordered, so the first entry is always the least recently used one:
+	private final LinkedHashMap<Integer, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+	// Loads in progress by project ID. Invalidating a project marks its load stale and removes it, so the load's
+	// result, which may have been read before the change was committed, is not cached, and later misses start a
+	// new load. Loads of other projects are not affected:
+	private final Map<Integer, Load> loading = new HashMap<>();
+	// Guards entries, loading and Load.stale:
+	private final ReentrantLock lock = new ReentrantLock();
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder sharedLoads = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+	private final LongAdder expirations = new LongAdder();
+	private final LongAdder invalidations = new LongAdder();
+
+	public ProjectCache(int maxEntries, long ttlMillis) {
+		if(maxEntries < 1 || ttlMillis < 1) {
+			throw new IllegalArgumentException("Invalid cache settings: maxEntries=" + maxEntries
+					+ ", ttlMillis=" + ttlMillis);
+		}
+		this.maxEntries = maxEntries;
+		this.ttlNanos = ttlMillis * 1_000_000;
+	}
+
+	// Return the cached project, or load it with the loader and cache the result if it is not cached. If the
+	// project is already being loaded, wait for that load instead of starting another:
+	public Project get(Integer projectId, Supplier<Project> loader) {
+		Load load;
+		boolean shared;
+		lock.lock();
+		try {
+			Project project = lookup(projectId);
+			if(Objects.nonNull(project)) {
+				return project;
+			}
+			load = loading.get(projectId);
+			shared = Objects.nonNull(load);
+			if(shared) {
+				sharedLoads.increment();
+			}else {
+				load = new Load();
+				loading.put(projectId, load);
+			}
+		}finally {
+			lock.unlock();
+		}
+		if(shared) {
+			return load.await();
+		}
+		Project project;
+		try {
+			project = loader.get();
+		}catch(RuntimeException e) {
+			abandon(Map.of(projectId, load), e);
+			throw e;
+		}
+		finish(Map.of(projectId, load), Objects.isNull(project) ? Map.of() : Map.of(projectId, project));
+		return project;
+	}
+
+	// Return the cached projects, and load the rest with one call to the loader, which is given the IDs to load
+	// and may leave out those that do not exist. Projects another caller is already loading are waited for instead.
+	// Missing projects are skipped, and the rest are returned once each, in the order of their IDs:
+	public List<Project> getAll(Collection<Integer> projectIds, Function<List<Integer>, List<Project>> loader) {
+		Map<Integer, Project> found = new HashMap<>();
+		Map<Integer, Load> owned = new LinkedHashMap<>();
+		Map<Integer, Load> shared = new LinkedHashMap<>();
+		Set<Integer> ids = new LinkedHashSet<>(projectIds);
+		lock.lock();
+		try {
+			for(Integer projectId : ids) {
+				Project project = lookup(projectId);
+				if(Objects.nonNull(project)) {
+					found.put(projectId, project);
+					continue;
+				}
+				Load load = loading.get(projectId);
+				if(Objects.nonNull(load)) {
+					sharedLoads.increment();
+					shared.put(projectId, load);
+				}else {
+					load = new Load();
+					loading.put(projectId, load);
+					owned.put(projectId, load);
+				}
+			}
+		}finally {
+			lock.unlock();
+		}
+		if(!owned.isEmpty()) {
+			Map<Integer, Project> loaded = new HashMap<>();
+			try {
+				for(Project project : loader.apply(new ArrayList<>(owned.keySet()))) {
+					loaded.put(project.getProjectId(), project);
+				}
+			}catch(RuntimeException e) {
+				abandon(owned, e);
+				throw e;
+			}
+			finish(owned, loaded);
+			found.putAll(loaded);
+		}
+		shared.forEach((projectId, load) -> {
+			Project project = load.await();
+			if(Objects.nonNull(project)) {
+				found.put(projectId, project);
+			}
+		});
+		List<Project> projects = new ArrayList<>(found.size());
+		for(Integer projectId : ids) {
+			Project project = found.get(projectId);
+			if(Objects.nonNull(project)) {
+				projects.add(project);
+			}
+		}
+		return projects;
+	}
+
+	// Return the cached project, or null on a miss:
+	public Project getIfPresent(Integer projectId) {
+		lock.lock();
+		try {
+			return lookup(projectId);
+		}finally {
+			lock.unlock();
+		}
+	}
+
+	public void invalidate(Integer projectId) {
+		lock.lock();
+		try {
+			entries.remove(projectId);
+			Load load = loading.remove(projectId);
+			if(Objects.nonNull(load)) {
+				load.stale = true;
+			}
+			invalidations.increment();
+		}finally {
+			lock.unlock();
+		}
+	}
+
+	public void invalidateAll() {
+		lock.lock();
+		try {
+			entries.clear();
+			for(Load load : loading.values()) {
+				load.stale = true;
+			}
+			loading.clear();
+			invalidations.increment();
+		}finally {
+			lock.unlock();
+		}
+	}
+
+	public CacheStats getStats() {
+		int size;
+		lock.lock();
+		try {
+			size = entries.size();
+		}finally {
+			lock.unlock();
+		}
+		return new CacheStats(size, maxEntries, hits.sum(), misses.sum(), sharedLoads.sum(), evictions.sum(),
+				expirations.sum(), invalidations.sum());
+	}
+
+	// The cached project, or null on a miss. Called with the lock held:
+	private Project lookup(Integer projectId) {
+		Entry entry = entries.get(projectId);
+		if(Objects.isNull(entry)) {
+			misses.increment();
+			return null;
+		}
+		if(System.nanoTime() - entry.loadedAtNanos > ttlNanos) {
+			entries.remove(projectId);
+			expirations.increment();
+			misses.increment();
+			return null;
+		}
+		hits.increment();
+		return entry.project;
+	}
+
+	// Cache the results of the loads that were not invalidated while they ran, then hand them to the callers
+	// waiting for them. A project missing from the results does not exist:
+	private void finish(Map<Integer, Load> loads, Map<Integer, Project> results) {
+		lock.lock();
+		try {
+			long now = System.nanoTime();
+			loads.forEach((projectId, load) -> {
+				Project project = results.get(projectId);
+				if(loading.remove(projectId, load) && !load.stale && Objects.nonNull(project)) {
+					entries.put(projectId, new Entry(project, now));
+				}
+			});
+			// Evict least recently used entries until the cache is back to its maximum size:
+			Iterator<Map.Entry<Integer, Entry>> eldest = entries.entrySet().iterator();
+			while(entries.size() > maxEntries && eldest.hasNext()) {
+				eldest.next();
+				eldest.remove();
+				evictions.increment();
+			}
+		}finally {
+			lock.unlock();
+		}
+		loads.forEach((projectId, load) -> load.result.complete(results.get(projectId)));
+	}
+
+	// Give up on loads whose loader failed. Callers waiting for them get the same failure:
+	private void abandon(Map<Integer, Load> loads, RuntimeException failure) {
+		lock.lock();
+		try {
+			loads.forEach(loading::remove);
+		}finally {
+			lock.unlock();
+		}
+		loads.values().forEach(load -> load.result.completeExceptionally(failure));
+	}
+
+	public record CacheStats(int size, int maxEntries, long hits, long misses, long sharedLoads, long evictions,
+			long expirations, long invalidations) {
+		public double hitRate() {
+			long requests = hits + misses;
+			return requests == 0 ? 0 : (double)hits / requests;
+		}
+	}
+
+	private record Entry(Project project, long loadedAtNanos) {
+	}
+
+	// One load of a project, which callers that miss while it runs wait for:
+	private static class Load {
+		private final CompletableFuture<Project> result = new CompletableFuture<>();
+		private boolean stale;
+
+		private Project await() {
+			try {
+				return result.join();
+			}catch(CompletionException e) {
+				throw e.getCause() instanceof RuntimeException cause ? cause : e;
+			}
+		}
+	}
+}
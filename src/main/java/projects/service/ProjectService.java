@@ -1,40 +1,492 @@
 package projects.service;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
 
+import projects.analytics.ProjectAnalytics;
+import projects.dao.CatalogMarker;
+import projects.dao.ProjectChanges;
 import projects.dao.ProjectDAO;
+import projects.dao.ProjectStore;
+import projects.entity.Category;
+import projects.entity.Material;
 import projects.entity.Project;
+import projects.entity.ProjectSummary;
+import projects.entity.Step;
 import projects.exception.DbException;
+import projects.search.ProjectSearchIndex;
+import projects.search.ProjectSearchIndex.SearchHit;
+import projects.store.MappedProjectStore;
 
-public class ProjectService {
-	private ProjectDAO projectDao = new ProjectDAO();
+public class ProjectService implements AutoCloseable {
+	// The project cache is off unless -Dprojects.cache.maxEntries is set to a positive number:
+	private static final int CACHE_MAX_ENTRIES = Integer.getInteger("projects.cache.maxEntries", 0);
+	private static final long CACHE_TTL_MILLIS = Long.getLong("projects.cache.ttlMillis", 300_000);
+	// Write-behind group commit is off unless -Dprojects.writeBehind.enabled=true:
+	private static final boolean WRITE_BEHIND_ENABLED = Boolean.getBoolean("projects.writeBehind.enabled");
+	private static final int WRITE_BEHIND_CAPACITY = Integer.getInteger("projects.writeBehind.capacity", 10_000);
+	private static final int WRITE_BEHIND_MAX_BATCH_SIZE = Integer.getInteger("projects.writeBehind.maxBatchSize", 500);
+	private static final long WRITE_BEHIND_FLUSH_INTERVAL_MILLIS =
+			Long.getLong("projects.writeBehind.flushIntervalMillis", 5);
+	// Number of projects whose graphs are loaded at a time when rebuilding the search index:
+	private static final int SEARCH_SCAN_CHUNK_SIZE = 500;
+	// Number of projects listed at a time when the catalog is read from the store:
+	private static final int CATALOG_PAGE_SIZE = 1000;
+	
+	// Projects are kept in MySQL unless -Dprojects.store.file names a file for the embedded store:
+	private static final String STORE_FILE = System.getProperty("projects.store.file");
+	
+	private final ProjectStore projectStore;
+	// Read-through cache of full project graphs, or null when caching is disabled:
+	private final ProjectCache projectCache;
+	// Columnar copy of the tables for reporting, loaded on first use and replaced by refreshAnalytics():
+	private volatile ProjectAnalytics analytics;
+	// Inverted index for searchProjects(). Writes through this service keep it current once it is built:
+	private final ProjectSearchIndex searchIndex = new ProjectSearchIndex();
+	// Held while the search index is rebuilt, so that rebuilds run one at a time. A lock rather than synchronized,
+	// since a rebuild reads from the store and may run on a virtual thread:
+	private final ReentrantLock searchIndexRebuild = new ReentrantLock();
+	// Queue that groups inserts, modifies and deletes into shared transactions, or null when writes are applied
+	// one at a time:
+	private final WriteBehindQueue writeQueue;
+	// Project list saved by the previous run, or read from the store since. It serves list pages until a write
+	// through this service changes the list, and is null when there is none:
+	private volatile CatalogSnapshot catalog;
+	// Whether the catalog has been checked against the store:
+	private volatile boolean catalogChecked;
+	// The catalog as it was loaded from the file, so close() need not save it again if it is still current:
+	private CatalogSnapshot savedCatalog;
+	// Where the catalog is kept, or null when openCatalog() was not called:
+	private Path catalogFile;
+	// Counts the writes that may change the list, so that a catalog read while one ran is not used. Guarded by
+	// catalogLock along with replacing the catalog:
+	private long catalogWrites;
+	private final Object catalogLock = new Object();
+	
+	public ProjectService() {
+		this(CACHE_MAX_ENTRIES > 0 ? new ProjectCache(CACHE_MAX_ENTRIES, CACHE_TTL_MILLIS) : null);
+	}
+	public ProjectService(ProjectCache projectCache) {
+		this(projectCache, WRITE_BEHIND_ENABLED);
+	}
+	public ProjectService(ProjectCache projectCache, boolean writeBehind) {
+		this(Objects.isNull(STORE_FILE) ? new ProjectDAO() : new MappedProjectStore(Path.of(STORE_FILE)), projectCache,
+				writeBehind);
+	}
+	public ProjectService(ProjectStore projectStore, ProjectCache projectCache, boolean writeBehind) {
+		this.projectStore = projectStore;
+		this.projectCache = projectCache;
+		this.writeQueue = writeBehind ? new WriteBehindQueue(projectStore, WRITE_BEHIND_CAPACITY,
+				WRITE_BEHIND_MAX_BATCH_SIZE, WRITE_BEHIND_FLUSH_INTERVAL_MILLIS, this::invalidate) : null;
+	}
 	public Project addProject(Project project) {
-		return projectDao.insertProject(project);
+		if(Objects.nonNull(writeQueue)) {
+			await(queueAddProject(project));
+			return project;
+		}
+		Project added;
+		try {
+			added = projectStore.insertProject(project);
+		}finally {
+			catalogChanged();
+		}
+		searchIndex.index(added);
+		return added;
+	}
+	// Insert without waiting. With write-behind on, the insert shares a transaction with other queued writes;
+	// otherwise it runs now. Completes with the generated project ID:
+	public CompletableFuture<Integer> queueAddProject(Project project) {
+		if(Objects.nonNull(writeQueue)) {
+			return writeQueue.insert(project).thenApply(projectId -> {
+				catalogChanged();
+				searchIndex.index(project);
+				return projectId;
+			});
+		}
+		return run(() -> addProject(project).getProjectId());
+	}
+	public List<Project> addProjects(List<Project> projects) {
+		List<Project> added;
+		try {
+			added = projectStore.insertProjects(projects);
+		}finally {
+			catalogChanged();
+		}
+		added.forEach(searchIndex::index);
+		return added;
+	}
+	// Add materials to existing projects in one transaction. Each material names its project:
+	public List<Material> addMaterials(List<Material> materials) {
+		List<Material> added = projectStore.addMaterials(materials);
+		childrenAdded(added.stream().map(Material::getProjectId).toList(), true);
+		return added;
+	}
+	// Add steps to existing projects in one transaction. Steps without a step order go after the existing steps:
+	public List<Step> addSteps(List<Step> steps) {
+		List<Step> added = projectStore.addSteps(steps);
+		childrenAdded(added.stream().map(Step::getProjectId).toList(), true);
+		return added;
+	}
+	// Link categories to a project, creating those without an ID:
+	public List<Category> addCategories(Integer projectId, List<Category> categories) {
+		List<Category> added = projectStore.addCategories(projectId, categories);
+		childrenAdded(List.of(projectId), false);
+		return added;
 	}
 	public List<Project> fetchAllProjects() {
-		return projectDao.fetchAllProjects();
+		return projectStore.fetchAllProjects();
+	}
+	// The returned stream holds a database connection and must be closed:
+	public Stream<Project> streamAllProjects(int fetchSize) {
+		return projectStore.streamAllProjects(fetchSize);
+	}
+	// Load full project graphs straight from the store, bypassing the cache, for scans that read each project once
+	// (exports, for example), so they neither evict the working set nor fill the cache with graphs used once.
+	// Missing IDs are skipped:
+	public List<Project> scanProjectsByIds(Collection<Integer> projectIds) {
+		return projectStore.fetchProjectsByIds(projectIds);
+	}
+	public List<Project> fetchProjectsPage(String afterName, Integer afterId, int limit) {
+		return projectStore.fetchProjectsPage(afterName, afterId, limit);
+	}
+	// Pages of project IDs and names only, for list views. Served from the catalog when there is one:
+	public List<ProjectSummary> fetchProjectSummariesPage(String afterName, Integer afterId, int limit) {
+		CatalogSnapshot current = catalog;
+		if(Objects.nonNull(current)) {
+			List<ProjectSummary> page = current.page(afterName, afterId, limit);
+			if(Objects.nonNull(page)) {
+				return page;
+			}
+		}
+		return projectStore.fetchProjectSummariesPage(afterName, afterId, limit);
 	}
 	public Project fetchProjectById(Integer projectId) {
-		return projectDao.fetchProjectById(projectId).orElseThrow(
-				() -> new NoSuchElementException(
+		Project project = Objects.isNull(projectCache)
+				? projectStore.fetchProjectById(projectId).orElse(null)
+				: projectCache.get(projectId, () -> projectStore.fetchProjectById(projectId).orElse(null));
+		if(Objects.isNull(project)) {
+			throw new NoSuchElementException(
 					"Project with project ID=" + projectId	
-					+" does not exist."));
+					+" does not exist.");
+		}
+		return project;
+	}
+	// Load several full project graphs at once. Missing IDs are skipped:
+	public List<Project> fetchProjectsByIds(Collection<Integer> projectIds) {
+		if(Objects.isNull(projectCache)) {
+			return projectStore.fetchProjectsByIds(projectIds);
+		}
+		// Serve what we can from the cache and load the rest in one batch:
+		return projectCache.getAll(projectIds, projectStore::fetchProjectsByIds);
 	}
-	public void modifyProjectDetails(Project project) {
+	// Save the changed details of the project and return it with its new version. Throws StaleProjectException if
+	// someone else changed the project since it was read:
+	public Project modifyProjectDetails(Project project) {
+		if(Objects.nonNull(writeQueue)) {
+			return await(queueModifyProjectDetails(project));
+		}
+		// The changes are cleared once they are saved, so note what the search index needs first:
+		boolean nameChanged = project.getChangedDetails().contains(Project.Detail.PROJECT_NAME);
+		boolean notesChanged = project.getChangedDetails().contains(Project.Detail.NOTES);
+		boolean modified;
+		try {
+			modified = projectStore.modifyProjectDetails(project);
+		}finally {
+			invalidate(project.getProjectId());
+			catalogChanged();
+		}
 		// Confirm that UPDATE for database was performed successfully:
-		if(!projectDao.modifyProjectDetails(project)) {
+		if(!modified) {
 			throw new DbException("Project with ID="
 					+ project.getProjectId() + " does not exist.");
 		
 		}
+		searchIndex.updateDetails(project, nameChanged, notesChanged);
+		return project;
+	}
+	// Modify without waiting, as queueAddProject() does for inserts. Completes with the saved project:
+	public CompletableFuture<Project> queueModifyProjectDetails(Project project) {
+		if(Objects.nonNull(writeQueue)) {
+			boolean nameChanged = project.getChangedDetails().contains(Project.Detail.PROJECT_NAME);
+			boolean notesChanged = project.getChangedDetails().contains(Project.Detail.NOTES);
+			// The queue invalidates the cache entry itself once the write is applied:
+			return writeQueue.modify(project).thenApply(modified -> {
+				catalogChanged();
+				if(!modified) {
+					throw new DbException("Project with ID=" + project.getProjectId() + " does not exist.");
+				}
+				searchIndex.updateDetails(project, nameChanged, notesChanged);
+				return project;
+			});
+		}
+		return run(() -> modifyProjectDetails(project));
 	}
 	public void deleteProject(Integer projectId) {
+		if(Objects.nonNull(writeQueue)) {
+			await(queueDeleteProject(projectId));
+			return;
+		}
+		boolean deleted;
+		try {
+			deleted = projectStore.deleteProject(projectId);
+		}finally {
+			invalidate(projectId);
+			catalogChanged();
+		}
 		// Confirm that DELETE was performed successfully:
-		if(!projectDao.deleteProject(projectId)) {
+		if(!deleted) {
 			throw new DbException("Project with ID="
 					+ projectId + " does not exist.");
 		}
+		searchIndex.remove(projectId);
+	}
+	// Delete without waiting, as queueAddProject() does for inserts:
+	public CompletableFuture<Void> queueDeleteProject(Integer projectId) {
+		if(Objects.nonNull(writeQueue)) {
+			return writeQueue.delete(projectId).thenAccept(deleted -> {
+				catalogChanged();
+				if(!deleted) {
+					throw new DbException("Project with ID=" + projectId + " does not exist.");
+				}
+				searchIndex.remove(projectId);
+			});
+		}
+		return run(() -> {
+			deleteProject(projectId);
+			return null;
+		});
+	}
+	// Projects containing every word of the query, best match first. Answered from memory; the index is built
+	// by a full scan on first use and kept current by the writes made through this service:
+	public List<SearchHit> searchProjects(String query, int limit) {
+		ensureSearchIndex();
+		return searchIndex.search(query, limit);
+	}
+	// Projects with a word starting with each word of the query, best match first:
+	public List<SearchHit> searchProjectsByPrefix(String query, int limit) {
+		ensureSearchIndex();
+		return searchIndex.searchPrefix(query, limit);
+	}
+	// Rebuild the search index from a streaming scan of every project graph. Searches keep using the old index
+	// until the new one is ready. A rebuild asked for while another runs waits for it and then scans again:
+	public void rebuildSearchIndex() {
+		searchIndexRebuild.lock();
+		try(Stream<Project> cursor = projectStore.streamAllProjects(SEARCH_SCAN_CHUNK_SIZE)){
+			Iterator<Project> rows = cursor.iterator();
+			// Load the children of each chunk of projects with a constant number of queries:
+			Stream<Project> graphs = Stream.generate(() -> {
+				List<Integer> ids = new ArrayList<>(SEARCH_SCAN_CHUNK_SIZE);
+				while(ids.size() < SEARCH_SCAN_CHUNK_SIZE && rows.hasNext()) {
+					ids.add(rows.next().getProjectId());
+				}
+				return ids;
+			}).takeWhile(ids -> !ids.isEmpty()).flatMap(ids -> projectStore.fetchProjectsByIds(ids).stream());
+			searchIndex.rebuild(graphs, projectStore::fetchProjectsByIds);
+		}finally {
+			searchIndexRebuild.unlock();
+		}
+	}
+	private void ensureSearchIndex() {
+		if(searchIndex.isBuilt()) {
+			return;
+		}
+		searchIndexRebuild.lock();
+		try {
+			// Another caller may have built it while this one waited:
+			if(!searchIndex.isBuilt()) {
+				rebuildSearchIndex();
+			}
+		}finally {
+			searchIndexRebuild.unlock();
+		}
+	}
+	// The cursor of the latest change to any project. Read it before loading everything, then pass it to
+	// fetchChangesSince() to keep up. Always 0 for a store without a change log:
+	public long fetchChangeCursor() {
+		return projectStore.keepsChangeLog() ? projectStore.fetchChangeCursor() : 0;
+	}
+	// Projects changed after the cursor by this or any other application, looking at no more than limit changes.
+	// The cache, search index and catalog are brought up to date with them, instead of being reloaded in full. A
+	// store without a change log has no other writers, and this service already sees each of its writes, so there
+	// is never anything to fetch:
+	public ProjectChanges fetchChangesSince(long cursor, int limit) {
+		if(!projectStore.keepsChangeLog()) {
+			return new ProjectChanges(List.of(), List.of(), cursor, false);
+		}
+		ProjectChanges changes = projectStore.fetchChangesSince(cursor, limit);
+		if(changes.isEmpty()) {
+			return changes;
+		}
+		catalogChanged();
+		for(Project project : changes.changed()) {
+			invalidate(project.getProjectId());
+			searchIndex.index(project);
+		}
+		for(Integer projectId : changes.deleted()) {
+			invalidate(projectId);
+			searchIndex.remove(projectId);
+		}
+		return changes;
+	}
+	// Serve the project list from the catalog the previous run saved in the file, if there is one, while it is
+	// checked against the store in the background and replaced if the store has changed. close() saves the
+	// catalog to the file again. Returns whether a saved catalog was loaded:
+	public boolean openCatalog(Path file) {
+		CatalogSnapshot loaded = null;
+		try {
+			loaded = CatalogSnapshot.load(file);
+		}catch(IOException e) {
+			System.out.println("Ignoring the project catalog in " + file + ": " + e.getMessage());
+		}
+		synchronized(catalogLock) {
+			catalogFile = file;
+			catalog = loaded;
+			savedCatalog = loaded;
+			catalogChecked = false;
+		}
+		if(Objects.nonNull(loaded)) {
+			CatalogSnapshot saved = loaded;
+			Thread.ofPlatform().name("project-catalog-check").daemon(true).start(() -> checkCatalog(saved));
+		}
+		return Objects.nonNull(loaded);
+	}
+	// Apply any queued writes, stop the write-behind queue and save the catalog:
+	@Override
+	public void close() {
+		if(Objects.nonNull(writeQueue)) {
+			writeQueue.close();
+		}
+		saveCatalog();
+		projectStore.close();
+	}
+	// Cache statistics, or null when caching is disabled:
+	public ProjectCache.CacheStats getCacheStats() {
+		return Objects.isNull(projectCache) ? null : projectCache.getStats();
+	}
+	// Problems found in the query plans of the hot store queries, or an empty list if there are none:
+	public List<String> checkQueryPlans() {
+		return projectStore.checkQueryPlans();
+	}
+	// Reload the analytics snapshot from the database. Queries already running keep using the old snapshot:
+	public ProjectAnalytics refreshAnalytics() {
+		ProjectAnalytics refreshed = new ProjectAnalytics(projectStore.loadSnapshot());
+		analytics = refreshed;
+		return refreshed;
+	}
+	// The current analytics snapshot, loading it if there is none yet. It does not see changes made after it was
+	// loaded:
+	public ProjectAnalytics getAnalytics() {
+		ProjectAnalytics current = analytics;
+		return Objects.isNull(current) ? refreshAnalytics() : current;
+	}
+	// Wait for a queued write and rethrow its failure as it would have been thrown by a direct write:
+	private static <T> T await(CompletableFuture<T> write) {
+		try {
+			return write.join();
+		}catch(CompletionException e) {
+			throw e.getCause() instanceof RuntimeException cause ? cause : e;
+		}
+	}
+	private static <T> CompletableFuture<T> run(Supplier<T> write) {
+		try {
+			return CompletableFuture.completedFuture(write.get());
+		}catch(RuntimeException e) {
+			return CompletableFuture.failedFuture(e);
+		}
+	}
+	// Drop the cached graphs of projects that gained children, and re-index them if the children are searchable:
+	private void childrenAdded(List<Integer> projectIds, boolean searchable) {
+		Set<Integer> changed = new LinkedHashSet<>(projectIds);
+		changed.forEach(this::invalidate);
+		if(searchable && searchIndex.isBuilt() && !changed.isEmpty()) {
+			projectStore.fetchProjectsByIds(changed).forEach(searchIndex::index);
+		}
+	}
+	// Compare the saved catalog's marker with the store's, and read the list again if they differ:
+	private void checkCatalog(CatalogSnapshot saved) {
+		try {
+			long writes;
+			synchronized(catalogLock) {
+				writes = catalogWrites;
+			}
+			CatalogMarker marker = projectStore.fetchCatalogMarker();
+			CatalogSnapshot checked = saved.getMarker().equals(marker) ? saved : readCatalog(marker);
+			synchronized(catalogLock) {
+				// A write since the check started may not be in what was read:
+				if(catalogWrites == writes) {
+					catalog = checked;
+					catalogChecked = true;
+				}
+			}
+		}catch(RuntimeException e) {
+			// Stop serving a catalog that could not be checked:
+			catalogChanged();
+			System.out.println("\nError: " + e + " Unable to check the project catalog.");
+		}
+	}
+	// The marker is read first, so the list read after it is at least as new:
+	private CatalogSnapshot readCatalog() {
+		return readCatalog(projectStore.fetchCatalogMarker());
+	}
+	private CatalogSnapshot readCatalog(CatalogMarker marker) {
+		List<ProjectSummary> projects = new ArrayList<>();
+		List<ProjectSummary> page = projectStore.fetchProjectSummariesPage(null, null, CATALOG_PAGE_SIZE);
+		while(!page.isEmpty()) {
+			projects.addAll(page);
+			if(page.size() < CATALOG_PAGE_SIZE) {
+				break;
+			}
+			ProjectSummary last = page.get(page.size() - 1);
+			page = projectStore.fetchProjectSummariesPage(last.getProjectName(), last.getProjectId(),
+					CATALOG_PAGE_SIZE);
+		}
+		return CatalogSnapshot.of(marker, projects);
+	}
+	// Save a catalog that is known to be current, reading it from the store if needed. Failing to save only costs
+	// the next run its fast start:
+	private void saveCatalog() {
+		CatalogSnapshot current;
+		synchronized(catalogLock) {
+			if(Objects.isNull(catalogFile)) {
+				return;
+			}
+			current = catalogChecked ? catalog : null;
+		}
+		try {
+			if(Objects.isNull(current)) {
+				current = readCatalog();
+			}else if(current == savedCatalog) {
+				return;
+			}
+			current.save(catalogFile);
+		}catch(IOException | RuntimeException e) {
+			System.out.println("\nError: " + e + " Unable to save the project catalog.");
+		}
+	}
+	// Stop serving the catalog after a write that may have changed the project list:
+	private void catalogChanged() {
+		synchronized(catalogLock) {
+			catalogWrites++;
+			catalog = null;
+		}
+	}
+	private void invalidate(Integer projectId) {
+		if(Objects.nonNull(projectCache)) {
+			projectCache.invalidate(projectId);
+		}
 	}
 
 }
@@ -0,0 +1,198 @@
+package projects.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import projects.dao.ProjectStore;
+import projects.dao.ProjectWrite;
+import projects.entity.Project;
+import projects.exception.DbException;
+
+// Collects inserts, modifies and deletes from any number of threads and has one flusher thread apply them in
+// groups, each group in a single transaction. A group is flushed when it reaches maxBatchSize writes or when its
+// oldest write has waited flushIntervalMillis, so one commit (and one log flush on the server) covers the whole
+// group. Every write gets a future that completes once its group has committed. Futures are completed on their own
+// virtual threads, so the listener and the callers' dependent stages never hold up the flusher. When the queue is
+// full, callers block until the flusher makes room or the queue is closed.
+public class WriteBehindQueue implements AutoCloseable {
+	// How often a caller waiting for room checks whether the queue has been closed:
+	private static final long OFFER_RETRY_MILLIS = 100;
+
+	private final ProjectStore projectStore;
+	private final BlockingQueue<PendingWrite> queue;
+	private final int maxBatchSize;
+	private final long flushIntervalNanos;
+	// Told the ID of every modified or deleted project after its group is applied, before its future completes:
+	private final Consumer<Integer> afterWrite;
+	private final Thread flusher;
+	// Runs afterWrite and completes the futures of each applied group:
+	private final ExecutorService completions =
+			Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("project-write-completion-", 0).factory());
+	private volatile boolean closed;
+
+	public WriteBehindQueue(ProjectStore projectStore, int capacity, int maxBatchSize, long flushIntervalMillis,
+			Consumer<Integer> afterWrite) {
+		if(capacity < 1 || maxBatchSize < 1 || flushIntervalMillis < 0) {
+			throw new IllegalArgumentException("Invalid write queue settings: capacity=" + capacity
+					+ ", maxBatchSize=" + maxBatchSize + ", flushIntervalMillis=" + flushIntervalMillis);
+		}
+		this.projectStore = projectStore;
+		this.queue = new ArrayBlockingQueue<>(capacity);
+		this.maxBatchSize = maxBatchSize;
+		this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+		this.afterWrite = afterWrite;
+		this.flusher = Thread.ofPlatform().name("project-write-behind").daemon(true).start(this::flushLoop);
+	}
+
+	// Completes with the generated project ID:
+	public CompletableFuture<Integer> insert(Project project) {
+		return submit(ProjectWrite.insert(project)).thenApply(outcome -> project.getProjectId());
+	}
+
+	// Completes with whether the project existed:
+	public CompletableFuture<Boolean> modify(Project project) {
+		return submit(ProjectWrite.modify(project)).thenApply(ProjectWrite.Outcome::applied);
+	}
+
+	// Completes with whether the project existed:
+	public CompletableFuture<Boolean> delete(Integer projectId) {
+		return submit(ProjectWrite.delete(projectId)).thenApply(ProjectWrite.Outcome::applied);
+	}
+
+	// Number of writes waiting for the flusher:
+	public int getQueuedWrites() {
+		return queue.size();
+	}
+
+	// Stop accepting writes, apply the ones already queued and wait for the flusher to finish and their futures to
+	// complete:
+	@Override
+	public void close() {
+		closed = true;
+		try {
+			flusher.join();
+		}catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		// Fail writes that were queued while the flusher was finishing:
+		PendingWrite late;
+		while(Objects.nonNull(late = queue.poll())) {
+			late.result().completeExceptionally(new DbException("The write queue is closed"));
+		}
+		completions.close();
+	}
+
+	private CompletableFuture<ProjectWrite.Outcome> submit(ProjectWrite write) {
+		PendingWrite pending = new PendingWrite(write, new CompletableFuture<>());
+		if(closed) {
+			pending.result().completeExceptionally(new DbException("The write queue is closed"));
+			return pending.result();
+		}
+		try {
+			// Blocks while the queue is full, which slows callers down to the rate the database can take, but gives
+			// up once the queue is closed, since the flusher will not make room again:
+			while(!queue.offer(pending, OFFER_RETRY_MILLIS, TimeUnit.MILLISECONDS)) {
+				if(closed) {
+					pending.result().completeExceptionally(new DbException("The write queue is closed"));
+					return pending.result();
+				}
+			}
+		}catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			pending.result().completeExceptionally(new DbException("Interrupted while queueing a write", e));
+			return pending.result();
+		}
+		// close() may have been called while the write went in, after the flusher and close() had both seen the
+		// queue empty. If the write is still queued, nothing else will take it. If it is gone, whoever took it
+		// completes it:
+		if(closed && queue.remove(pending)) {
+			pending.result().completeExceptionally(new DbException("The write queue is closed"));
+		}
+		return pending.result();
+	}
+
+	private void flushLoop() {
+		List<PendingWrite> batch = new ArrayList<>(maxBatchSize);
+		while(!closed || !queue.isEmpty()) {
+			try {
+				PendingWrite first = queue.poll(100, TimeUnit.MILLISECONDS);
+				if(Objects.isNull(first)) {
+					continue;
+				}
+				batch.add(first);
+				// Gather more writes until the batch is full or the first write has waited long enough:
+				long deadline = System.nanoTime() + flushIntervalNanos;
+				while(batch.size() < maxBatchSize) {
+					long remaining = deadline - System.nanoTime();
+					PendingWrite next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+					if(Objects.isNull(next)) {
+						break;
+					}
+					batch.add(next);
+				}
+			}catch(InterruptedException e) {
+				// Only close() stops the flusher, so that no queued write is dropped:
+			}
+			if(!batch.isEmpty()) {
+				flush(batch);
+				batch.clear();
+			}
+		}
+	}
+
+	private void flush(List<PendingWrite> batch) {
+		List<ProjectWrite> writes = new ArrayList<>(batch.size());
+		for(PendingWrite pending : batch) {
+			writes.add(pending.write());
+		}
+		try {
+			List<ProjectWrite.Outcome> outcomes = projectStore.applyWrites(writes);
+			// The batch is reused for the next group:
+			List<PendingWrite> applied = List.copyOf(batch);
+			completions.execute(() -> {
+				for(int i = 0; i < applied.size(); i++) {
+					complete(applied.get(i), outcomes.get(i), null);
+				}
+			});
+		}catch(RuntimeException batchFailure) {
+			// Nothing was committed. Apply the writes one at a time so that only the failing ones fail:
+			for(PendingWrite pending : batch) {
+				try {
+					ProjectWrite.Outcome outcome = projectStore.applyWrites(List.of(pending.write())).get(0);
+					completions.execute(() -> complete(pending, outcome, null));
+				}catch(RuntimeException e) {
+					completions.execute(() -> complete(pending, null, e));
+				}
+			}
+		}
+	}
+
+	private void complete(PendingWrite pending, ProjectWrite.Outcome outcome, RuntimeException failure) {
+		ProjectWrite write = pending.write();
+		if(write.kind() != ProjectWrite.Kind.INSERT) {
+			try {
+				afterWrite.accept(write.projectId());
+			}catch(RuntimeException e) {
+				// The write itself is done; a failing listener must not leave the caller waiting:
+			}
+		}
+		if(Objects.nonNull(failure)) {
+			pending.result().completeExceptionally(failure);
+		}else if(Objects.nonNull(outcome.failure())) {
+			pending.result().completeExceptionally(outcome.failure());
+		}else {
+			pending.result().complete(outcome);
+		}
+	}
+
+	private record PendingWrite(ProjectWrite write, CompletableFuture<ProjectWrite.Outcome> result) {
+	}
+}
@@ -0,0 +1,980 @@
+package projects.store;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.TreeSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+import projects.analytics.ProjectSnapshot;
+import projects.dao.CatalogMarker;
+import projects.dao.ProjectChanges;
+import projects.dao.ProjectStore;
+import projects.dao.ProjectWrite;
+import projects.entity.Category;
+import projects.entity.Material;
+import projects.entity.Project;
+import projects.entity.ProjectCodec;
+import projects.entity.ProjectSummary;
+import projects.entity.Step;
+import projects.exception.DbException;
+import projects.exception.StaleProjectException;
+import projects.metrics.DaoMetrics;
+import projects.metrics.DaoOperation;
+import projects.metrics.HistogramDaoMetrics;
+import projects.metrics.OperationTimer;
+
+// A ProjectStore that keeps project graphs in a local, memory-mapped, append-only log instead of MySQL. Each
+// write appends one frame holding every entry it changes, with a CRC32C over the frame, so a write is applied
+// completely or not at all: on open the log is replayed up to the first frame that is incomplete or fails its
+// check, and anything after it is discarded. An in-memory index maps each project ID to its latest entry, so a
+// fetch decodes straight from the mapped file without a system call. Superseded and deleted entries stay in the
+// log until compaction rewrites the live ones to a new file, which replaces the old one atomically.
+//
+// Reads run in parallel; writes and compaction take turns. Project names sort by Java string order, not by a
+// MySQL collation. The mapped log is limited to 2 GB.
+public class MappedProjectStore implements ProjectStore {
+	// Each can be overridden with a system property, e.g. -Dprojects.store.syncWrites=false:
+	// Force every write to disk before it returns. Without it a crash can lose the latest writes, but never
+	// leaves a partial one:
+	private static final boolean SYNC_WRITES =
+			Boolean.parseBoolean(System.getProperty("projects.store.syncWrites", "true"));
+	// How often to check whether compaction is worthwhile. 0 turns periodic compaction off:
+	private static final long COMPACTION_INTERVAL_MILLIS = Long.getLong("projects.store.compactionIntervalMillis",
+			60_000);
+	// Compact once the dead bytes exceed both this and the live bytes:
+	private static final long COMPACTION_MIN_DEAD_BYTES = Long.getLong("projects.store.compactionMinDeadBytes",
+			4 << 20);
+
+	private static final int MAGIC = 0x504A4C47;
+	// Version 2 encodes projects with ProjectCodec:
+	private static final int FORMAT_VERSION = 2;
+	// Magic number, format version and room for later use:
+	private static final int HEADER_SIZE = 16;
+	// Payload length and CRC32C of the payload. A zero length marks the end of the log:
+	private static final int FRAME_HEADER_SIZE = 8;
+	// Each entry in a frame is a type, a length and the entry itself:
+	private static final int ENTRY_HEADER_SIZE = 5;
+	private static final byte PUT = 1;
+	private static final byte DELETE = 2;
+	private static final byte CATEGORY = 3;
+	// The next IDs to hand out, so IDs of deleted rows are not reused after a restart:
+	private static final byte SEQUENCE = 4;
+	private static final int INITIAL_CAPACITY = 1 << 20;
+	// Compaction writes frames of about this size:
+	private static final int COMPACTION_FRAME_SIZE = 1 << 20;
+
+	private final Path path;
+	private final DaoMetrics metrics;
+	private final boolean syncWrites;
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+	private final ScheduledExecutorService compactor;
+
+	// Guarded by lock:
+	private FileChannel channel;
+	private MappedByteBuffer log;
+	// Offset just past the last frame:
+	private int end;
+	// Bytes of the header and of entries that are still current:
+	private long liveBytes;
+	// Sum of the versions of the current projects:
+	private long versionSum;
+	private final Map<Integer, Entry> projects = new HashMap<>();
+	private final NavigableSet<NameKey> byName = new TreeSet<>();
+	private final Map<Integer, Entry> categoryEntries = new HashMap<>();
+	private final Map<Integer, String> categoryNames = new HashMap<>();
+	private int nextProjectId = 1;
+	private int nextMaterialId = 1;
+	private int nextStepId = 1;
+	private int nextCategoryId = 1;
+	private boolean closed;
+
+	public MappedProjectStore(Path path) {
+		this(path, HistogramDaoMetrics.getDefault(), SYNC_WRITES, COMPACTION_INTERVAL_MILLIS);
+	}
+
+	public MappedProjectStore(Path path, DaoMetrics metrics, boolean syncWrites, long compactionIntervalMillis) {
+		this.path = path;
+		this.metrics = metrics;
+		this.syncWrites = syncWrites;
+		try {
+			// A compaction that was cut short leaves its new file behind. The old file is still the current one:
+			Files.deleteIfExists(compactionPath());
+			open();
+		}catch(IOException e) {
+			throw new DbException("Unable to open the project store " + path, e);
+		}
+		if(compactionIntervalMillis > 0) {
+			compactor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+				Thread thread = new Thread(runnable, "project-store-compactor");
+				thread.setDaemon(true);
+				return thread;
+			});
+			compactor.scheduleWithFixedDelay(this::compactIfWorthwhile, compactionIntervalMillis,
+					compactionIntervalMillis, TimeUnit.MILLISECONDS);
+		}else {
+			compactor = null;
+		}
+	}
+
+	@Override
+	public Project insertProject(Project project) {
+		return insertProjects(List.of(project)).get(0);
+	}
+
+	@Override
+	public List<Project> insertProjects(List<Project> projects) {
+		if(projects.isEmpty()) {
+			return projects;
+		}
+		return write(DaoOperation.INSERT, batch -> {
+			for(Project project : projects) {
+				insert(batch, project);
+			}
+			return projects;
+		});
+	}
+
+	@Override
+	public List<Material> addMaterials(List<Material> materials) {
+		if(materials.isEmpty()) {
+			return materials;
+		}
+		return write(DaoOperation.ADD_MATERIALS, batch -> {
+			for(Material material : materials) {
+				Project stored = batch.existing(material.getProjectId(), "Material " + material.getMaterialName());
+				material.setMaterialId(nextMaterialId++);
+				stored.getMaterials().add(material);
+				batch.put(stored);
+			}
+			return materials;
+		});
+	}
+
+	@Override
+	public List<Step> addSteps(List<Step> steps) {
+		if(steps.isEmpty()) {
+			return steps;
+		}
+		return write(DaoOperation.ADD_STEPS, batch -> {
+			for(Step step : steps) {
+				Project stored = batch.existing(step.getProjectId(), "Step " + step.getStepText());
+				if(Objects.isNull(step.getStepOrder())) {
+					// The graph holds every step, so the next number is simply one past the highest:
+					int last = stored.getSteps().stream().mapToInt(Step::getStepOrder).max().orElse(0);
+					step.setStepOrder(last + 1);
+				}
+				step.setStepId(nextStepId++);
+				stored.getSteps().add(step);
+				stored.getSteps().sort(Comparator.comparing(Step::getStepOrder));
+				batch.put(stored);
+			}
+			return steps;
+		});
+	}
+
+	@Override
+	public List<Category> addCategories(Integer projectId, List<Category> categories) {
+		if(categories.isEmpty()) {
+			return categories;
+		}
+		return write(DaoOperation.ADD_CATEGORIES, batch -> {
+			Project stored = batch.existing(projectId, "Category");
+			for(Category category : categories) {
+				if(Objects.isNull(category.getCategoryId())) {
+					category.setCategoryId(nextCategoryId++);
+					batch.category(category.getCategoryId(), category.getCategoryName());
+				}
+				link(batch, stored, category);
+			}
+			batch.put(stored);
+			return categories;
+		});
+	}
+
+	@Override
+	public List<Project> fetchAllProjects() {
+		return read(DaoOperation.FETCH_ALL, () -> {
+			List<Project> found = new ArrayList<>(byName.size());
+			for(NameKey key : byName) {
+				found.add(decode(projects.get(key.projectId()), false));
+			}
+			return found;
+		});
+	}
+
+	// Projects are decoded as the stream is read. Projects deleted after the stream was opened are skipped:
+	@Override
+	public Stream<Project> streamAllProjects(int fetchSize) {
+		List<Integer> ids = read(DaoOperation.STREAM_ALL, () -> {
+			List<Integer> ordered = new ArrayList<>(byName.size());
+			byName.forEach(key -> ordered.add(key.projectId()));
+			return ordered;
+		});
+		return ids.stream().map(projectId -> readUnlessClosed(() -> {
+			Entry entry = projects.get(projectId);
+			return Objects.isNull(entry) ? null : decode(entry, false);
+		})).filter(Objects::nonNull);
+	}
+
+	@Override
+	public List<Project> fetchProjectsPage(String afterName, Integer afterId, int limit) {
+		return read(DaoOperation.FETCH_PAGE, () -> {
+			List<Project> page = new ArrayList<>(Math.min(limit, byName.size()));
+			for(NameKey key : pageKeys(afterName, afterId, limit)) {
+				page.add(decode(projects.get(key.projectId()), false));
+			}
+			return page;
+		});
+	}
+
+	// Answered from the index without decoding anything:
+	@Override
+	public List<ProjectSummary> fetchProjectSummariesPage(String afterName, Integer afterId, int limit) {
+		return read(DaoOperation.FETCH_SUMMARY_PAGE, () -> {
+			List<ProjectSummary> page = new ArrayList<>(Math.min(limit, byName.size()));
+			for(NameKey key : pageKeys(afterName, afterId, limit)) {
+				ProjectSummary summary = new ProjectSummary();
+				summary.setProjectId(key.projectId());
+				summary.setProjectName(key.name());
+				page.add(summary);
+			}
+			return page;
+		});
+	}
+
+	@Override
+	public Optional<Project> fetchProjectById(Integer projectId) {
+		return read(DaoOperation.FETCH_BY_ID, () -> {
+			Entry entry = projects.get(projectId);
+			return Objects.isNull(entry) ? Optional.empty() : Optional.of(decode(entry, true));
+		});
+	}
+
+	// In the order of the IDs, without duplicates. Missing IDs are skipped:
+	@Override
+	public List<Project> fetchProjectsByIds(Collection<Integer> projectIds) {
+		return read(DaoOperation.FETCH_BY_IDS, () -> {
+			List<Project> found = new ArrayList<>(projectIds.size());
+			for(Integer projectId : new LinkedHashSet<>(projectIds)) {
+				Entry entry = projects.get(projectId);
+				if(Objects.nonNull(entry)) {
+					found.add(decode(entry, true));
+				}
+			}
+			return found;
+		});
+	}
+
+	@Override
+	public boolean modifyProjectDetails(Project project) {
+		ProjectWrite.Outcome outcome = write(DaoOperation.MODIFY, batch -> modify(batch, project));
+		if(Objects.nonNull(outcome.failure())) {
+			throw outcome.failure();
+		}
+		return outcome.applied();
+	}
+
+	@Override
+	public boolean deleteProject(Integer projectId) {
+		return write(DaoOperation.DELETE, batch -> delete(batch, projectId)).applied();
+	}
+
+	// All the writes go in one frame, so they are applied together or not at all:
+	@Override
+	public List<ProjectWrite.Outcome> applyWrites(List<ProjectWrite> writes) {
+		List<ProjectWrite.Outcome> outcomes = new ArrayList<>(writes.size());
+		if(writes.isEmpty()) {
+			return outcomes;
+		}
+		return write(DaoOperation.APPLY_WRITES, batch -> {
+			for(ProjectWrite write : writes) {
+				switch(write.kind()) {
+					case INSERT -> {
+						insert(batch, write.project());
+						outcomes.add(ProjectWrite.Outcome.APPLIED);
+					}
+					case MODIFY -> outcomes.add(modify(batch, write.project()));
+					case DELETE -> outcomes.add(delete(batch, write.projectId()));
+				}
+			}
+			return outcomes;
+		});
+	}
+
+	@Override
+	public ProjectSnapshot loadSnapshot() {
+		return read(DaoOperation.LOAD_SNAPSHOT, () -> {
+			ProjectSnapshot.Builder builder = new ProjectSnapshot.Builder();
+			List<Integer> ids = new ArrayList<>(projects.keySet());
+			ids.sort(null);
+			List<Project> graphs = new ArrayList<>(ids.size());
+			// The builder wants all projects first, then their children, each in project ID order:
+			for(Integer projectId : ids) {
+				Project project = decode(projects.get(projectId), true);
+				graphs.add(project);
+				builder.addProject(projectId, Objects.isNull(project.getDifficulty()) ? ProjectSnapshot.NULL_INT
+						: project.getDifficulty(), scaled(project.getEstimatedHours()),
+						scaled(project.getActualHours()));
+			}
+			for(Project project : graphs) {
+				for(Material material : project.getMaterials()) {
+					builder.addMaterial(project.getProjectId(), Objects.isNull(material.getNumRequired())
+							? ProjectSnapshot.NULL_INT : material.getNumRequired(), scaled(material.getCost()));
+				}
+			}
+			for(Project project : graphs) {
+				for(int i = 0; i < project.getSteps().size(); i++) {
+					builder.addStep(project.getProjectId());
+				}
+				for(Category category : project.getCategories()) {
+					builder.addProjectCategory(project.getProjectId(), category.getCategoryId());
+				}
+			}
+			categoryNames.forEach(builder::addCategory);
+			return builder.build();
+		});
+	}
+
+	@Override
+	public CatalogMarker fetchCatalogMarker() {
+		return read(DaoOperation.FETCH_CATALOG_MARKER, () -> {
+			int maxProjectId = 0;
+			for(Integer projectId : projects.keySet()) {
+				maxProjectId = Math.max(maxProjectId, projectId);
+			}
+			return new CatalogMarker(projects.size(), maxProjectId, versionSum);
+		});
+	}
+
+	// The store has a single writer, the process that opened it, and compaction drops the history a change feed
+	// would be read from. Its ProjectService sees every write as it is made:
+	@Override
+	public boolean keepsChangeLog() {
+		return false;
+	}
+
+	@Override
+	public ProjectChanges fetchChangesSince(long cursor, int limit) {
+		throw new UnsupportedOperationException("The embedded project store does not keep a change log");
+	}
+
+	@Override
+	public long fetchChangeCursor() {
+		throw new UnsupportedOperationException("The embedded project store does not keep a change log");
+	}
+
+	// Fetches are answered from the in-memory index, so there are no query plans to check:
+	@Override
+	public List<String> checkQueryPlans() {
+		return List.of();
+	}
+
+	// Rewrite the live entries to a new file, which then replaces the log. Reads and writes wait until it is done:
+	public void compact() {
+		compact(false);
+	}
+
+	// Sizes of the log, for deciding whether to compact:
+	public StoreStats getStats() {
+		lock.readLock().lock();
+		try {
+			return new StoreStats(projects.size(), end, liveBytes, log.capacity());
+		}finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public void close() {
+		if(Objects.nonNull(compactor)) {
+			compactor.shutdownNow();
+		}
+		lock.writeLock().lock();
+		try {
+			if(!closed) {
+				closed = true;
+				log.force();
+				channel.close();
+			}
+		}catch(IOException e) {
+			throw new DbException("Unable to close the project store " + path, e);
+		}finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	// Assign the new project's IDs and put it in the batch. Categories must exist already:
+	private void insert(Batch batch, Project project) {
+		project.setProjectId(nextProjectId++);
+		project.setVersion(0);
+		for(Material material : project.getMaterials()) {
+			material.setProjectId(project.getProjectId());
+			material.setMaterialId(nextMaterialId++);
+		}
+		int stepOrder = 0;
+		for(Step step : project.getSteps()) {
+			step.setProjectId(project.getProjectId());
+			step.setStepId(nextStepId++);
+			// New projects have no existing steps, so number them in list order unless told otherwise:
+			stepOrder = Objects.isNull(step.getStepOrder()) ? stepOrder + 1 : step.getStepOrder();
+			step.setStepOrder(stepOrder);
+		}
+		Project stored = project.copy();
+		stored.getCategories().clear();
+		for(Category category : project.getCategories()) {
+			link(batch, stored, category);
+		}
+		batch.put(stored);
+		batch.afterCommit(project::clearChangedDetails);
+	}
+
+	// Apply the project's changed details to the stored graph, as ProjectDAO.modifyProjectDetails() does:
+	private ProjectWrite.Outcome modify(Batch batch, Project project) {
+		Project stored = batch.current(project.getProjectId());
+		if(Objects.isNull(stored)) {
+			return ProjectWrite.Outcome.NOT_FOUND;
+		}
+		if(Objects.nonNull(project.getVersion()) && !project.getVersion().equals(stored.getVersion())) {
+			return ProjectWrite.Outcome.failed(new StaleProjectException(project.getProjectId(), project.getVersion()));
+		}
+		if(project.getChangedDetails().isEmpty()) {
+			return ProjectWrite.Outcome.APPLIED;
+		}
+		for(Project.Detail detail : project.getChangedDetails()) {
+			switch(detail) {
+				case PROJECT_NAME -> stored.setProjectName(project.getProjectName());
+				case ESTIMATED_HOURS -> stored.setEstimatedHours(project.getEstimatedHours());
+				case ACTUAL_HOURS -> stored.setActualHours(project.getActualHours());
+				case DIFFICULTY -> stored.setDifficulty(project.getDifficulty());
+				case NOTES -> stored.setNotes(project.getNotes());
+			}
+		}
+		int version = stored.getVersion() + 1;
+		stored.setVersion(version);
+		batch.put(stored);
+		batch.afterCommit(() -> {
+			project.setVersion(version);
+			project.clearChangedDetails();
+		});
+		return ProjectWrite.Outcome.APPLIED;
+	}
+
+	private ProjectWrite.Outcome delete(Batch batch, Integer projectId) {
+		if(Objects.isNull(batch.current(projectId))) {
+			return ProjectWrite.Outcome.NOT_FOUND;
+		}
+		batch.delete(projectId);
+		return ProjectWrite.Outcome.APPLIED;
+	}
+
+	// Add an existing category to the stored graph, keeping the categories in ID order:
+	private void link(Batch batch, Project stored, Category category) {
+		Integer categoryId = category.getCategoryId();
+		if(Objects.isNull(categoryId)) {
+			throw new DbException("Category " + category.getCategoryName() + " has no category ID");
+		}
+		String name = batch.categoryName(categoryId);
+		if(Objects.isNull(name)) {
+			throw new DbException("Category with ID=" + categoryId + " does not exist.");
+		}
+		for(Category linked : stored.getCategories()) {
+			if(linked.getCategoryId().equals(categoryId)) {
+				throw new DbException("Project with ID=" + stored.getProjectId() + " already has category "
+						+ categoryId);
+			}
+		}
+		category.setCategoryName(name);
+		stored.getCategories().add(category);
+		stored.getCategories().sort(Comparator.comparing(Category::getCategoryId));
+	}
+
+	// Run a read under the read lock:
+	private <T> T read(DaoOperation operation, ReadAction<T> action) {
+		try(OperationTimer timer = metrics.start(operation)){
+			T result = readUnlessClosed(action);
+			timer.succeeded();
+			return result;
+		}
+	}
+
+	private <T> T readUnlessClosed(ReadAction<T> action) {
+		lock.readLock().lock();
+		try {
+			checkOpen();
+			return action.read();
+		}finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	// Run a write under the write lock and append what it changed as one frame. If the body throws, nothing is
+	// appended and the index is unchanged:
+	private <T> T write(DaoOperation operation, Function<Batch, T> body) {
+		lock.writeLock().lock();
+		try(OperationTimer timer = metrics.start(operation)){
+			checkOpen();
+			Batch batch = new Batch();
+			T result = body.apply(batch);
+			timer.addRows(batch.commit());
+			timer.succeeded();
+			return result;
+		}catch(IOException e) {
+			throw new DbException("Unable to write to the project store " + path, e);
+		}finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	private Project decode(Entry entry, boolean children) {
+		ByteBuffer in = log.slice(entry.offset(), entry.length());
+		return children ? ProjectCodec.decode(in) : ProjectCodec.decodeDetails(in);
+	}
+
+	private NavigableSet<NameKey> pageKeys(String afterName, Integer afterId, int limit) {
+		NavigableSet<NameKey> keys = Objects.isNull(afterName) ? byName
+				: byName.tailSet(new NameKey(afterName, Objects.isNull(afterId) ? Integer.MAX_VALUE : afterId), false);
+		NavigableSet<NameKey> page = new TreeSet<>();
+		for(NameKey key : keys) {
+			if(page.size() == limit) {
+				break;
+			}
+			page.add(key);
+		}
+		return page;
+	}
+
+	private void checkOpen() {
+		if(closed) {
+			throw new DbException("The project store " + path + " is closed");
+		}
+	}
+
+	private void open() throws IOException {
+		channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		long size = channel.size();
+		if(size > Integer.MAX_VALUE) {
+			throw new DbException("The project store " + path + " is larger than 2 GB");
+		}
+		log = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(size, INITIAL_CAPACITY));
+		if(size == 0) {
+			log.putInt(0, MAGIC);
+			log.putInt(4, FORMAT_VERSION);
+			log.force();
+		}else if(log.getInt(0) != MAGIC || log.getInt(4) != FORMAT_VERSION) {
+			throw new DbException(path + " is not a project store of format version " + FORMAT_VERSION);
+		}
+		recover();
+	}
+
+	// Replay the log into the index, stopping at the end marker or at the first frame that was not completely
+	// written:
+	private void recover() {
+		projects.clear();
+		byName.clear();
+		categoryEntries.clear();
+		categoryNames.clear();
+		liveBytes = HEADER_SIZE;
+		versionSum = 0;
+		int position = HEADER_SIZE;
+		while(position + FRAME_HEADER_SIZE <= log.capacity()) {
+			int length = log.getInt(position);
+			if(length <= 0 || length > log.capacity() - position - FRAME_HEADER_SIZE) {
+				break;
+			}
+			CRC32C crc = new CRC32C();
+			crc.update(log.slice(position + FRAME_HEADER_SIZE, length));
+			if((int)crc.getValue() != log.getInt(position + 4)) {
+				break;
+			}
+			applyFrame(position + FRAME_HEADER_SIZE, length);
+			position += FRAME_HEADER_SIZE + length;
+		}
+		end = position;
+		if(end + 4 <= log.capacity() && log.getInt(end) != 0) {
+			// A torn write. Clear everything after the last good frame, so later appends cannot be followed by
+			// leftovers that happen to look valid:
+			System.out.println("Discarding an incomplete write at offset " + end + " of project store " + path);
+			byte[] zeros = new byte[64 * 1024];
+			for(int i = end; i < log.capacity(); i += zeros.length) {
+				log.put(i, zeros, 0, Math.min(zeros.length, log.capacity() - i));
+			}
+			log.force();
+		}
+	}
+
+	// Apply the entries of a frame that is already in the log to the index:
+	private void applyFrame(int offset, int length) {
+		int position = offset;
+		while(position < offset + length) {
+			byte type = log.get(position);
+			int entryLength = log.getInt(position + 1);
+			int entryOffset = position + ENTRY_HEADER_SIZE;
+			ByteBuffer entry = log.slice(entryOffset, entryLength);
+			switch(type) {
+				case PUT -> {
+					Project project = ProjectCodec.decode(entry);
+					index(project.getProjectId(), project.getProjectName(), project.getVersion(), entryOffset,
+							entryLength);
+					nextProjectId = Math.max(nextProjectId, project.getProjectId() + 1);
+					for(Material material : project.getMaterials()) {
+						nextMaterialId = Math.max(nextMaterialId, material.getMaterialId() + 1);
+					}
+					for(Step step : project.getSteps()) {
+						nextStepId = Math.max(nextStepId, step.getStepId() + 1);
+					}
+				}
+				case DELETE -> unindex(entry.getInt());
+				case CATEGORY -> {
+					int categoryId = entry.getInt();
+					indexCategory(categoryId, StandardCharsets.UTF_8.decode(entry).toString(), entryOffset, entryLength);
+					nextCategoryId = Math.max(nextCategoryId, categoryId + 1);
+				}
+				case SEQUENCE -> {
+					nextProjectId = Math.max(nextProjectId, entry.getInt());
+					nextMaterialId = Math.max(nextMaterialId, entry.getInt());
+					nextStepId = Math.max(nextStepId, entry.getInt());
+					nextCategoryId = Math.max(nextCategoryId, entry.getInt());
+				}
+				default -> throw new DbException("Unknown entry type " + type + " at offset " + position + " of " + path);
+			}
+			position = entryOffset + entryLength;
+		}
+	}
+
+	private void index(Integer projectId, String name, int version, int offset, int length) {
+		unindex(projectId);
+		projects.put(projectId, new Entry(offset, length, name, version));
+		byName.add(new NameKey(name, projectId));
+		liveBytes += ENTRY_HEADER_SIZE + length;
+		versionSum += version;
+	}
+
+	private void unindex(Integer projectId) {
+		Entry old = projects.remove(projectId);
+		if(Objects.nonNull(old)) {
+			byName.remove(new NameKey(old.name(), projectId));
+			liveBytes -= ENTRY_HEADER_SIZE + old.length();
+			versionSum -= old.version();
+		}
+	}
+
+	private void indexCategory(Integer categoryId, String name, int offset, int length) {
+		categoryEntries.put(categoryId, new Entry(offset, length, name, 0));
+		categoryNames.put(categoryId, name);
+		liveBytes += ENTRY_HEADER_SIZE + length;
+	}
+
+	// Append a frame with the entries at the end of the log and return the offset of its first entry:
+	private int append(byte[] payload) throws IOException {
+		ensureCapacity(FRAME_HEADER_SIZE + payload.length + 4);
+		CRC32C crc = new CRC32C();
+		crc.update(payload);
+		int frame = end;
+		log.put(frame + FRAME_HEADER_SIZE, payload);
+		log.putInt(frame + 4, (int)crc.getValue());
+		// The length goes last, so the frame is not seen as complete before the rest is in place:
+		log.putInt(frame, payload.length);
+		if(syncWrites) {
+			log.force(frame, FRAME_HEADER_SIZE + payload.length);
+		}
+		end = frame + FRAME_HEADER_SIZE + payload.length;
+		return frame + FRAME_HEADER_SIZE;
+	}
+
+	// Grow the mapping, and with it the file, so that needed more bytes fit after the end. The extra room is
+	// zeros, which read as the end marker:
+	private void ensureCapacity(int needed) throws IOException {
+		long required = (long)end + needed;
+		if(required <= log.capacity()) {
+			return;
+		}
+		if(required > Integer.MAX_VALUE) {
+			throw new DbException("The project store " + path + " is full. Compact it or move to MySQL.");
+		}
+		long capacity = Math.min(Integer.MAX_VALUE, Math.max(required, (long)log.capacity() * 2));
+		log.force();
+		log = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+	}
+
+	private void compactIfWorthwhile() {
+		try {
+			compact(true);
+		}catch(RuntimeException e) {
+			System.out.println("Compaction of project store " + path + " failed: " + e);
+		}
+	}
+
+	private void compact(boolean onlyIfWorthwhile) {
+		lock.writeLock().lock();
+		try {
+			checkOpen();
+			long before = end;
+			long dead = before - liveBytes;
+			if(onlyIfWorthwhile && (dead <= COMPACTION_MIN_DEAD_BYTES || dead <= liveBytes)) {
+				return;
+			}
+			try(OperationTimer timer = metrics.start(DaoOperation.COMPACT)){
+				compactLocked();
+				timer.addRows(projects.size());
+				timer.succeeded();
+			}
+			System.out.println("Compacted project store " + path + " from " + before + " to " + end + " bytes.");
+		}catch(IOException e) {
+			throw new DbException("Unable to compact the project store " + path, e);
+		}finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	// Write the live entries to a new file, then move it over the log. A crash before the move leaves the old log
+	// in place, and one after it leaves the new one, both complete:
+	private void compactLocked() throws IOException {
+		Path compacted = compactionPath();
+		List<byte[]> frames = new ArrayList<>();
+		ByteArrayOutputStream frame = new ByteArrayOutputStream(COMPACTION_FRAME_SIZE);
+		for(Map.Entry<Integer, Entry> category : categoryEntries.entrySet()) {
+			addEntry(frames, frame, CATEGORY, bytes(category.getValue()));
+		}
+		List<Integer> ids = new ArrayList<>(projects.keySet());
+		ids.sort(null);
+		for(Integer projectId : ids) {
+			addEntry(frames, frame, PUT, bytes(projects.get(projectId)));
+		}
+		addEntry(frames, frame, SEQUENCE, sequence());
+		frames.add(frame.toByteArray());
+
+		try(FileChannel out = FileChannel.open(compacted, StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)){
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).putInt(FORMAT_VERSION);
+			header.clear();
+			out.write(header);
+			for(byte[] payload : frames) {
+				CRC32C crc = new CRC32C();
+				crc.update(payload);
+				ByteBuffer frameHeader = ByteBuffer.allocate(FRAME_HEADER_SIZE).putInt(payload.length)
+						.putInt((int)crc.getValue());
+				frameHeader.flip();
+				out.write(frameHeader);
+				out.write(ByteBuffer.wrap(payload));
+			}
+			out.force(true);
+		}
+		log.force();
+		channel.close();
+		try {
+			Files.move(compacted, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			syncDirectory();
+		}finally {
+			// The new log if the move happened, otherwise the old one again:
+			open();
+		}
+	}
+
+	private void addEntry(List<byte[]> frames, ByteArrayOutputStream frame, byte type, byte[] entry) {
+		if(frame.size() > 0 && frame.size() + ENTRY_HEADER_SIZE + entry.length > COMPACTION_FRAME_SIZE) {
+			frames.add(frame.toByteArray());
+			frame.reset();
+		}
+		writeEntry(frame, type, entry);
+	}
+
+	private byte[] bytes(Entry entry) {
+		byte[] bytes = new byte[entry.length()];
+		log.get(entry.offset(), bytes);
+		return bytes;
+	}
+
+	private byte[] sequence() {
+		return ByteBuffer.allocate(16).putInt(nextProjectId).putInt(nextMaterialId).putInt(nextStepId)
+				.putInt(nextCategoryId).array();
+	}
+
+	// The category ID followed by the UTF-8 name, which takes the rest of the entry:
+	private static byte[] categoryEntry(Integer categoryId, String name) {
+		byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+		return ByteBuffer.allocate(4 + bytes.length).putInt(categoryId).put(bytes).array();
+	}
+
+	private static void writeEntry(ByteArrayOutputStream out, byte type, byte[] entry) {
+		out.write(type);
+		out.writeBytes(ByteBuffer.allocate(4).putInt(entry.length).array());
+		out.writeBytes(entry);
+	}
+
+	// Make the rename durable. Not every platform can open a directory, and those that cannot do not need it:
+	private void syncDirectory() {
+		Path directory = path.toAbsolutePath().getParent();
+		try(FileChannel dir = FileChannel.open(directory, StandardOpenOption.READ)){
+			dir.force(true);
+		}catch(IOException e) {
+			// Best effort:
+		}
+	}
+
+	private Path compactionPath() {
+		return path.resolveSibling(path.getFileName() + ".compact");
+	}
+
+	private static long scaled(BigDecimal value) {
+		return Objects.isNull(value) ? ProjectSnapshot.NULL_LONG
+				: value.movePointRight(2).setScale(0, RoundingMode.HALF_UP).longValueExact();
+	}
+
+	// The changes of one write, applied to the log and the index together by commit():
+	private class Batch {
+		// Graphs as this batch has left them, or null for deleted projects, in the order they were changed:
+		private final Map<Integer, Project> graphs = new LinkedHashMap<>();
+		// Their entries, encoded when they were put, so later changes to the objects do not reach the store:
+		private final Map<Integer, byte[]> changed = new HashMap<>();
+		private final Map<Integer, String> newCategories = new LinkedHashMap<>();
+		private final List<Runnable> afterCommit = new ArrayList<>();
+
+		// The project as this batch has left it, or null if there is none. Decoded from the log on first use, so
+		// changing it does not change the store until it is put:
+		private Project current(Integer projectId) {
+			if(!graphs.containsKey(projectId)) {
+				Entry entry = projects.get(projectId);
+				graphs.put(projectId, Objects.isNull(entry) ? null : decode(entry, true));
+			}
+			return graphs.get(projectId);
+		}
+
+		private Project existing(Integer projectId, String child) {
+			if(Objects.isNull(projectId)) {
+				throw new DbException(child + " has no project ID");
+			}
+			Project project = current(projectId);
+			if(Objects.isNull(project)) {
+				throw new DbException("Project with ID=" + projectId + " does not exist.");
+			}
+			return project;
+		}
+
+		private String categoryName(Integer categoryId) {
+			String name = newCategories.get(categoryId);
+			return Objects.nonNull(name) ? name : categoryNames.get(categoryId);
+		}
+
+		private void put(Project project) {
+			graphs.put(project.getProjectId(), project);
+			changed.put(project.getProjectId(), ProjectCodec.encode(project));
+		}
+
+		private void delete(Integer projectId) {
+			graphs.put(projectId, null);
+			changed.put(projectId, null);
+		}
+
+		private void category(Integer categoryId, String name) {
+			newCategories.put(categoryId, name);
+		}
+
+		private void afterCommit(Runnable action) {
+			afterCommit.add(action);
+		}
+
+		// Append the changes as one frame, then update the index. Returns the number of entries written:
+		private int commit() throws IOException {
+			if(changed.isEmpty() && newCategories.isEmpty()) {
+				afterCommit.forEach(Runnable::run);
+				return 0;
+			}
+			ByteArrayOutputStream payload = new ByteArrayOutputStream();
+			Map<Integer, Entry> categoryOffsets = new HashMap<>();
+			for(Map.Entry<Integer, String> category : newCategories.entrySet()) {
+				byte[] entry = categoryEntry(category.getKey(), category.getValue());
+				categoryOffsets.put(category.getKey(), new Entry(payload.size() + ENTRY_HEADER_SIZE, entry.length,
+						category.getValue(), 0));
+				writeEntry(payload, CATEGORY, entry);
+			}
+			Map<Integer, Entry> projectOffsets = new HashMap<>();
+			boolean deletes = false;
+			for(Integer projectId : graphs.keySet()) {
+				if(!changed.containsKey(projectId)) {
+					// Only read:
+					continue;
+				}
+				byte[] entry = changed.get(projectId);
+				if(Objects.isNull(entry)) {
+					writeEntry(payload, DELETE, ByteBuffer.allocate(4).putInt(projectId).array());
+					deletes = true;
+				}else {
+					Project graph = graphs.get(projectId);
+					projectOffsets.put(projectId, new Entry(payload.size() + ENTRY_HEADER_SIZE, entry.length,
+							graph.getProjectName(), graph.getVersion()));
+					writeEntry(payload, PUT, entry);
+				}
+			}
+			if(deletes) {
+				writeEntry(payload, SEQUENCE, sequence());
+			}
+			int start = append(payload.toByteArray());
+
+			// The frame is in the log. Point the index at its entries:
+			categoryOffsets.forEach((categoryId, entry) -> indexCategory(categoryId, entry.name(),
+					start + entry.offset(), entry.length()));
+			for(Integer projectId : changed.keySet()) {
+				Entry entry = projectOffsets.get(projectId);
+				if(Objects.isNull(entry)) {
+					unindex(projectId);
+				}else {
+					index(projectId, entry.name(), entry.version(), start + entry.offset(), entry.length());
+				}
+			}
+			afterCommit.forEach(Runnable::run);
+			return changed.size() + newCategories.size();
+		}
+	}
+
+	// Reads under the read lock:
+	private interface ReadAction<T> {
+		T read();
+	}
+
+	// Where an entry is in the log. For projects and categories, name is the name in it, and for projects version
+	// is the project's version:
+	private record Entry(int offset, int length, String name, int version) {
+	}
+
+	private record NameKey(String name, int projectId) implements Comparable<NameKey> {
+		private static final Comparator<NameKey> ORDER = Comparator.comparing(NameKey::name,
+				Comparator.nullsFirst(Comparator.naturalOrder())).thenComparingInt(NameKey::projectId);
+
+		@Override
+		public int compareTo(NameKey other) {
+			return ORDER.compare(this, other);
+		}
+	}
+
+	// Number of projects, bytes in use by the log, bytes of it that are current, and bytes mapped:
+	public record StoreStats(int projects, long logBytes, long liveBytes, long capacity) {
+	}
+}
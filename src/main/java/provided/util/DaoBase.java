@@ -3,7 +3,6 @@
  */
 package provided.util;
 
-import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
 import java.math.BigDecimal;
 import java.sql.Connection;
@@ -11,12 +10,11 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
-import java.sql.Time;
-import java.sql.Timestamp;
 import java.sql.Types;
-import java.time.LocalDateTime;
 import java.time.LocalTime;
+import java.util.Collection;
 import java.util.Objects;
+import java.util.StringJoiner;
 
 /**
  * This class contains utility methods for the DAO class.
@@ -25,6 +23,29 @@ import java.util.Objects;
  *
  */
 public abstract class DaoBase {
+  /**
+   * The {@link #columnList(Class)} result for each class.
+   */
+  private static final ClassValue<String> COLUMN_LISTS = new ClassValue<>() {
+    @Override
+    protected String computeValue(Class<?> classType) {
+      StringJoiner columns = new StringJoiner(", ");
+
+      for(Field field : RowMapper.mappedFields(classType)) {
+        /* Collections hold child rows from other tables, not columns. */
+        if(!Collection.class.isAssignableFrom(field.getType())) {
+          columns.add(camelCaseToSnakeCase(field.getName()));
+        }
+      }
+
+      if(columns.length() == 0) {
+        throw new DaoException("Class " + classType.getName() + " has no mappable fields");
+      }
+
+      return columns.toString();
+    }
+  };
+
   /**
    * This starts a MySQL transaction. Normally MySQL starts a transaction before every request and
    * commits it after each request. By turning auto-commit off, the transaction is only committed
@@ -57,6 +78,39 @@ public abstract class DaoBase {
     conn.rollback();
   }
 
+  /**
+   * This prepares a statement, reusing a cached one if the connection has a
+   * {@link StatementCache}. Closing the returned statement gives it back to the cache, so callers
+   * use it exactly like the result of {@link Connection#prepareStatement(String)}.
+   * 
+   * @param conn The connection on which to prepare the statement.
+   * @param sql The SQL text. For caching to be effective, this should be a constant.
+   * @return The prepared statement
+   * @throws SQLException Thrown if an error occurs.
+   */
+  protected PreparedStatement prepareStatement(Connection conn, String sql) throws SQLException {
+    return prepareStatement(conn, sql, Statement.NO_GENERATED_KEYS);
+  }
+
+  /**
+   * This prepares a statement as {@link #prepareStatement(Connection, String)} does.
+   * 
+   * @param conn The connection on which to prepare the statement.
+   * @param sql The SQL text.
+   * @param autoGeneratedKeys {@link Statement#RETURN_GENERATED_KEYS} or
+   *        {@link Statement#NO_GENERATED_KEYS}.
+   * @return The prepared statement
+   * @throws SQLException Thrown if an error occurs.
+   */
+  protected PreparedStatement prepareStatement(Connection conn, String sql, int autoGeneratedKeys)
+      throws SQLException {
+    if(conn.isWrapperFor(StatementCache.class)) {
+      return conn.unwrap(StatementCache.class).prepare(sql, autoGeneratedKeys);
+    }
+
+    return conn.prepareStatement(sql, autoGeneratedKeys);
+  }
+
   /**
    * This sets a parameter on a prepared statement. If the parameter is null, it is handled
    * correctly.
@@ -106,6 +160,45 @@ public abstract class DaoBase {
     }
   }
 
+  /**
+   * This returns a comma-separated list of question mark placeholders for an IN (...) list. So,
+   * placeholders(3) returns "?, ?, ?".
+   * 
+   * @param count The number of placeholders. Must be at least one.
+   * @return The placeholder list
+   */
+  protected String placeholders(int count) {
+    if(count < 1) {
+      throw new DaoException("At least one placeholder is required");
+    }
+
+    StringBuilder builder = new StringBuilder(count * 3);
+    builder.append('?');
+
+    for(int i = 1; i < count; i++) {
+      builder.append(", ?");
+    }
+
+    return builder.toString();
+  }
+
+  /**
+   * Returns the comma-separated list of columns that {@link #extract(ResultSet, Class)} would map
+   * into the class: the snake case names of its mappable fields, in declaration order. Collection
+   * fields, which hold child rows, are left out. Selecting this list instead of * makes a small
+   * projection class such as a summary transfer only the columns it holds. The list is built once
+   * per class.
+   * 
+   * Example: for a class with fields projectId and projectName this returns
+   * "project_id, project_name".
+   * 
+   * @param classType The class the rows will be mapped into.
+   * @return The column list
+   */
+  protected static String columnList(Class<?> classType) {
+    return COLUMN_LISTS.get(classType);
+  }
+
   /**
    * Converts from a Java class to a java.sql.Types value.
    * 
@@ -147,12 +240,16 @@ public abstract class DaoBase {
    * @param idName The name of the parent ID field
    * @return The count of the entities attached to the parent plus one
    * @throws SQLException Thrown if an error occurs.
+   * @deprecated Counting rows gives a number already in use once a child row has been deleted, and
+   *             two concurrent inserts get the same number. Reserve numbers from a sequence table
+   *             under a row lock instead.
    */
+  @Deprecated
   protected Integer getNextSequenceNumber(Connection conn, Integer id, String tableName,
       String idName) throws SQLException {
     String sql = "SELECT COUNT(*) FROM " + tableName + " WHERE " + idName + " = ?";
 
-    try(PreparedStatement stmt = conn.prepareStatement(sql)) {
+    try(PreparedStatement stmt = prepareStatement(conn, sql)) {
       setParameter(stmt, 1, id, Integer.class);
 
       try(ResultSet rs = stmt.executeQuery()) {
@@ -166,20 +263,24 @@ public abstract class DaoBase {
   }
 
   /**
-   * This returns the integer primary key value of the last row inserted into the given table. It
+   * This returns the integer primary key value of the last row inserted on this connection. It
    * allows the ID to be inserted into the entity object after inserting it into the table.
    * 
-   * The other way of doing this is to call {@link Statement#getGeneratedKeys()}, but this returns a
-   * result set that needs to be parsed for the ID. It's not really any easier than this approach
-   * but should be closer to database-agnostic.
+   * The other way of doing this is to call {@link Statement#getGeneratedKeys()}, which is what
+   * {@link #getGeneratedIds(Statement, int)} does for batched inserts.
    * 
    * @param conn The connection
-   * @param table The name of the table on which to get the last inserted primary key value
+   * @param table The name of the table on which to get the last inserted primary key value. It is
+   *        not needed by MySQL, which tracks the last insert ID per connection.
    * @return The primary key value
    * @throws SQLException Thrown if an error occurs
    */
   protected Integer getLastInsertId(Connection conn, String table) throws SQLException {
-    String sql = String.format("SELECT LAST_INSERT_ID() FROM %s", table);
+    /*
+     * Selecting LAST_INSERT_ID() from the table would return one row per row in the table. Without a
+     * FROM clause it returns exactly one row.
+     */
+    String sql = "SELECT LAST_INSERT_ID()";
 
     try(Statement stmt = conn.createStatement()) {
       try(ResultSet rs = stmt.executeQuery(sql)) {
@@ -192,17 +293,45 @@ public abstract class DaoBase {
     }
   }
 
+  /**
+   * This returns the integer primary key values generated by the last execution of the statement,
+   * in the order the rows were added to the batch. The statement must have been prepared with
+   * {@link Statement#RETURN_GENERATED_KEYS}.
+   * 
+   * @param stmt The statement that inserted the rows
+   * @param expected The number of rows that were inserted
+   * @return The primary key values
+   * @throws SQLException Thrown if an error occurs or if the driver returns fewer keys than rows
+   */
+  protected int[] getGeneratedIds(Statement stmt, int expected) throws SQLException {
+    int[] ids = new int[expected];
+    int count = 0;
+
+    try(ResultSet rs = stmt.getGeneratedKeys()) {
+      while(count < expected && rs.next()) {
+        ids[count++] = rs.getInt(1);
+      }
+    }
+
+    if(count != expected) {
+      throw new SQLException(
+          "Expected " + expected + " generated keys but the driver returned " + count);
+    }
+
+    return ids;
+  }
+
   /**
    * This extracts an object of the given type from a result set. The object must have a
-   * zero-argument constructor. It builds an object from a result set using reflection as follows:
+   * zero-argument constructor. The work is done by a {@link RowMapper}, which is built once per
+   * class and result set shape as follows:
    * <ol>
    * <li>The zero-argument constructor is obtained.</li>
-   * <li>An object of the given class type is created.</li>
    * <li>A list of fields is obtained using reflection.</li>
    * <li>The field name is converted from Java naming to SQL naming conventions (camel case to snake
    * case). Obviously, for this to work, the Java name must match the column name. So, if the Java
    * name is numServings, the column name must be num_servings.</li>
-   * <li>The value is assigned to the field in the object.</li>
+   * <li>A setter is generated for each field that has a matching column.</li>
    * </ol>
    * 
    * Example: if a query returns values for a recipe, a Recipe object is returned. So:
@@ -224,6 +353,12 @@ public abstract class DaoBase {
    * Since the result set does not contain a column named "ingredients", the value is left alone and
    * the list initialization is preserved.
    * 
+   * The query does not have to select every column. A projection class whose fields are a subset
+   * of the columns can be selected with {@link #columnList(Class)} and extracted the same way.
+   * 
+   * When extracting many rows from the same result set, prefer {@link #rowMapper(ResultSet, Class)}
+   * so that the mapper is looked up once rather than once per row.
+   * 
    * @param <T> The Generic for the type of object to create and return.
    * @param rs The result set in which to extract values. The result set must be positioned on the
    *        correct row by the caller.
@@ -231,57 +366,22 @@ public abstract class DaoBase {
    * @return A populated class.
    */
   protected <T> T extract(ResultSet rs, Class<T> classType) {
-    try {
-      /* Obtain the constructor and create an object of the correct type. */
-      Constructor<T> con = classType.getConstructor();
-      T obj = con.newInstance();
-
-      /* Get the list of fields and loop through them. */
-      for(Field field : classType.getDeclaredFields()) {
-        String colName = camelCaseToSnakeCase(field.getName());
-        Class<?> fieldType = field.getType();
-
-        /*
-         * Set the field accessible flag which means that we can populate even private fields
-         * without using the setter.
-         */
-        field.setAccessible(true);
-        Object fieldValue = null;
-
-        try {
-          fieldValue = rs.getObject(colName);
-        }
-        catch(SQLException e) {
-          /*
-           * An exception caught here means that the field name isn't in the result set. Don't take
-           * any action.
-           */
-        }
-
-        /*
-         * Only set the value in the object if there is a value with the same name in the result
-         * set. This will preserve instance variables (like lists) that are assigned values when the
-         * object is created.
-         */
-        if(Objects.nonNull(fieldValue)) {
-          /*
-           * Convert the following types: Time -> LocalTime, and Timestamp -> LocalDateTime.
-           */
-          if(fieldValue instanceof Time && fieldType.equals(LocalTime.class)) {
-            fieldValue = ((Time)fieldValue).toLocalTime();
-          }
-          else if(fieldValue instanceof Timestamp && fieldType.equals(LocalDateTime.class)) {
-            fieldValue = ((Timestamp)fieldValue).toLocalDateTime();
-          }
-
-          field.set(obj, fieldValue);
-        }
-      }
-
-      return obj;
+    return rowMapper(rs, classType).map(rs);
+  }
 
+  /**
+   * Returns the cached {@link RowMapper} for the given class and the shape of the result set.
+   * 
+   * @param <T> The Generic for the type of object the mapper creates.
+   * @param rs The result set whose columns will be mapped.
+   * @param classType The actual class type of the object to create.
+   * @return The row mapper.
+   */
+  protected <T> RowMapper<T> rowMapper(ResultSet rs, Class<T> classType) {
+    try {
+      return RowMapper.forResultSet(rs, classType);
     }
-    catch(Exception e) {
+    catch(SQLException e) {
       throw new DaoException("Unable to create object of type " + classType.getName(), e);
     }
   }
@@ -292,7 +392,7 @@ public abstract class DaoBase {
    * @param identifier The name in camel case to convert.
    * @return The name converted to snake case.
    */
-  private String camelCaseToSnakeCase(String identifier) {
+  static String camelCaseToSnakeCase(String identifier) {
     StringBuilder nameBuilder = new StringBuilder();
 
     for(char ch : identifier.toCharArray()) {
@@ -0,0 +1,223 @@
+/**
+ *
+ */
+package provided.util;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+import provided.util.DaoBase.DaoException;
+
+/**
+ * This class maps result set rows to objects of a given type. All of the reflection is done once,
+ * when the mapper is built:
+ * <ol>
+ * <li>The zero-argument constructor is turned into a method handle.</li>
+ * <li>Each field name is converted to snake case and matched against the column labels of the
+ * result set. Fields with no matching column are dropped from the mapper, so their initial values
+ * (like lists) are preserved.</li>
+ * <li>A method handle setter is generated for each remaining field and bound to the column index.</li>
+ * </ol>
+ *
+ * Mappers are cached by entity class and result set shape (the list of column labels), so mapping
+ * a row in steady state does no reflection lookups and throws no exceptions.
+ *
+ * @param <T> The type of object created from each row.
+ * @author Promineo
+ *
+ */
+public final class RowMapper<T> {
+  private static final MethodType SETTER_TYPE =
+      MethodType.methodType(void.class, Object.class, Object.class);
+
+  private static final Map<Class<?>, Map<String, RowMapper<?>>> CACHE = new ConcurrentHashMap<>();
+
+  private final MethodHandle constructor;
+  private final int[] columnIndexes;
+  private final MethodHandle[] setters;
+  private final Conversion[] conversions;
+
+  private RowMapper(MethodHandle constructor, int[] columnIndexes, MethodHandle[] setters,
+      Conversion[] conversions) {
+    this.constructor = constructor;
+    this.columnIndexes = columnIndexes;
+    this.setters = setters;
+    this.conversions = conversions;
+  }
+
+  /**
+   * Returns the mapper for the given class and the shape of the given result set, building it on
+   * first use. Callers that map many rows should obtain the mapper once per result set and then
+   * call {@link #map(ResultSet)} for each row.
+   *
+   * @param <T> The type of object to create.
+   * @param rs The result set whose metadata describes the columns.
+   * @param classType The class of object to create.
+   * @return The mapper.
+   * @throws SQLException Thrown if the result set metadata cannot be read.
+   */
+  @SuppressWarnings("unchecked")
+  public static <T> RowMapper<T> forResultSet(ResultSet rs, Class<T> classType)
+      throws SQLException {
+    ResultSetMetaData meta = rs.getMetaData();
+    int columnCount = meta.getColumnCount();
+    String[] labels = new String[columnCount];
+    StringBuilder shape = new StringBuilder();
+
+    for(int col = 1; col <= columnCount; col++) {
+      labels[col - 1] = meta.getColumnLabel(col).toLowerCase(Locale.ROOT);
+      shape.append(labels[col - 1]).append(',');
+    }
+
+    Map<String, RowMapper<?>> byShape =
+        CACHE.computeIfAbsent(classType, key -> new ConcurrentHashMap<>());
+
+    return (RowMapper<T>)byShape.computeIfAbsent(shape.toString(),
+        key -> build(classType, labels));
+  }
+
+  /**
+   * Creates an object from the current row of the result set.
+   *
+   * @param rs The result set, positioned on the row to map by the caller.
+   * @return A populated object.
+   */
+  @SuppressWarnings("unchecked")
+  public T map(ResultSet rs) {
+    try {
+      Object obj = constructor.invokeExact();
+
+      for(int i = 0; i < setters.length; i++) {
+        Object fieldValue = rs.getObject(columnIndexes[i]);
+
+        /*
+         * Only set the value if the column is not null. This preserves initial values assigned when
+         * the object is created.
+         */
+        if(Objects.nonNull(fieldValue)) {
+          setters[i].invokeExact(obj, conversions[i].convert(fieldValue));
+        }
+      }
+
+      return (T)obj;
+    }
+    catch(Throwable e) {
+      throw new DaoException("Unable to map row to object", e);
+    }
+  }
+
+  /**
+   * Builds a mapper by matching the fields of the class against the column labels.
+   */
+  private static <T> RowMapper<T> build(Class<T> classType, String[] labels) {
+    try {
+      MethodHandles.Lookup lookup = MethodHandles.privateLookupIn(classType, MethodHandles.lookup());
+      MethodHandle constructor = lookup.findConstructor(classType, MethodType.methodType(void.class))
+          .asType(MethodType.methodType(Object.class));
+
+      Map<String, Integer> indexByLabel = new HashMap<>();
+
+      for(int i = labels.length - 1; i >= 0; i--) {
+        /* Iterate backwards so that the first column with a given label wins. */
+        indexByLabel.put(labels[i], i + 1);
+      }
+
+      List<Integer> indexes = new ArrayList<>();
+      List<MethodHandle> setters = new ArrayList<>();
+      List<Conversion> conversions = new ArrayList<>();
+
+      for(Field field : mappedFields(classType)) {
+        Integer index = indexByLabel.get(DaoBase.camelCaseToSnakeCase(field.getName()));
+
+        if(Objects.nonNull(index)) {
+          indexes.add(index);
+          setters.add(lookup.unreflectSetter(field).asType(SETTER_TYPE));
+          conversions.add(Conversion.forType(field.getType()));
+        }
+      }
+
+      return new RowMapper<>(constructor, indexes.stream().mapToInt(Integer::intValue).toArray(),
+          setters.toArray(new MethodHandle[0]), conversions.toArray(new Conversion[0]));
+    }
+    catch(ReflectiveOperationException e) {
+      throw new DaoException("Unable to create object of type " + classType.getName(), e);
+    }
+  }
+
+  /**
+   * Returns the fields of the class that may be populated from a column. Static, final and
+   * transient fields are never mapped.
+   *
+   * @param classType The class to inspect.
+   * @return The mappable fields in declaration order.
+   */
+  static List<Field> mappedFields(Class<?> classType) {
+    List<Field> fields = new ArrayList<>();
+
+    for(Field field : classType.getDeclaredFields()) {
+      int modifiers = field.getModifiers();
+
+      if(!Modifier.isStatic(modifiers) && !Modifier.isFinal(modifiers)
+          && !Modifier.isTransient(modifiers) && !field.isSynthetic()) {
+        fields.add(field);
+      }
+    }
+
+    return fields;
+  }
+
+  /**
+   * Converts the following types: Time -> LocalTime, and Timestamp -> LocalDateTime.
+   */
+  private enum Conversion {
+    NONE {
+      @Override
+      Object convert(Object value) {
+        return value;
+      }
+    },
+    LOCAL_TIME {
+      @Override
+      Object convert(Object value) {
+        return value instanceof Time ? ((Time)value).toLocalTime() : value;
+      }
+    },
+    LOCAL_DATE_TIME {
+      @Override
+      Object convert(Object value) {
+        return value instanceof Timestamp ? ((Timestamp)value).toLocalDateTime() : value;
+      }
+    };
+
+    abstract Object convert(Object value);
+
+    static Conversion forType(Class<?> fieldType) {
+      if(LocalTime.class.equals(fieldType)) {
+        return LOCAL_TIME;
+      }
+
+      if(LocalDateTime.class.equals(fieldType)) {
+        return LOCAL_DATE_TIME;
+      }
+
+      return NONE;
+    }
+  }
+}
@@ -0,0 +1,201 @@
+/**
+ *
+ */
+package provided.util;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This class caches prepared statements for one physical connection, keyed by SQL text. It is a
+ * bounded LRU: when it is full, the least recently used statement that is not in use is closed and
+ * dropped.
+ *
+ * Statements handed out by {@link #prepare(String, int)} are wrappers. Closing one (normally at the
+ * end of a try-with-resources block) clears its parameters and batch and returns it to the cache
+ * instead of closing it. If the same SQL is requested while its cached statement is still in use,
+ * an ordinary uncached statement is returned.
+ *
+ * A connection pool exposes the cache for a connection through
+ * {@link Connection#unwrap(Class) unwrap(StatementCache.class)}, which is how
+ * {@link DaoBase#prepareStatement(Connection, String)} finds it. Like a connection, a cache must
+ * only be used by one thread at a time.
+ *
+ * @author Promineo
+ *
+ */
+public class StatementCache implements AutoCloseable {
+  private static final LongAdder TOTAL_HITS = new LongAdder();
+  private static final LongAdder TOTAL_MISSES = new LongAdder();
+  private static final LongAdder TOTAL_EVICTIONS = new LongAdder();
+
+  private final Connection connection;
+  private final int maxSize;
+  private final LinkedHashMap<Key, CachedStatement> statements =
+      new LinkedHashMap<>(16, 0.75f, true);
+
+  /**
+   * @param connection The physical connection on which statements are prepared
+   * @param maxSize The maximum number of statements to keep open
+   */
+  public StatementCache(Connection connection, int maxSize) {
+    this.connection = connection;
+    this.maxSize = maxSize;
+  }
+
+  /**
+   * Returns a prepared statement for the SQL, reusing a cached one if there is one.
+   *
+   * @param sql The SQL text
+   * @param autoGeneratedKeys {@link Statement#RETURN_GENERATED_KEYS} or
+   *        {@link Statement#NO_GENERATED_KEYS}
+   * @return The statement. Closing it returns it to the cache.
+   * @throws SQLException Thrown if the statement cannot be prepared.
+   */
+  public PreparedStatement prepare(String sql, int autoGeneratedKeys) throws SQLException {
+    Key key = new Key(sql, autoGeneratedKeys);
+    CachedStatement cached = statements.get(key);
+
+    if(Objects.nonNull(cached) && !cached.inUse) {
+      TOTAL_HITS.increment();
+      cached.inUse = true;
+      return cached.wrapper;
+    }
+
+    TOTAL_MISSES.increment();
+    PreparedStatement stmt = connection.prepareStatement(sql, autoGeneratedKeys);
+
+    if(Objects.nonNull(cached)) {
+      /* The cached statement is busy, so this one is used once and closed normally. */
+      return stmt;
+    }
+
+    cached = new CachedStatement(stmt);
+    cached.inUse = true;
+    statements.put(key, cached);
+    evict();
+
+    return cached.wrapper;
+  }
+
+  /**
+   * Closes every cached statement. Statements that are in use are closed when they are returned.
+   */
+  @Override
+  public void close() {
+    for(CachedStatement cached : statements.values()) {
+      cached.evicted = true;
+
+      if(!cached.inUse) {
+        cached.closeQuietly();
+      }
+    }
+
+    statements.clear();
+  }
+
+  /**
+   * Returns the hit and miss counts of all statement caches in this JVM.
+   *
+   * @return The statistics
+   */
+  public static Stats getStats() {
+    return new Stats(TOTAL_HITS.sum(), TOTAL_MISSES.sum(), TOTAL_EVICTIONS.sum());
+  }
+
+  /**
+   * Drops least recently used statements that are not in use until the cache fits.
+   */
+  private void evict() {
+    Iterator<CachedStatement> eldest = statements.values().iterator();
+
+    while(statements.size() > maxSize && eldest.hasNext()) {
+      CachedStatement cached = eldest.next();
+
+      if(!cached.inUse) {
+        eldest.remove();
+        cached.closeQuietly();
+        TOTAL_EVICTIONS.increment();
+      }
+    }
+  }
+
+  /**
+   * Cache statistics. The hit rate is the fraction of requests served by a cached statement.
+   */
+  public record Stats(long hits, long misses, long evictions) {
+    public double hitRate() {
+      long requests = hits + misses;
+      return requests == 0 ? 0 : (double)hits / requests;
+    }
+  }
+
+  private record Key(String sql, int autoGeneratedKeys) {
+  }
+
+  /**
+   * A cached statement along with the wrapper that returns it to the cache when closed.
+   */
+  private static class CachedStatement {
+    private final PreparedStatement statement;
+    private final PreparedStatement wrapper;
+    private boolean inUse;
+    private boolean evicted;
+
+    private CachedStatement(PreparedStatement statement) {
+      this.statement = statement;
+      this.wrapper = (PreparedStatement)Proxy.newProxyInstance(
+          PreparedStatement.class.getClassLoader(), new Class<?>[] {PreparedStatement.class},
+          (proxy, method, args) -> {
+            switch(method.getName()) {
+              case "close":
+                release();
+                return null;
+              case "isClosed":
+                return !inUse || statement.isClosed();
+              default:
+                try {
+                  return method.invoke(statement, args);
+                }
+                catch(InvocationTargetException e) {
+                  throw e.getCause();
+                }
+            }
+          });
+    }
+
+    private void release() throws SQLException {
+      if(!inUse) {
+        return;
+      }
+
+      inUse = false;
+
+      if(evicted) {
+        closeQuietly();
+      }
+      else {
+        statement.clearParameters();
+        statement.clearBatch();
+      }
+    }
+
+    private void closeQuietly() {
+      try {
+        statement.close();
+      }
+      catch(SQLException e) {
+        /* The statement is being discarded anyway. */
+      }
+    }
+  }
+}
@@ -0,0 +1,4 @@
+-- Project lists and keyset pages are ordered by (project_name, project_id). With this index they are read in
+-- index order instead of being sorted, and a page seeks straight to its first row.
+
+CREATE INDEX idx_project_name ON project (project_name, project_id);
@@ -0,0 +1,3 @@
+-- Steps are read by project in step order. This index serves both the lookup and the ordering.
+
+CREATE INDEX idx_step_project_order ON step (project_id, step_order);
@@ -0,0 +1,9 @@
+-- The baseline made project_id and category_id each unique on their own, which allowed only one category per
+-- project and one project per category. Each (project, category) pair is unique instead. The primary key also
+-- serves category lookups by project, and the category_id index serves the foreign key.
+
+ALTER TABLE project_category
+	ADD PRIMARY KEY (project_id, category_id),
+	ADD INDEX idx_project_category_category (category_id),
+	DROP INDEX project_id,
+	DROP INDEX category_id;
@@ -0,0 +1,4 @@
+-- Row version for optimistic locking. Every update of the project details increments it, and an update made
+-- from a stale read matches no row.
+
+ALTER TABLE project ADD COLUMN version INT NOT NULL DEFAULT 0;
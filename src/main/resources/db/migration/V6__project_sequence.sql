@@ -0,0 +1,15 @@
+-- The next unused step_order of each project. Step numbers are handed out in blocks by locking a project's row,
+-- instead of counting its steps, which gave a number already in use once a step had been deleted. Rows for
+-- existing projects start after their highest step; rows for other projects are added on first use.
+
+CREATE TABLE project_sequence(
+	project_id INT NOT NULL,
+	next_step_order INT NOT NULL,
+	PRIMARY KEY (project_id),
+	FOREIGN KEY (project_id) REFERENCES project (project_id) ON DELETE CASCADE
+);
+
+INSERT INTO project_sequence (project_id, next_step_order)
+SELECT project_id, MAX(step_order) + 1
+FROM step
+GROUP BY project_id;
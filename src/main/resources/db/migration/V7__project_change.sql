@@ -0,0 +1,11 @@
+-- Log of changes to projects, read by ProjectDAO.fetchChangesSince(). ProjectDAO adds the rows in the transaction
+-- that makes the change: one row with the project's ID, numbered by change_seq, for each project a write inserts,
+-- changes or adds children to, and a tombstone row with deleted set for each project it deletes.
+
+CREATE TABLE IF NOT EXISTS project_change(
+	change_seq BIGINT NOT NULL AUTO_INCREMENT,
+	project_id INT NOT NULL,
+	deleted BOOLEAN NOT NULL DEFAULT FALSE,
+	changed_at TIMESTAMP(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3),
+	PRIMARY KEY (change_seq)
+);
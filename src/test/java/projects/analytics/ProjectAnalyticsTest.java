@@ -0,0 +1,30 @@
+package projects.analytics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import projects.analytics.ProjectAnalytics.DifficultyAccuracy;
+
+class ProjectAnalyticsTest {
+	@Test
+	void accuracyKeyedByDistinctDifficulties() {
+		ProjectSnapshot.Builder builder = new ProjectSnapshot.Builder();
+		builder.addProject(1, Integer.MAX_VALUE, 1000, 1500);
+		builder.addProject(2, -3, 200, 100);
+		builder.addProject(3, Integer.MAX_VALUE, 500, 500);
+		builder.addProject(4, ProjectSnapshot.NULL_INT, 700, 700);
+		builder.addProject(5, 2, 300, ProjectSnapshot.NULL_LONG);
+
+		List<DifficultyAccuracy> accuracy = new ProjectAnalytics(builder.build()).accuracyByDifficulty();
+
+		assertEquals(List.of(
+				new DifficultyAccuracy(-3, 1, new BigDecimal("2.00"), new BigDecimal("1.00"), new BigDecimal("1.00")),
+				new DifficultyAccuracy(Integer.MAX_VALUE, 2, new BigDecimal("15.00"), new BigDecimal("20.00"),
+						new BigDecimal("5.00"))),
+				accuracy);
+	}
+}
@@ -0,0 +1,32 @@
+package projects.bulk;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+
+import projects.exception.DbException;
+
+class ProjectJsonTest {
+	@Test
+	void parsesUnicodeEscape() {
+		assertEquals("Door A", ProjectJson.parse("{\"projectName\":\"Door \\u0041\"}").getProjectName());
+	}
+
+	@Test
+	void rejectsBadUnicodeEscapeWithItsPosition() {
+		DbException e = assertThrows(DbException.class, () -> ProjectJson.parse("{\"projectName\":\"\\u12G4\"}"));
+		assertEquals("Bad unicode escape at column 21", e.getMessage());
+	}
+
+	@Test
+	void rejectsSignedUnicodeEscape() {
+		assertThrows(DbException.class, () -> ProjectJson.parse("{\"projectName\":\"\\u+123\"}"));
+	}
+
+	@Test
+	void rejectsUnicodeEscapeCutShort() {
+		DbException e = assertThrows(DbException.class, () -> ProjectJson.parse("{\"projectName\":\"\\u12"));
+		assertEquals("Bad unicode escape at column 19", e.getMessage());
+	}
+}
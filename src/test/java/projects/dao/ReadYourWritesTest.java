@@ -0,0 +1,56 @@
+package projects.dao;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+class ReadYourWritesTest {
+	private static final long WINDOW_NANOS = TimeUnit.SECONDS.toNanos(60);
+
+	@Test
+	void writeToOneProjectLeavesReadsOfOtherProjectsOnReplicas() {
+		ReadYourWrites readYourWrites = new ReadYourWrites();
+		readYourWrites.wrote(List.of(1), false, WINDOW_NANOS);
+
+		assertTrue(readYourWrites.readsFromPrimary(List.of(1)));
+		assertTrue(readYourWrites.readsFromPrimary(List.of(2, 1)));
+		assertFalse(readYourWrites.readsFromPrimary(List.of(2)));
+		assertFalse(readYourWrites.listsFromPrimary());
+	}
+
+	@Test
+	void writeSeenByReadsOnOtherThreads() throws InterruptedException {
+		ReadYourWrites readYourWrites = new ReadYourWrites();
+		Thread writer = Thread.ofVirtual().start(() -> readYourWrites.wrote(List.of(7), true, WINDOW_NANOS));
+		writer.join();
+
+		assertTrue(readYourWrites.readsFromPrimary(List.of(7)));
+		assertTrue(readYourWrites.listsFromPrimary());
+	}
+
+	@Test
+	void windowCloses() {
+		ReadYourWrites readYourWrites = new ReadYourWrites();
+		readYourWrites.wrote(List.of(1), true, 1);
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while(readYourWrites.readsFromPrimary(List.of(1)) && System.nanoTime() - deadline < 0) {
+			Thread.onSpinWait();
+		}
+
+		assertFalse(readYourWrites.readsFromPrimary(List.of(1)));
+		assertFalse(readYourWrites.listsFromPrimary());
+	}
+
+	@Test
+	void noWindowWithoutReplicas() {
+		ReadYourWrites readYourWrites = new ReadYourWrites();
+		readYourWrites.wrote(List.of(1), true, 0);
+
+		assertFalse(readYourWrites.readsFromPrimary(List.of(1)));
+		assertFalse(readYourWrites.listsFromPrimary());
+	}
+}